@@ -0,0 +1,49 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.semantics.Semantics;
+import colpo.core.semantics.Semantics.Ordering;
+import colpo.core.semantics.TraceSink;
+
+/**
+ * {@link Semantics#evaluate(Request)} when the rule that succeeds is the last
+ * one (see {@link ScaledScenarios#lastRuleWinsPolicies(int, int)}), with the
+ * strict and the adaptive {@link Ordering}.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class AdaptiveOrderingBenchmark {
+
+	@Param({"10", "100"})
+	private int parties;
+
+	@Param({"1", "10"})
+	private int rules;
+
+	@Param({"STRICT", "ADAPTIVE"})
+	private Ordering ordering;
+
+	private Semantics semantics;
+	private Request request;
+
+	@Setup
+	public void setup() {
+		semantics = new Semantics(ScaledScenarios.lastRuleWinsPolicies(parties, rules))
+			.traceSink(TraceSink.NO_OP)
+			.ordering(ordering);
+		request = ScaledScenarios.request();
+	}
+
+	@Benchmark
+	public Result evaluate() {
+		return semantics.evaluate(request);
+	}
+}
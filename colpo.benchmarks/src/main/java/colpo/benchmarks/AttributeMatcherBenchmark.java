@@ -0,0 +1,41 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.AttributeMatcher;
+import colpo.core.Attributes;
+
+/**
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class AttributeMatcherBenchmark {
+
+	private AttributeMatcher matcher = new AttributeMatcher();
+
+	private Attributes requested = new Attributes()
+		.add("type", "addrInfo")
+		.add("city", "Prato");
+
+	private Attributes matching = new Attributes()
+		.add("type", "addrInfo")
+		.add("city", "Prato")
+		.add("zone", "center");
+
+	private Attributes notMatching = new Attributes()
+		.add("type", "addrInfo")
+		.add("city", "Lucca")
+		.add("zone", "center");
+
+	@Benchmark
+	public boolean match() {
+		return matcher.match(requested, matching);
+	}
+
+	@Benchmark
+	public boolean noMatch() {
+		return matcher.match(requested, notMatching);
+	}
+}
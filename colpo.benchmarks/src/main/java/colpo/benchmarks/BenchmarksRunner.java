@@ -0,0 +1,32 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks (all of them, or the ones selected by the
+ * standard JMH command line arguments) reporting the throughput
+ * and the allocation rate.
+ *
+ * @author Lorenzo Bettini
+ */
+public class BenchmarksRunner {
+
+	private BenchmarksRunner() {
+		// Only static methods
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		var options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.mode(Mode.Throughput)
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,55 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.CostModel;
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.semantics.Semantics;
+import colpo.core.semantics.TraceSink;
+
+/**
+ * The cheapest solution of a request with many solutions (see
+ * {@link ScaledScenarios#alternativesPolicies(int, int)}), found with
+ * {@link Semantics#cheapest(Request, CostModel)} and by enumerating all the
+ * {@link Semantics#solutions(Request)}; the cost of a request is the sum of
+ * the indexes of its parties.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class CheapestBenchmark {
+
+	@Param({"10", "100"})
+	private int parties;
+
+	@Param({"1", "10"})
+	private int alternatives;
+
+	private Semantics semantics;
+	private Request request;
+	private CostModel costModel = request -> request.requester().getIndex() + request.from().getIndex();
+
+	@Setup
+	public void setup() {
+		semantics = new Semantics(ScaledScenarios.alternativesPolicies(parties, alternatives))
+			.traceSink(TraceSink.NO_OP);
+		request = ScaledScenarios.request();
+	}
+
+	@Benchmark
+	public Result cheapest() {
+		return semantics.cheapest(request, costModel);
+	}
+
+	@Benchmark
+	public Result enumerated() {
+		return semantics.solutions(request)
+			.min((result1, result2) -> Double.compare(costModel.total(result1), costModel.total(result2)))
+			.orElseThrow();
+	}
+}
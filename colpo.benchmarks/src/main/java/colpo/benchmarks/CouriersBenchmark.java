@@ -0,0 +1,44 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.semantics.Semantics;
+import colpo.core.semantics.Trace;
+import colpo.core.semantics.TraceSink;
+
+/**
+ * {@link Semantics#evaluate(Request)} on the scenarios of CouriersExampleTest.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class CouriersBenchmark {
+
+	@Param({"1", "2", "3", "4"})
+	private int scenario;
+
+	@Param({"true", "false"})
+	private boolean tracing;
+
+	private Semantics semantics;
+	private Request request;
+
+	@Setup
+	public void setup() {
+		semantics = new Semantics(CouriersScenarios.policies(scenario))
+			.contextHandler(CouriersScenarios.contextHandler(scenario))
+			.traceSink(tracing ? new Trace() : TraceSink.NO_OP);
+		request = CouriersScenarios.request();
+	}
+
+	@Benchmark
+	public Result evaluate() {
+		return semantics.evaluate(request);
+	}
+}
@@ -0,0 +1,173 @@
+package colpo.benchmarks;
+
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+
+import colpo.core.AndExchange;
+import colpo.core.Attributes;
+import colpo.core.ContextHandler;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.OrExchange;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+
+/**
+ * The policies and the request of the scenarios of CouriersExampleTest.
+ *
+ * @author Lorenzo Bettini
+ */
+public class CouriersScenarios {
+
+	private CouriersScenarios() {
+		// Only static methods
+	}
+
+	public static Request request() {
+		return new Request(
+			index(1), // RabbitService
+			new Attributes()
+				.add("type", "addrInfo")
+				.add("city", "Prato"),
+			anySuchThat(courier("FastAndFurious")));
+	}
+
+	public static Policies policies(int scenario) {
+		return switch (scenario) {
+		case 1 -> firstScenario();
+		case 2 -> secondScenario();
+		case 3 -> thirdScenario();
+		case 4 -> fourthScenario();
+		default -> throw new IllegalArgumentException("no such scenario: " + scenario);
+		};
+	}
+
+	/**
+	 * @param scenario
+	 * @return the environmental information used by the scenario
+	 */
+	public static ContextHandler contextHandler(int scenario) {
+		if (scenario != 4) {
+			return new ContextHandler();
+		}
+		return new ContextHandler()
+			.add(1, "timeHour", 10)
+			.add(1, "position", "Prato")
+			.add(2, "timeHour", 10)
+			.add(2, "position", "Prato")
+			.add(3, "timeHour", 10)
+			.add(3, "position", "Pisa");
+	}
+
+	private static Policies firstScenario() {
+		return new Policies()
+			.add(new Policy(
+				courier("RabbitService"),
+				new Rules()
+					.add(new Rule(addrInfo("Lucca")))))
+			.add(new Policy(
+				courier("FastAndFurious"),
+				new Rules()
+					.add(new Rule(
+						addrInfo("Prato"),
+						new OrExchange(
+							new SingleExchange(me(), addrInfo("Pistoia"), requester()),
+							new SingleExchange(me(), addrInfo("Lucca"), requester()))))));
+	}
+
+	private static Policies secondScenario() {
+		return new Policies()
+			.add(rabbitServicePolicy())
+			.add(new Policy(
+				courier("FastAndFurious"),
+				new Rules()
+					.add(new Rule(
+						addrInfo("Prato"),
+						new OrExchange(
+							new SingleExchange(me(), addrInfo("Pistoia"), requester()),
+							new SingleExchange(me(), addrInfo("Lucca"), requester()))))));
+	}
+
+	private static Policies thirdScenario() {
+		return new Policies()
+			.add(rabbitServicePolicy())
+			.add(new Policy(
+				courier("FastAndFurious"),
+				new Rules()
+					.add(new Rule(
+						addrInfo("Prato"),
+						new AndExchange(
+							new SingleExchange(me(), addrInfo("Lucca"),
+								anySuchThat(courier("RabbitService"))),
+							new SingleExchange(me(), addrInfo("Grosseto"),
+								anySuchThat(courier("RabbitService"))))))))
+			.add(new Policy(
+				courier("RabbitService"),
+				new Rules()
+					.add(new Rule(addrInfo("Grosseto")))));
+	}
+
+	private static Policies fourthScenario() {
+		return new Policies()
+			.add(rabbitServicePolicy())
+			.add(new Policy(
+				courier("FastAndFurious"),
+				new Rules()
+					.add(new Rule(
+						addrInfo("Prato"),
+						new ExpressionWithDescription(
+							attributes -> {
+								var timeHour = (int) attributes.name("timeHour");
+								return timeHour > 7 && timeHour < 20 &&
+									attributes.name("position").equals("Prato");
+							},
+							"timeHour > 7 and timeHour < 20 and position = Prato"),
+						new SingleExchange(me(), addrInfo("Pisa"),
+							anySuchThat(courier("RabbitService")))))))
+			.add(new Policy(
+				courier("RabbitService"),
+				new Rules()
+					.add(new Rule(addrInfo("Grosseto")))
+					.add(new Rule(
+						addrInfo("Pisa"),
+						new SingleExchange(
+							anySuchThat(courier("RabbitService")),
+							new Attributes()
+								.add("type", "addrInfo"),
+							requester())))));
+	}
+
+	private static Policy rabbitServicePolicy() {
+		return new Policy(
+			courier("RabbitService"),
+			new Rules()
+				.add(new Rule(
+					addrInfo("Lucca"),
+					new ExpressionWithDescription(
+						attributes -> attributes.name("company").equals("RabbitService"),
+						"company = RabbitService")))
+				.add(new Rule(
+					addrInfo("Lucca"),
+					new ExpressionWithDescription(
+						attributes -> !attributes.name("company").equals("RabbitService"),
+						"company != RabbitService"),
+					new SingleExchange(me(), addrInfo("Prato"), requester()))));
+	}
+
+	private static Attributes courier(String company) {
+		return new Attributes()
+			.add("service", "delivery")
+			.add("company", company);
+	}
+
+	private static Attributes addrInfo(String city) {
+		return new Attributes()
+			.add("type", "addrInfo")
+			.add("city", city);
+	}
+}
@@ -0,0 +1,59 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.AttributeMatcher;
+import colpo.core.DefaultRequestComply;
+import colpo.core.Policies;
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.semantics.Semantics;
+import colpo.core.semantics.TraceSink;
+
+/**
+ * {@link Semantics#evaluate(Request)} on policies with dead rules (see
+ * {@link ScaledScenarios#deadRulesPolicies(int, int)}), which are skipped,
+ * and evaluating all the rules, with a custom request comply that is
+ * equivalent to the default one.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class DeadRulesBenchmark {
+
+	@Param({"10", "100"})
+	private int parties;
+
+	@Param({"1", "10"})
+	private int deadRules;
+
+	private Semantics skipping;
+	private Semantics evaluatingAll;
+	private Request request;
+
+	@Setup
+	public void setup() {
+		Policies policies = ScaledScenarios.deadRulesPolicies(parties, deadRules);
+		skipping = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP);
+		var requestComply = new DefaultRequestComply(new AttributeMatcher());
+		evaluatingAll = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP)
+			.requestComply(requestComply::test);
+		request = ScaledScenarios.request();
+	}
+
+	@Benchmark
+	public Result skipping() {
+		return skipping.evaluate(request);
+	}
+
+	@Benchmark
+	public Result evaluatingAll() {
+		return evaluatingAll.evaluate(request);
+	}
+}
@@ -0,0 +1,48 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.semantics.Semantics;
+import colpo.core.semantics.TraceSink;
+
+/**
+ * {@link Semantics#evaluate(Request)} on policies that only grant resources
+ * (see {@link ScaledScenarios#grantOnlyPolicies(int, int, boolean)}), with
+ * trivial rules, decided by the resource match alone, and with equivalent
+ * rules whose condition must be evaluated.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class GrantOnlyBenchmark {
+
+	@Param({"10", "100"})
+	private int parties;
+
+	@Param({"1", "10"})
+	private int rules;
+
+	@Param({"true", "false"})
+	private boolean trivial;
+
+	private Semantics semantics;
+	private Request request;
+
+	@Setup
+	public void setup() {
+		semantics = new Semantics(ScaledScenarios.grantOnlyPolicies(parties, rules, trivial))
+			.traceSink(TraceSink.NO_OP);
+		request = ScaledScenarios.grantRequest();
+	}
+
+	@Benchmark
+	public Result evaluate() {
+		return semantics.evaluate(request);
+	}
+}
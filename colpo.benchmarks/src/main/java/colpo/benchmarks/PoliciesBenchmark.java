@@ -0,0 +1,51 @@
+package colpo.benchmarks;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.AttributeMatcher;
+import colpo.core.Attributes;
+import colpo.core.Policies;
+import colpo.core.Policies.PolicyData;
+
+/**
+ * Finding the policies whose party matches some attributes, by scanning
+ * all the policies (as done for tracing) and through the index.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class PoliciesBenchmark {
+
+	@Param({"10", "100", "1000"})
+	private int parties;
+
+	private Policies policies;
+	private AttributeMatcher matcher = new AttributeMatcher();
+	private Attributes party;
+
+	@Setup
+	public void setup() {
+		policies = ScaledScenarios.policies(parties, 1, 0);
+		party = new Attributes()
+			.add("role", "party")
+			.add("id", parties / 2);
+	}
+
+	@Benchmark
+	public List<PolicyData> scan() {
+		return policies.getPolicyData()
+			.filter(d -> matcher.match(party, d.policy().party()))
+			.toList();
+	}
+
+	@Benchmark
+	public List<PolicyData> indexed() {
+		return policies.getPolicyData(party).toList();
+	}
+}
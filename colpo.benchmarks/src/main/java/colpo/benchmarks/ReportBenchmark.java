@@ -0,0 +1,70 @@
+package colpo.benchmarks;
+
+import static colpo.core.Participants.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.Attributes;
+import colpo.core.Policies;
+import colpo.core.Request;
+import colpo.core.semantics.FixpointSemantics;
+import colpo.core.semantics.Semantics;
+import colpo.core.semantics.TraceSink;
+
+/**
+ * A report of who can get what from whom on the {@link ScaledScenarios}:
+ * evaluating all the requests one by one with {@link Semantics} and
+ * computing the whole relation with {@link FixpointSemantics}.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+
+	@Param({"10", "50"})
+	private int parties;
+
+	@Param({"5"})
+	private int depth;
+
+	private Policies policies;
+	private List<Request> requests;
+
+	@Setup
+	public void setup() {
+		policies = ScaledScenarios.policies(parties, 1, depth);
+		requests = new ArrayList<>();
+		for (int requester = 1; requester <= parties; requester++) {
+			for (int from = 1; from <= parties; from++) {
+				for (int level = 0; level <= depth; level++) {
+					if (requester != from) {
+						requests.add(new Request(index(requester),
+							new Attributes().add("type", "data").add("level", level),
+							index(from)));
+					}
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public List<Request> goalDirected() {
+		var semantics = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP);
+		return requests.stream()
+			.filter(request -> semantics.evaluate(request).isPermitted())
+			.toList();
+	}
+
+	@Benchmark
+	public List<Request> fixpoint() {
+		return new FixpointSemantics(policies).getPermitted();
+	}
+}
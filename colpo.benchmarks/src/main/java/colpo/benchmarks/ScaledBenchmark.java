@@ -0,0 +1,49 @@
+package colpo.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.semantics.Semantics;
+import colpo.core.semantics.Trace;
+import colpo.core.semantics.TraceSink;
+
+/**
+ * {@link Semantics#evaluate(Request)} on the {@link ScaledScenarios}.
+ *
+ * @author Lorenzo Bettini
+ */
+@State(Scope.Benchmark)
+public class ScaledBenchmark {
+
+	@Param({"10", "100"})
+	private int parties;
+
+	@Param({"1", "10"})
+	private int rules;
+
+	@Param({"1", "5"})
+	private int depth;
+
+	@Param({"true", "false"})
+	private boolean tracing;
+
+	private Semantics semantics;
+	private Request request;
+
+	@Setup
+	public void setup() {
+		semantics = new Semantics(ScaledScenarios.policies(parties, rules, depth))
+			.traceSink(tracing ? new Trace() : TraceSink.NO_OP);
+		request = ScaledScenarios.request();
+	}
+
+	@Benchmark
+	public Result evaluate() {
+		return semantics.evaluate(request);
+	}
+}
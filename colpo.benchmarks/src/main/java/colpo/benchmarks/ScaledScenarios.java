@@ -0,0 +1,189 @@
+package colpo.benchmarks;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+
+import colpo.core.Attributes;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+
+/**
+ * Synthetic scenarios with N parties, M rules per party and exchanges
+ * nested D levels deep.
+ *
+ * Every party i has M - 1 rules that never match the requested resources
+ * and a chain of rules for the resources (type : data), (level : d), with d
+ * in 1..D: the rule for level d requires party i + 1 (modulo N) to give
+ * level d + 1, while the rule for level D requires nothing. Only the last
+ * party also gives level 0, so that a request from any party has to go
+ * through all the policies before the chain of exchanges is evaluated.
+ *
+ * @author Lorenzo Bettini
+ */
+public class ScaledScenarios {
+
+	private ScaledScenarios() {
+		// Only static methods
+	}
+
+	public static Request request() {
+		return new Request(
+			index(1),
+			data(0),
+			anySuchThat(new Attributes().add("role", "party")));
+	}
+
+	public static Policies policies(int parties, int rules, int depth) {
+		var policies = new Policies();
+		for (int i = 1; i <= parties; i++) {
+			var partyRules = new Rules();
+			for (int j = 1; j < rules; j++) {
+				partyRules.add(new Rule(new Attributes()
+					.add("type", "other" + j)));
+			}
+			var first = i == parties ? 0 : 1;
+			for (int level = first; level <= depth; level++) {
+				partyRules.add(level == depth ?
+					new Rule(data(level)) :
+					new Rule(data(level),
+						new SingleExchange(me(), data(level + 1),
+							anySuchThat(party(i % parties + 1)))));
+			}
+			policies.add(new Policy(party(i), partyRules));
+		}
+		return policies;
+	}
+
+	/**
+	 * Policies without exchanges: every party i has M - 1 rules that never
+	 * match the requested resource and a rule that grants it, so that
+	 * {@link #grantRequest()} is permitted after evaluating one rule for each
+	 * party.
+	 *
+	 * @param parties
+	 * @param rules
+	 * @param trivial if false, every rule has the condition "context -> true",
+	 * which is equivalent to the default one, but must be evaluated
+	 */
+	public static Policies grantOnlyPolicies(int parties, int rules, boolean trivial) {
+		var policies = new Policies();
+		for (int i = 1; i <= parties; i++) {
+			var partyRules = new Rules();
+			for (int j = 1; j < rules; j++) {
+				partyRules.add(grant(new Attributes().add("type", "other" + j), trivial));
+			}
+			partyRules.add(grant(data(0), trivial));
+			policies.add(new Policy(party(i), partyRules));
+		}
+		return policies;
+	}
+
+	/**
+	 * Every party i has D dead rules for the requested resource, requiring the
+	 * requester to give a resource that no one gives, and, only for the last
+	 * party, a rule that grants it, so that {@link #request()} is permitted
+	 * after evaluating the dead rules of all the parties, unless they are
+	 * skipped.
+	 *
+	 * @param parties
+	 * @param deadRules
+	 */
+	public static Policies deadRulesPolicies(int parties, int deadRules) {
+		var policies = new Policies();
+		for (int i = 1; i <= parties; i++) {
+			var partyRules = new Rules();
+			for (int j = 1; j <= deadRules; j++) {
+				partyRules.add(new Rule(data(0),
+					new SingleExchange(me(), new Attributes().add("type", "missing" + j),
+						requester())));
+			}
+			if (i == parties) {
+				partyRules.add(new Rule(data(0)));
+			}
+			policies.add(new Policy(party(i), partyRules));
+		}
+		return policies;
+	}
+
+	/**
+	 * Every party gives the requested resource, through M alternative rules,
+	 * each one requiring the requester to give a different resource, which
+	 * every party gives, so that {@link #request()} has N - 1 times M
+	 * solutions.
+	 *
+	 * @param parties
+	 * @param alternatives
+	 */
+	public static Policies alternativesPolicies(int parties, int alternatives) {
+		var policies = new Policies();
+		for (int i = 1; i <= parties; i++) {
+			var partyRules = new Rules();
+			for (int j = 1; j <= alternatives; j++) {
+				partyRules.add(new Rule(data(0),
+					new SingleExchange(me(), new Attributes().add("type", "other" + j),
+						requester())));
+				partyRules.add(new Rule(new Attributes().add("type", "other" + j)));
+			}
+			policies.add(new Policy(party(i), partyRules));
+		}
+		return policies;
+	}
+
+	/**
+	 * Every party i has M - 1 rules for the requested resource that fail,
+	 * since they require the requester to give a resource, which she gives
+	 * only under a condition that never holds, and, only for the last party,
+	 * a last rule that grants the resource, so that {@link #request()} is
+	 * permitted after evaluating all the rules of all the parties, in the
+	 * strict order.
+	 *
+	 * @param parties
+	 * @param rules
+	 */
+	public static Policies lastRuleWinsPolicies(int parties, int rules) {
+		var policies = new Policies();
+		for (int i = 1; i <= parties; i++) {
+			var partyRules = new Rules();
+			for (int j = 1; j < rules; j++) {
+				partyRules.add(new Rule(data(0),
+					new SingleExchange(me(), data(j), requester())));
+				partyRules.add(new Rule(data(j), context -> false));
+			}
+			if (i == parties) {
+				partyRules.add(new Rule(data(0)));
+			}
+			policies.add(new Policy(party(i), partyRules));
+		}
+		return policies;
+	}
+
+	public static Request grantRequest() {
+		return new Request(
+			index(1),
+			data(0),
+			allSuchThat(new Attributes().add("role", "party")));
+	}
+
+	private static Rule grant(Attributes resource, boolean trivial) {
+		return trivial ? new Rule(resource) : new Rule(resource, context -> true);
+	}
+
+	private static Attributes party(int i) {
+		return new Attributes()
+			.add("role", "party")
+			.add("id", i);
+	}
+
+	private static Attributes data(int level) {
+		return new Attributes()
+			.add("type", "data")
+			.add("level", level);
+	}
+}
@@ -10,12 +10,34 @@ import java.util.Objects;
  */
 public class AttributeMatcher {
 
+	/**
+	 * Whether all the names of the first attributes have the same value in the
+	 * second ones (a missing name has the null value), computed with a
+	 * merge-walk over the names, which are sorted by id.
+	 *
+	 * @param attributes1
+	 * @param attributes2
+	 * @return
+	 */
 	public boolean match(Attributes attributes1, Attributes attributes2) {
-		if (attributes1.isEmpty()) {
+		// the same attributes, e.g., frozen ones shared by requests
+		if (attributes1 == attributes2 || attributes1.isEmpty()) {
 			return true;
 		}
-		return attributes1.names().stream()
-				.allMatch(n -> Objects.equals(attributes1.name(n), attributes2.name(n)));
+		var size1 = attributes1.size();
+		var size2 = attributes2.size();
+		int j = 0;
+		for (int i = 0; i < size1; i++) {
+			var id = attributes1.idAt(i);
+			while (j < size2 && attributes2.idAt(j) < id) {
+				j++;
+			}
+			var value2 = j < size2 && attributes2.idAt(j) == id ? attributes2.valueAt(j) : null;
+			if (!Objects.equals(attributes1.valueAt(i), value2)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 }
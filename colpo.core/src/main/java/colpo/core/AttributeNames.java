@@ -0,0 +1,70 @@
+package colpo.core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The global symbol table of attribute names, mapping each name to a small
+ * int, so that {@link Attributes} can be stored and compared by name ids.
+ *
+ * Ids are assigned in order of first use, and are never released.
+ *
+ * @author Lorenzo Bettini
+ */
+public final class AttributeNames {
+
+	private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+
+	/**
+	 * An id is published in {@link #IDS} only after its name has been stored
+	 * here.
+	 */
+	private static volatile String[] names = new String[64];
+
+	private AttributeNames() {
+		// Only static methods
+	}
+
+	/**
+	 * @param name
+	 * @return the id of the name, assigning a new one if the name has never
+	 * been used
+	 */
+	public static int intern(String name) {
+		var id = IDS.get(name);
+		if (id != null) {
+			return id;
+		}
+		return register(name);
+	}
+
+	/**
+	 * @param name
+	 * @return the id of the name, or -1 if the name has never been used
+	 */
+	public static int lookup(String name) {
+		var id = IDS.get(name);
+		return id != null ? id : -1;
+	}
+
+	public static String name(int id) {
+		return names[id];
+	}
+
+	private static synchronized int register(String name) {
+		var id = IDS.get(name);
+		if (id != null) {
+			return id;
+		}
+		var newId = IDS.size();
+		var current = names;
+		if (newId == current.length) {
+			current = Arrays.copyOf(current, newId * 2);
+		}
+		current[newId] = name;
+		names = current;
+		IDS.put(name, newId);
+		return newId;
+	}
+}
@@ -3,52 +3,226 @@
  */
 package colpo.core;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
+ * Stored as parallel arrays of name ids (see {@link AttributeNames}),
+ * sorted, and values, so that two {@link Attributes} can be matched with a
+ * merge-walk (see {@link AttributeMatcher}); the insertion order of names
+ * is kept as well, for {@link #names()} and {@link #toString()}.
+ *
+ * A frozen copy (see {@link #frozen()}) cannot be modified and computes its
+ * hash code only once, so it is cheap to use in sets and as a key.
+ *
+ * Attributes that are not frozen can still be modified after being added to
+ * {@link Policies} (as a party) or to {@link Rules} (in a rule), which are
+ * notified (see {@link #whenChanged(Runnable)}), so that their indexes and
+ * their version are updated.
+ *
  * @author Lorenzo Bettini
  */
 public class Attributes {
 
-	private Map<String, Object> attributeMap = new LinkedHashMap<>();
+	private static final int[] NO_IDS = {};
+	private static final Object[] NO_VALUES = {};
+
+	private int[] ids = NO_IDS;
+	private Object[] values = NO_VALUES;
+	private int[] insertionOrder = NO_IDS;
+
+	private boolean frozen = false;
+	private int hash;
+
+	/**
+	 * Created only when needed, since most attributes are never added to
+	 * policies or rules.
+	 */
+	private List<Runnable> listeners = null;
 
 	public Attributes add(String attributeName, Object attributeValue) {
-		Object previous = attributeMap.put(attributeName, attributeValue);
-		if (previous != null) {
-			throw new IllegalArgumentException(
-				String.format("'%s' is already present as '%s'", attributeName, previous));
+		if (frozen) {
+			throw new UnsupportedOperationException("cannot add an attribute to frozen attributes");
+		}
+		var id = AttributeNames.intern(attributeName);
+		var position = Arrays.binarySearch(ids, id);
+		if (position >= 0) {
+			var previous = values[position];
+			if (previous != null) {
+				throw new IllegalArgumentException(
+					String.format("'%s' is already present as '%s'", attributeName, previous));
+			}
+			// like a map, a name with a null value keeps its position
+			values[position] = attributeValue;
+			changed();
+			return this;
 		}
+		var insertionPoint = -position - 1;
+		var size = ids.length;
+		var newIds = new int[size + 1];
+		var newValues = new Object[size + 1];
+		System.arraycopy(ids, 0, newIds, 0, insertionPoint);
+		System.arraycopy(values, 0, newValues, 0, insertionPoint);
+		newIds[insertionPoint] = id;
+		newValues[insertionPoint] = attributeValue;
+		System.arraycopy(ids, insertionPoint, newIds, insertionPoint + 1, size - insertionPoint);
+		System.arraycopy(values, insertionPoint, newValues, insertionPoint + 1, size - insertionPoint);
+		ids = newIds;
+		values = newValues;
+		insertionOrder = Arrays.copyOf(insertionOrder, size + 1);
+		insertionOrder[size] = id;
+		changed();
 		return this;
 	}
 
+	/**
+	 * Registers an action to run each time an attribute is added; since
+	 * frozen attributes cannot be modified, nothing is registered for them.
+	 *
+	 * @param listener
+	 */
+	void whenChanged(Runnable listener) {
+		if (frozen) {
+			return;
+		}
+		if (listeners == null) {
+			listeners = new ArrayList<>(1);
+		}
+		listeners.add(listener);
+	}
+
+	private void changed() {
+		if (listeners != null) {
+			listeners.forEach(Runnable::run);
+		}
+	}
+
+	/**
+	 * @return an immutable copy of these attributes, or these attributes
+	 * if they are already frozen
+	 */
+	public Attributes frozen() {
+		if (frozen) {
+			return this;
+		}
+		var copy = new Attributes();
+		// only values are modified in place, when a null value is replaced
+		copy.ids = ids;
+		copy.values = values.clone();
+		copy.insertionOrder = insertionOrder;
+		copy.hash = computeHashCode();
+		copy.frozen = true;
+		return copy;
+	}
+
+	/**
+	 * @param attributeName
+	 * @param attributeValue
+	 * @return a frozen copy of these attributes, with the passed one added
+	 */
+	Attributes with(String attributeName, Object attributeValue) {
+		var copy = new Attributes();
+		copy.ids = ids;
+		copy.values = values.clone();
+		copy.insertionOrder = insertionOrder;
+		return copy.add(attributeName, attributeValue).frozen();
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	public Object name(String attributeName) {
-		return attributeMap.get(attributeName);
+		var id = AttributeNames.lookup(attributeName);
+		if (id < 0) {
+			return null;
+		}
+		return valueOf(id);
+	}
+
+	/**
+	 * @param id the id of a name (see {@link AttributeNames})
+	 * @return the value of the name with the given id, null if not present
+	 */
+	public Object valueOf(int id) {
+		var position = Arrays.binarySearch(ids, id);
+		return position >= 0 ? values[position] : null;
+	}
+
+	/**
+	 * @return the number of names
+	 */
+	int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @param position
+	 * @return the id of the name at the given position, in ascending order of ids
+	 */
+	int idAt(int position) {
+		return ids[position];
+	}
+
+	/**
+	 * @param position
+	 * @return the value of the name at the given position, in ascending order of ids
+	 */
+	Object valueAt(int position) {
+		return values[position];
 	}
 
 	@Override
 	public String toString() {
-		return "[" +
-			attributeMap.entrySet().stream()
-			.map(e -> String.format("(%s : %s)", e.getKey(), e.getValue()))
-			.collect(Collectors.joining(", ")) +
-			"]";
+		var builder = new StringBuilder("[");
+		for (int i = 0; i < insertionOrder.length; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			var id = insertionOrder[i];
+			builder.append(String.format("(%s : %s)", AttributeNames.name(id), valueOf(id)));
+		}
+		return builder.append("]").toString();
 	}
 
 	public boolean isEmpty() {
-		return attributeMap.isEmpty();
+		return ids.length == 0;
 	}
 
+	/**
+	 * @return an unmodifiable view of the names, in insertion order
+	 */
 	public Collection<String> names() {
-		return attributeMap.keySet();
+		var names = insertionOrder;
+		return new AbstractList<>() {
+			@Override
+			public String get(int index) {
+				return AttributeNames.name(names[index]);
+			}
+
+			@Override
+			public int size() {
+				return names.length;
+			}
+		};
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(attributeMap);
+		return frozen ? hash : computeHashCode();
+	}
+
+	private int computeHashCode() {
+		// the same as the one of a map from names to values
+		var hash = 0;
+		for (int i = 0; i < ids.length; i++) {
+			hash += AttributeNames.name(ids[i]).hashCode() ^ Objects.hashCode(values[i]);
+		}
+		return hash;
 	}
 
 	@Override
@@ -60,6 +234,10 @@ public class Attributes {
 			return false;
 		}
 		Attributes other = (Attributes) obj;
-		return Objects.equals(attributeMap, other.attributeMap);
+		if (frozen && other.frozen && hash != other.hash) {
+			return false;
+		}
+		return Arrays.equals(ids, other.ids) &&
+				Arrays.equals(values, other.values);
 	}
 }
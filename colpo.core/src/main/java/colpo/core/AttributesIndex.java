@@ -0,0 +1,67 @@
+package colpo.core;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An inverted index from (attribute name, attribute value) to the set of
+ * indexes of the {@link Attributes} that have been added.
+ *
+ * The indexes returned by {@link #matching(Attributes)} are exactly the ones
+ * for which {@link AttributeMatcher#match(Attributes, Attributes)} holds,
+ * using the passed attributes as the first argument and the indexed ones as
+ * the second argument.
+ *
+ * @author Lorenzo Bettini
+ */
+public class AttributesIndex {
+
+	/**
+	 * By name id, see {@link AttributeNames}.
+	 */
+	private Map<Integer, Map<Object, BitSet>> postings = new HashMap<>();
+	private BitSet indexes = new BitSet();
+
+	public void add(int index, Attributes attributes) {
+		indexes.set(index);
+		for (int i = 0; i < attributes.size(); i++) {
+			var value = attributes.valueAt(i);
+			// a null value is matched by a missing name, see matching
+			if (value != null) {
+				postings.computeIfAbsent(attributes.idAt(i), key -> new HashMap<>())
+					.computeIfAbsent(value, key -> new BitSet())
+					.set(index);
+			}
+		}
+	}
+
+	/**
+	 * Intersects the posting lists of the passed attributes.
+	 *
+	 * @param attributes
+	 * @return a fresh set of the matching indexes (iterated in index order)
+	 */
+	public BitSet matching(Attributes attributes) {
+		var result = (BitSet) indexes.clone();
+		for (int i = 0; i < attributes.size(); i++) {
+			if (result.isEmpty()) {
+				break;
+			}
+			var values = postings.getOrDefault(attributes.idAt(i), Map.of());
+			var value = attributes.valueAt(i);
+			if (value == null) {
+				// only the ones without a value for this name match
+				values.values().forEach(result::andNot);
+			} else {
+				var posting = values.get(value);
+				if (posting == null) {
+					result.clear();
+				} else {
+					result.and(posting);
+				}
+			}
+		}
+		return result;
+	}
+}
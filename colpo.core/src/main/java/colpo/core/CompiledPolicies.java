@@ -0,0 +1,354 @@
+package colpo.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, array-backed form of {@link Policies}, built with
+ * {@link Policies#compile()}, that can be evaluated without re-deriving its
+ * structure at each step: rules are kept in flat tables with their own
+ * indexes, conditions built from {@link Expression}s are optimized,
+ * exchanges are resolved into trees of {@link CompiledExchange}, and
+ * the participants that do not depend on the request (me() and quantified
+ * participants of exchanges) are resolved into the indexes of the matching
+ * policies. The attributes of parties and resources are frozen (see
+ * {@link Attributes#frozen()}).
+ *
+ * Since it is immutable, it does not see the policies added afterwards to
+ * the {@link Policies} it has been built from, nor the later modifications
+ * of their attributes: these must be compiled again.
+ *
+ * The policies matched by the attributes of quantified participants are
+ * cached (see {@link #resolve(Attributes)}) and shared by all the
+ * evaluations of these compiled policies; since adding a policy requires a
+ * new compilation, the cache is never stale.
+ *
+ * Like {@link Policies}, it is indexed starting from 1, not from 0.
+ *
+ * @author Lorenzo Bettini
+ */
+public class CompiledPolicies {
+
+	/**
+	 * @param index
+	 * @param party
+	 * @param rules the rules in rule index order, that is, the rule with index
+	 * i is at position i - 1
+	 */
+	public static record CompiledPolicy(int index, Attributes party, List<CompiledRule> rules,
+			RulesIndex rulesIndex) {
+
+		public CompiledRule getRule(int ruleIndex) {
+			return rules.get(ruleIndex - 1);
+		}
+
+		/**
+		 * @see Rules#getCandidateIndexes(Attributes)
+		 */
+		public BitSet getCandidateIndexes(Attributes resource) {
+			return rulesIndex.candidates(resource);
+		}
+
+		/**
+		 * @return the candidates that are not dead (see {@link ExchangeGraph})
+		 */
+		public BitSet getLiveCandidateIndexes(Attributes resource) {
+			var candidates = rulesIndex.candidates(resource);
+			candidates.andNot(rulesIndex.deadIndexes);
+			return candidates;
+		}
+
+		public boolean isDead(int ruleIndex) {
+			return rulesIndex.deadIndexes.get(ruleIndex);
+		}
+	}
+
+	/**
+	 * The index of the rules' resource attributes of a compiled policy.
+	 */
+	public static class RulesIndex {
+
+		private AttributesIndex resourceIndex = new AttributesIndex();
+		private BitSet emptyResourceIndexes = new BitSet();
+		private BitSet deadIndexes = new BitSet();
+
+		private RulesIndex() {
+		}
+
+		private void add(int index, Attributes resource) {
+			resourceIndex.add(index, resource);
+			if (resource.isEmpty()) {
+				emptyResourceIndexes.set(index);
+			}
+		}
+
+		BitSet candidates(Attributes resource) {
+			var candidates = resourceIndex.matching(resource);
+			candidates.or(emptyResourceIndexes);
+			return candidates;
+		}
+	}
+
+	/**
+	 * What is needed to decide a rule, once its resource matches.
+	 */
+	public enum RuleKind {
+		/**
+		 * The condition is always true and there is no exchange: the rule is
+		 * decided by the resource match alone.
+		 */
+		TRIVIAL,
+		/**
+		 * The condition must be evaluated, but there is no exchange.
+		 */
+		CONDITION_ONLY,
+		/**
+		 * The rule requires an exchange.
+		 */
+		EXCHANGE_BEARING
+	}
+
+	/**
+	 * @param policyIndex
+	 * @param index
+	 * @param resource
+	 * @param condition
+	 * @param slots the names read by the condition, bound to their slots
+	 * @param exchange null if the rule does not require an exchange
+	 * @param kind
+	 * @param name how the rule is shown in traces, e.g., "rule 2.1"
+	 */
+	public static record CompiledRule(int policyIndex, int index, Attributes resource,
+			ExpressionCode condition, NameSlots slots, CompiledExchange exchange, RuleKind kind,
+			String name) {
+
+		public boolean isTrivial() {
+			return kind == RuleKind.TRIVIAL;
+		}
+	}
+
+	/**
+	 * An {@link Exchange} with its participants resolved.
+	 */
+	public sealed interface CompiledExchange {
+
+		/**
+		 * @return the original exchange, e.g., for traces
+		 */
+		Exchange exchange();
+	}
+
+	public static record CompiledOrExchange(OrExchange exchange,
+			CompiledExchange left, CompiledExchange right) implements CompiledExchange {
+
+	}
+
+	public static record CompiledAndExchange(AndExchange exchange,
+			CompiledExchange left, CompiledExchange right) implements CompiledExchange {
+
+	}
+
+	/**
+	 * @param exchange a copy of the original exchange with a frozen resource,
+	 * shared by the requests generated for the exchange
+	 * @param to
+	 * @param from
+	 */
+	public static record CompiledSingleExchange(SingleExchange exchange,
+			CompiledParticipant to, CompiledParticipant from) implements CompiledExchange {
+
+	}
+
+	/**
+	 * A participant of an exchange, resolved, unless it is the requester, into
+	 * the indexes of the policies it stands for.
+	 */
+	public static class CompiledParticipant {
+
+		private final Participant participant;
+		private final boolean me;
+		private final boolean requester;
+		private final IndexSet indexes;
+
+		private CompiledParticipant(Participant participant, boolean me, boolean requester, IndexSet indexes) {
+			this.participant = participant;
+			this.me = me;
+			this.requester = requester;
+			this.indexes = indexes;
+		}
+
+		public Participant participant() {
+			return participant;
+		}
+
+		public boolean isMe() {
+			return me;
+		}
+
+		public boolean isRequester() {
+			return requester;
+		}
+
+		public boolean isAll() {
+			return participant.isAll();
+		}
+
+		/**
+		 * @return the indexes of the policies this participant stands for;
+		 * empty for the requester
+		 */
+		public IndexSet indexes() {
+			return indexes;
+		}
+	}
+
+	private final CompiledPolicy[] policies;
+	private final IndexParticipant[] participants;
+	private final AttributesIndex partyIndex = new AttributesIndex();
+	private final long version;
+	private final ExchangeGraph exchangeGraph;
+
+	/**
+	 * The maximum number of cached resolutions: attributes of requests
+	 * are not under our control.
+	 */
+	private static final int MAX_RESOLUTIONS = 1024;
+
+	/**
+	 * Keyed by frozen attributes, whose hash code is cached.
+	 */
+	private final Map<Attributes, IndexSet> resolutions = new ConcurrentHashMap<>();
+
+	CompiledPolicies(Policies source) {
+		version = source.getVersion();
+		var policyData = source.getPolicyData().toList();
+		var size = policyData.size();
+		participants = new IndexParticipant[size + 1];
+		for (var d : policyData) {
+			participants[d.index()] = Participants.index(d.index());
+			partyIndex.add(d.index(), d.policy().party());
+		}
+		policies = new CompiledPolicy[size];
+		for (var d : policyData) {
+			policies[d.index() - 1] = compile(d.index(), d.policy());
+		}
+		exchangeGraph = new ExchangeGraph(this);
+		for (var rule : exchangeGraph.getDeadRules()) {
+			getByIndex(rule.policyIndex()).rulesIndex().deadIndexes.set(rule.index());
+		}
+	}
+
+	private CompiledPolicy compile(int policyIndex, Policy policy) {
+		var rules = new ArrayList<CompiledRule>();
+		var rulesIndex = new RulesIndex();
+		policy.rules().getRuleData().forEach(r -> {
+			var rule = r.rule();
+			var condition = rule.getCondition() instanceof ExpressionCondition expressionCondition ?
+				expressionCondition.optimize() : rule.getCondition();
+			var exchange = compile(policyIndex, rule.getExchange());
+			rules.add(new CompiledRule(policyIndex, r.index(), rule.getResource().frozen(), condition,
+				NameSlots.of(condition.names()),
+				exchange,
+				kindOf(condition, exchange),
+				String.format("rule %d.%d", policyIndex, r.index())));
+			rulesIndex.add(r.index(), rule.getResource());
+		});
+		return new CompiledPolicy(policyIndex, policy.party().frozen(), List.copyOf(rules), rulesIndex);
+	}
+
+	private static RuleKind kindOf(ExpressionCode condition, CompiledExchange exchange) {
+		if (exchange != null) {
+			return RuleKind.EXCHANGE_BEARING;
+		}
+		var alwaysTrue = condition == Rule.TRUE ||
+			condition instanceof ExpressionCondition expressionCondition && expressionCondition.isTrue();
+		return alwaysTrue ? RuleKind.TRIVIAL : RuleKind.CONDITION_ONLY;
+	}
+
+	private CompiledExchange compile(int policyIndex, Exchange exchange) {
+		return switch (exchange) {
+		case OrExchange e -> new CompiledOrExchange(e,
+			compile(policyIndex, e.left()), compile(policyIndex, e.right()));
+		case AndExchange e -> new CompiledAndExchange(e,
+			compile(policyIndex, e.left()), compile(policyIndex, e.right()));
+		case SingleExchange e -> new CompiledSingleExchange(
+			new SingleExchange(e.to(), e.resource().frozen(), e.from()),
+			compileTo(policyIndex, e.to()), compileFrom(e.from()));
+		case null -> null;
+		};
+	}
+
+	private CompiledParticipant compileTo(int policyIndex, ExchangeToParticipant to) {
+		if (to.isMe()) {
+			return new CompiledParticipant(to, true, false, IndexSet.of(policyIndex));
+		}
+		return new CompiledParticipant(to, false, false, resolve(to.getAttributes()));
+	}
+
+	private CompiledParticipant compileFrom(ExchangeFromParticipant from) {
+		if (from.isRequester()) {
+			return new CompiledParticipant(from, false, true, IndexSet.EMPTY);
+		}
+		return new CompiledParticipant(from, false, false, resolve(from.getAttributes()));
+	}
+
+	/**
+	 * @return the version of the {@link Policies} this has been compiled from
+	 * (see {@link Policies#getVersion()})
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public int size() {
+		return policies.length;
+	}
+
+	public ExchangeGraph getExchangeGraph() {
+		return exchangeGraph;
+	}
+
+	public CompiledPolicy getByIndex(int i) {
+		return policies[i - 1];
+	}
+
+	/**
+	 * @param i
+	 * @return the same participant for the same index of a policy
+	 */
+	public IndexParticipant participant(int i) {
+		if (i > 0 && i < participants.length) {
+			return participants[i];
+		}
+		return Participants.index(i);
+	}
+
+	/**
+	 * The indexes of the policies whose party is matched by the passed
+	 * attributes, e.g., of a quantified participant, looked up in the cache
+	 * of resolutions, and computed and cached if not present.
+	 *
+	 * @param attributes
+	 * @return
+	 */
+	public IndexSet resolve(Attributes attributes) {
+		var resolution = resolutions.get(attributes);
+		if (resolution == null) {
+			resolution = IndexSet.of(getMatchingIndexes(attributes));
+			if (resolutions.size() < MAX_RESOLUTIONS) {
+				resolutions.putIfAbsent(attributes.frozen(), resolution);
+			}
+		}
+		return resolution;
+	}
+
+	/**
+	 * @see Policies#getMatchingIndexes(Attributes)
+	 */
+	public BitSet getMatchingIndexes(Attributes attributes) {
+		return partyIndex.matching(attributes);
+	}
+}
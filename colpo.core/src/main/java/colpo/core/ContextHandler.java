@@ -3,25 +3,47 @@
  */
 package colpo.core;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * The context of a party is frozen (see {@link Attributes#frozen()}) and
+ * replaced by a new one each time an attribute is added to it, so that the
+ * version of the context changes, and evaluations in progress keep reading
+ * the context they started with.
+ *
  * @author Lorenzo Bettini
  */
 public class ContextHandler {
 
-	private Map<Integer, Attributes> context = new LinkedHashMap<>();
+	private static final Attributes EMPTY_CONTEXT = new Attributes().frozen();
+
+	private Map<Integer, Attributes> context = new ConcurrentHashMap<>();
+	private Map<Integer, Long> versions = new ConcurrentHashMap<>();
 
+	/**
+	 * @param partyIndex
+	 * @return the current context of the party, which cannot be modified:
+	 * attributes are added with {@link #add(int, String, Object)}
+	 */
 	public Attributes ofParty(int partyIndex) {
-		return context.computeIfAbsent(partyIndex,
-				key -> new Attributes());
+		return context.getOrDefault(partyIndex, EMPTY_CONTEXT);
 	}
 
 	public ContextHandler add(int partyIndex, String attributeName, Object attributeValue) {
-		ofParty(partyIndex)
-			.add(attributeName, attributeValue);
+		context.compute(partyIndex, (key, attributes) ->
+			(attributes == null ? EMPTY_CONTEXT : attributes).with(attributeName, attributeValue));
+		versions.merge(partyIndex, 1L, Long::sum);
 		return this;
 	}
 
+	/**
+	 * @param partyIndex
+	 * @return a number that changes each time an attribute is added to the
+	 * context of the given party
+	 */
+	public long getVersion(int partyIndex) {
+		return versions.getOrDefault(partyIndex, 0L);
+	}
+
 }
@@ -0,0 +1,32 @@
+package colpo.core;
+
+/**
+ * The cost of a request collected by an evaluation, e.g., of giving the
+ * requested resource, used to choose among the ways a request can be
+ * permitted; costs must not be negative.
+ *
+ * @author Lorenzo Bettini
+ */
+@FunctionalInterface
+public interface CostModel {
+
+	double cost(Request request);
+
+	/**
+	 * @param result
+	 * @return the sum of the costs of the collected requests
+	 */
+	default double total(Result result) {
+		return result.getRequests().stream()
+			.mapToDouble(this::cost)
+			.sum();
+	}
+
+	/**
+	 * @return the cost model where every request costs 1, so that the
+	 * cheapest result is the one with the fewest requests
+	 */
+	static CostModel requestCount() {
+		return request -> 1;
+	}
+}
@@ -21,4 +21,12 @@ public class DefaultRequestComply implements RequestComply {
 				&& matcher.match(newRequest.resource(), existingRequest.resource());
 	}
 
+	/**
+	 * Requests are partitioned by requester and from.
+	 */
+	@Override
+	public PartitionKey partitionKey(Request request) {
+		return new PartitionKey(request.requester(), request.from());
+	}
+
 }
@@ -0,0 +1,260 @@
+package colpo.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import colpo.core.CompiledPolicies.CompiledAndExchange;
+import colpo.core.CompiledPolicies.CompiledExchange;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+
+/**
+ * A static analysis of the exchanges of {@link CompiledPolicies}: the graph
+ * has an edge from a rule to each rule that can be evaluated for the
+ * requests generated by the rule's exchange, that is, the rules of the
+ * policies of the exchange's "from" whose resource matches the exchange's
+ * resource (any policy, if "from" is the requester).
+ *
+ * A rule is dead if it can never permit a request, whatever the context:
+ * its condition is always false (see {@link ExpressionCondition}), or its
+ * exchange can never be satisfied, e.g., because no rule grants the
+ * exchange's resource, or only dead rules do. Since cycles of exchanges can
+ * be satisfied, rules are assumed to be alive and marked as dead only when
+ * their exchange cannot be satisfied by alive rules; the strongly connected
+ * components of the graph are analyzed one at a time, starting from the ones
+ * that do not depend on other components.
+ *
+ * @author Lorenzo Bettini
+ */
+public class ExchangeGraph {
+
+	private final CompiledPolicies policies;
+	/**
+	 * The id of the first rule of each policy, by policy index.
+	 */
+	private final int[] firstIds;
+	private final CompiledRule[] rules;
+	private final int[][] successors;
+	private final List<List<CompiledRule>> components = new ArrayList<>();
+	private final BitSet dead = new BitSet();
+
+	ExchangeGraph(CompiledPolicies policies) {
+		this.policies = policies;
+		firstIds = new int[policies.size() + 2];
+		var allRules = new ArrayList<CompiledRule>();
+		for (int i = 1; i <= policies.size(); i++) {
+			firstIds[i] = allRules.size();
+			allRules.addAll(policies.getByIndex(i).rules());
+		}
+		firstIds[policies.size() + 1] = allRules.size();
+		rules = allRules.toArray(CompiledRule[]::new);
+		successors = new int[rules.length][];
+		for (int id = 0; id < rules.length; id++) {
+			var ruleSuccessors = new BitSet();
+			collectSuccessors(rules[id].exchange(), ruleSuccessors);
+			successors[id] = ruleSuccessors.stream().toArray();
+		}
+		for (var component : stronglyConnectedComponents()) {
+			components.add(Arrays.stream(component).mapToObj(id -> rules[id]).toList());
+			analyze(component);
+		}
+	}
+
+	private int id(CompiledRule rule) {
+		return firstIds[rule.policyIndex()] + rule.index() - 1;
+	}
+
+	private void collectSuccessors(CompiledExchange exchange, BitSet ruleSuccessors) {
+		switch (exchange) {
+		case CompiledOrExchange e -> {
+			collectSuccessors(e.left(), ruleSuccessors);
+			collectSuccessors(e.right(), ruleSuccessors);
+		}
+		case CompiledAndExchange e -> {
+			collectSuccessors(e.left(), ruleSuccessors);
+			collectSuccessors(e.right(), ruleSuccessors);
+		}
+		case CompiledSingleExchange e -> {
+			var resource = e.exchange().resource();
+			for (int from = 1; from <= policies.size(); from++) {
+				if (e.from().isRequester() || e.from().indexes().contains(from)) {
+					var candidates = policies.getByIndex(from).getCandidateIndexes(resource);
+					var first = firstIds[from];
+					candidates.stream().forEach(index -> ruleSuccessors.set(first + index - 1));
+				}
+			}
+		}
+		case null -> {
+			// no exchange
+		}
+		}
+	}
+
+	/**
+	 * Tarjan's algorithm, with an explicit stack, since chains of exchanges
+	 * can be long.
+	 *
+	 * @return the components, each one after all the components it has edges
+	 * to
+	 */
+	private List<int[]> stronglyConnectedComponents() {
+		var result = new ArrayList<int[]>();
+		var size = rules.length;
+		var order = new int[size];
+		var lowLink = new int[size];
+		var visited = new BitSet(size);
+		var onStack = new BitSet(size);
+		var componentStack = new int[size];
+		var componentStackSize = 0;
+		var callStack = new int[size];
+		var nextSuccessor = new int[size];
+		var counter = 0;
+		for (int root = 0; root < size; root++) {
+			if (visited.get(root)) {
+				continue;
+			}
+			var callStackSize = 0;
+			callStack[callStackSize++] = root;
+			visited.set(root);
+			order[root] = lowLink[root] = counter++;
+			componentStack[componentStackSize++] = root;
+			onStack.set(root);
+			while (callStackSize > 0) {
+				var node = callStack[callStackSize - 1];
+				if (nextSuccessor[node] < successors[node].length) {
+					var successor = successors[node][nextSuccessor[node]++];
+					if (!visited.get(successor)) {
+						visited.set(successor);
+						order[successor] = lowLink[successor] = counter++;
+						componentStack[componentStackSize++] = successor;
+						onStack.set(successor);
+						callStack[callStackSize++] = successor;
+					} else if (onStack.get(successor)) {
+						lowLink[node] = Math.min(lowLink[node], order[successor]);
+					}
+					continue;
+				}
+				callStackSize--;
+				if (callStackSize > 0) {
+					var parent = callStack[callStackSize - 1];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+				}
+				if (lowLink[node] == order[node]) {
+					var start = componentStackSize;
+					do {
+						start--;
+						onStack.clear(componentStack[start]);
+					} while (componentStack[start] != node);
+					var component = Arrays.copyOfRange(componentStack, start, componentStackSize);
+					Arrays.sort(component);
+					result.add(component);
+					componentStackSize = start;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The rules of the components this one has edges to have already been
+	 * analyzed; rules of this component are marked dead until nothing changes.
+	 */
+	private void analyze(int[] component) {
+		var changed = true;
+		while (changed) {
+			changed = false;
+			for (var id : component) {
+				if (!dead.get(id) && !canPermit(rules[id])) {
+					dead.set(id);
+					changed = true;
+				}
+			}
+		}
+	}
+
+	private boolean canPermit(CompiledRule rule) {
+		if (rule.condition() instanceof ExpressionCondition condition && condition.isFalse()) {
+			return false;
+		}
+		return rule.exchange() == null || canBeSatisfied(rule.exchange());
+	}
+
+	private boolean canBeSatisfied(CompiledExchange exchange) {
+		return switch (exchange) {
+		case CompiledOrExchange e -> canBeSatisfied(e.left()) || canBeSatisfied(e.right());
+		case CompiledAndExchange e -> canBeSatisfied(e.left()) && canBeSatisfied(e.right());
+		case CompiledSingleExchange e -> canBeSatisfied(e);
+		};
+	}
+
+	/**
+	 * Like the evaluation of an exchange, but a request is assumed to be
+	 * permitted if an alive rule can be evaluated for it; the requester, being
+	 * unknown, can be any policy.
+	 */
+	private boolean canBeSatisfied(CompiledSingleExchange exchange) {
+		var to = exchange.to();
+		var from = exchange.from();
+		if (to.indexes().isEmpty()) {
+			return true;
+		}
+		var resource = exchange.exchange().resource();
+		if (from.isRequester()) {
+			for (int i = 1; i <= policies.size(); i++) {
+				if (canBeSatisfied(to, i, resource)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		var fromIndexes = from.indexes();
+		if (fromIndexes.isEmpty()) {
+			return false;
+		}
+		if (from.isAll()) {
+			return fromIndexes.allMatch(i -> canBeSatisfied(to, i, resource)) &&
+				fromIndexes.anyMatch(i -> to.indexes().containsOtherThan(i));
+		}
+		return fromIndexes.anyMatch(i -> canBeSatisfied(to, i, resource));
+	}
+
+	private boolean canBeSatisfied(CompiledPolicies.CompiledParticipant to, int from, Attributes resource) {
+		if (!to.indexes().containsOtherThan(from)) {
+			return to.isAll();
+		}
+		var candidates = policies.getByIndex(from).getCandidateIndexes(resource);
+		var first = firstIds[from];
+		return candidates.stream().anyMatch(index -> !dead.get(first + index - 1));
+	}
+
+	/**
+	 * @param rule
+	 * @return the rules that can be evaluated for the requests generated by
+	 * the rule's exchange
+	 */
+	public List<CompiledRule> getSuccessors(CompiledRule rule) {
+		return Arrays.stream(successors[id(rule)]).mapToObj(id -> rules[id]).toList();
+	}
+
+	/**
+	 * @return the strongly connected components, each one after all the
+	 * components it has edges to
+	 */
+	public List<List<CompiledRule>> getComponents() {
+		return components;
+	}
+
+	public boolean isDead(CompiledRule rule) {
+		return dead.get(id(rule));
+	}
+
+	/**
+	 * @return the dead rules, in policy and rule index order
+	 */
+	public List<CompiledRule> getDeadRules() {
+		return dead.stream().mapToObj(id -> rules[id]).toList();
+	}
+}
@@ -0,0 +1,131 @@
+package colpo.core;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A sealed interface representing a condition expression that, differently
+ * from a lambda, can be inspected and optimized; use {@link Expressions} to
+ * build expressions and to turn them into an {@link ExpressionCode}.
+ *
+ * @author Lorenzo Bettini
+ */
+public sealed interface Expression {
+
+	enum UnaryOperator {
+		NOT("not "), NEGATE("-"), LENGTH("length ");
+
+		private final String symbol;
+
+		UnaryOperator(String symbol) {
+			this.symbol = symbol;
+		}
+	}
+
+	enum BinaryOperator {
+		EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="),
+		ADD("+"), SUBTRACT("-"), MULTIPLY("*"), DIVIDE("/"), MODULO("%"),
+		CONTAINS("contains"), STARTS_WITH("startsWith"), ENDS_WITH("endsWith");
+
+		private final String symbol;
+
+		BinaryOperator(String symbol) {
+			this.symbol = symbol;
+		}
+	}
+
+	/**
+	 * A reference to an attribute, resolved when evaluating the expression.
+	 */
+	record Name(String name) implements Expression {
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	record Constant(Object value) implements Expression {
+
+		@Override
+		public String toString() {
+			return value instanceof String ? "'" + value + "'" : String.valueOf(value);
+		}
+	}
+
+	record Unary(UnaryOperator operator, Expression operand) implements Expression {
+
+		@Override
+		public String toString() {
+			return operator.symbol + operand.toOperandString();
+		}
+	}
+
+	record Binary(BinaryOperator operator, Expression left, Expression right) implements Expression {
+
+		@Override
+		public String toString() {
+			return left.toOperandString() + " " + operator.symbol + " " + right.toOperandString();
+		}
+	}
+
+	record And(List<Expression> operands) implements Expression {
+
+		public And {
+			operands = List.copyOf(operands);
+		}
+
+		@Override
+		public String toString() {
+			return operands.stream()
+				.map(Expression::toOperandString)
+				.collect(Collectors.joining(" and "));
+		}
+	}
+
+	record Or(List<Expression> operands) implements Expression {
+
+		public Or {
+			operands = List.copyOf(operands);
+		}
+
+		@Override
+		public String toString() {
+			return operands.stream()
+				.map(Expression::toOperandString)
+				.collect(Collectors.joining(" or "));
+		}
+	}
+
+	/**
+	 * @return the names of the attributes read by this expression, in order
+	 * of appearance, without duplicates
+	 */
+	default List<String> names() {
+		var names = new LinkedHashSet<String>();
+		collectNames(this, names);
+		return List.copyOf(names);
+	}
+
+	private static void collectNames(Expression expression, LinkedHashSet<String> names) {
+		switch (expression) {
+		case Name(var name) -> names.add(name);
+		case Constant c -> {
+			// no names
+		}
+		case Unary(var operator, var operand) -> collectNames(operand, names);
+		case Binary(var operator, var left, var right) -> {
+			collectNames(left, names);
+			collectNames(right, names);
+		}
+		case And(var operands) -> operands.forEach(e -> collectNames(e, names));
+		case Or(var operands) -> operands.forEach(e -> collectNames(e, names));
+		}
+	}
+
+	private String toOperandString() {
+		return this instanceof Name || this instanceof Constant || this instanceof Unary ?
+			toString() : "(" + this + ")";
+	}
+}
@@ -1,9 +1,22 @@
 package colpo.core;
 
+import java.util.List;
+
 /**
  * @author Lorenzo Bettini
  */
 @FunctionalInterface
 public interface ExpressionCode {
 	boolean evaluate(AttributesResolver context) throws Exception; // NOSONAR
+
+	/**
+	 * The names of attributes this expression is known to read, so that they
+	 * can be bound in advance (see {@link NameSlots}); names not declared
+	 * here can be read all the same.
+	 *
+	 * @return by default, no names
+	 */
+	default List<String> names() {
+		return List.of();
+	}
 }
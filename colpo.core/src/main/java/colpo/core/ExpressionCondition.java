@@ -0,0 +1,83 @@
+package colpo.core;
+
+import java.util.List;
+
+/**
+ * An {@link ExpressionCode} built from an {@link Expression}, see
+ * {@link Expressions#condition(Expression)}; it is shown as the expression
+ * as it has been written, even when evaluating an optimized version.
+ *
+ * @author Lorenzo Bettini
+ */
+public class ExpressionCondition implements ExpressionCode {
+
+	private final Expression expression;
+	private final Expression evaluated;
+
+	ExpressionCondition(Expression expression) {
+		this(expression, expression);
+	}
+
+	private ExpressionCondition(Expression expression, Expression evaluated) {
+		this.expression = expression;
+		this.evaluated = evaluated;
+	}
+
+	@Override
+	public boolean evaluate(AttributesResolver context) throws Exception {
+		return ExpressionEvaluator.toBoolean(ExpressionEvaluator.evaluate(evaluated, context));
+	}
+
+	/**
+	 * @return the same condition, but evaluating the expression optimized
+	 * with constant folding and cheapest-first ordering of the operands, see
+	 * {@link ExpressionOptimizer#optimizeCondition(Expression)}; it holds
+	 * exactly when this condition holds, but it might raise a different error
+	 * when this condition is false, or be false when this condition raises an
+	 * error
+	 */
+	public ExpressionCondition optimize() {
+		return new ExpressionCondition(expression, ExpressionOptimizer.optimizeCondition(expression));
+	}
+
+	public Expression getExpression() {
+		return expression;
+	}
+
+	/**
+	 * @return the expression that is actually evaluated
+	 */
+	public Expression getEvaluated() {
+		return evaluated;
+	}
+
+	/**
+	 * @return whether the evaluated expression is the constant true, e.g.,
+	 * after optimizing an expression that does not read any name
+	 */
+	public boolean isTrue() {
+		return evaluated instanceof Expression.Constant(var value) && Boolean.TRUE.equals(value);
+	}
+
+	/**
+	 * @return whether the evaluated expression is a constant that is not
+	 * true, so that the condition never holds
+	 */
+	public boolean isFalse() {
+		return evaluated instanceof Expression.Constant(var value) && !Boolean.TRUE.equals(value);
+	}
+
+	/**
+	 * The names read by the expression as it has been written: optimizations
+	 * might not read some of them.
+	 */
+	@Override
+	public List<String> names() {
+		return expression.names();
+	}
+
+	@Override
+	public String toString() {
+		return expression.toString();
+	}
+}
@@ -0,0 +1,148 @@
+package colpo.core;
+
+import java.util.Objects;
+
+import colpo.core.Expression.And;
+import colpo.core.Expression.Binary;
+import colpo.core.Expression.BinaryOperator;
+import colpo.core.Expression.Constant;
+import colpo.core.Expression.Name;
+import colpo.core.Expression.Or;
+import colpo.core.Expression.Unary;
+import colpo.core.Expression.UnaryOperator;
+import colpo.core.semantics.UndefinedName;
+
+/**
+ * Evaluates {@link Expression}s: numbers are compared and computed as longs,
+ * if they are integral, or as doubles; "+" also concatenates strings; "and"
+ * and "or" are evaluated left to right and short-circuit.
+ *
+ * @author Lorenzo Bettini
+ */
+final class ExpressionEvaluator {
+
+	private ExpressionEvaluator() {
+		// Only static methods
+	}
+
+	static Object evaluate(Expression expression, AttributesResolver resolver) throws UndefinedName {
+		return switch (expression) {
+		case Name(var name) -> resolver.name(name);
+		case Constant(var value) -> value;
+		case Unary(var operator, var operand) -> apply(operator, evaluate(operand, resolver));
+		case Binary(var operator, var left, var right) ->
+			apply(operator, evaluate(left, resolver), evaluate(right, resolver));
+		case And(var operands) -> {
+			for (var operand : operands) {
+				if (!toBoolean(evaluate(operand, resolver))) {
+					yield false;
+				}
+			}
+			yield true;
+		}
+		case Or(var operands) -> {
+			for (var operand : operands) {
+				if (toBoolean(evaluate(operand, resolver))) {
+					yield true;
+				}
+			}
+			yield false;
+		}
+		};
+	}
+
+	static boolean toBoolean(Object value) {
+		if (value instanceof Boolean b) {
+			return b;
+		}
+		throw new IllegalArgumentException("not a boolean: " + value);
+	}
+
+	static Object apply(UnaryOperator operator, Object value) {
+		return switch (operator) {
+		case NOT -> !toBoolean(value);
+		case NEGATE -> isIntegral(value) ?
+			(Object) (-toNumber(value).longValue()) : (Object) (-toNumber(value).doubleValue());
+		case LENGTH -> (long) toString(value).length();
+		};
+	}
+
+	static Object apply(BinaryOperator operator, Object left, Object right) {
+		return switch (operator) {
+		case EQ -> equal(left, right);
+		case NE -> !equal(left, right);
+		case LT -> compare(left, right) < 0;
+		case LE -> compare(left, right) <= 0;
+		case GT -> compare(left, right) > 0;
+		case GE -> compare(left, right) >= 0;
+		case ADD -> left instanceof String || right instanceof String ?
+			String.valueOf(left) + right : arithmetic(operator, left, right);
+		case SUBTRACT, MULTIPLY, DIVIDE, MODULO -> arithmetic(operator, left, right);
+		case CONTAINS -> toString(left).contains(toString(right));
+		case STARTS_WITH -> toString(left).startsWith(toString(right));
+		case ENDS_WITH -> toString(left).endsWith(toString(right));
+		};
+	}
+
+	private static boolean equal(Object left, Object right) {
+		if (left instanceof Number && right instanceof Number) {
+			return compare(left, right) == 0;
+		}
+		return Objects.equals(left, right);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object left, Object right) {
+		if (left instanceof Number && right instanceof Number) {
+			return isIntegral(left) && isIntegral(right) ?
+				Long.compare(toNumber(left).longValue(), toNumber(right).longValue()) :
+				Double.compare(toNumber(left).doubleValue(), toNumber(right).doubleValue());
+		}
+		if (left instanceof Comparable comparable && left.getClass() == right.getClass()) {
+			return comparable.compareTo(right);
+		}
+		throw new IllegalArgumentException(String.format("cannot compare %s and %s", left, right));
+	}
+
+	private static Object arithmetic(BinaryOperator operator, Object left, Object right) {
+		if (isIntegral(left) && isIntegral(right)) {
+			var l = toNumber(left).longValue();
+			var r = toNumber(right).longValue();
+			return switch (operator) {
+			case SUBTRACT -> l - r;
+			case MULTIPLY -> l * r;
+			case DIVIDE -> l / r;
+			case MODULO -> l % r;
+			default -> l + r;
+			};
+		}
+		var l = toNumber(left).doubleValue();
+		var r = toNumber(right).doubleValue();
+		return switch (operator) {
+		case SUBTRACT -> l - r;
+		case MULTIPLY -> l * r;
+		case DIVIDE -> l / r;
+		case MODULO -> l % r;
+		default -> l + r;
+		};
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Integer || value instanceof Long ||
+			value instanceof Short || value instanceof Byte;
+	}
+
+	private static Number toNumber(Object value) {
+		if (value instanceof Number n) {
+			return n;
+		}
+		throw new IllegalArgumentException("not a number: " + value);
+	}
+
+	private static String toString(Object value) {
+		if (value instanceof String s) {
+			return s;
+		}
+		throw new IllegalArgumentException("not a string: " + value);
+	}
+}
@@ -0,0 +1,219 @@
+package colpo.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import colpo.core.Expression.And;
+import colpo.core.Expression.Binary;
+import colpo.core.Expression.BinaryOperator;
+import colpo.core.Expression.Constant;
+import colpo.core.Expression.Name;
+import colpo.core.Expression.Or;
+import colpo.core.Expression.Unary;
+import colpo.core.Expression.UnaryOperator;
+
+/**
+ * Optimizes {@link Expression}s, when policies are compiled:
+ * subexpressions with constant operands are folded into constants, and the
+ * operands of "and" and "or" are flattened and simplified.
+ *
+ * Operands are evaluated left to right and an operand might raise an error
+ * (e.g., an undefined name), so an operand is dropped or moved only when it
+ * cannot raise errors: contiguous operands that cannot raise errors are
+ * ordered cheapest-first. Thus, the optimized expression evaluates to the
+ * same value, or raises the same kind of error.
+ *
+ * The expression of a condition (see {@link #optimizeCondition(Expression)})
+ * is optimized further, since a condition that raises an error does not
+ * hold, exactly as a false one.
+ *
+ * @author Lorenzo Bettini
+ */
+final class ExpressionOptimizer {
+
+	private static final Constant TRUE = new Constant(true);
+	private static final Constant FALSE = new Constant(false);
+
+	private ExpressionOptimizer() {
+		// Only static methods
+	}
+
+	static Expression optimize(Expression expression) {
+		return optimize(expression, Set.of());
+	}
+
+	/**
+	 * Optimizes the expression of a condition, which holds only if it
+	 * evaluates to true: if it is an "and", it holds only if all its operands
+	 * evaluate to true, in any order, so all its operands are ordered
+	 * cheapest-first, even the ones that can raise errors, and an operand that
+	 * is never true makes the whole condition false.
+	 */
+	static Expression optimizeCondition(Expression expression) {
+		var optimized = optimize(expression);
+		if (optimized instanceof And(var operands)) {
+			// true operands have been removed: the other constants are never true
+			if (operands.stream().anyMatch(Constant.class::isInstance)) {
+				return FALSE;
+			}
+			var ordered = new ArrayList<>(operands);
+			ordered.sort(Comparator.comparingInt(ExpressionOptimizer::cost));
+			return new And(ordered);
+		}
+		return optimized;
+	}
+
+	/**
+	 * @param bound the names that are known to be bound when the expression
+	 * is evaluated
+	 */
+	static Expression optimize(Expression expression, Set<String> bound) {
+		return switch (expression) {
+		case Name name -> name;
+		case Constant constant -> constant;
+		case Unary(var operator, var operand) -> {
+			var optimized = new Unary(operator, optimize(operand, bound));
+			yield optimized.operand() instanceof Constant(var value) ?
+				fold(() -> ExpressionEvaluator.apply(operator, value), optimized) :
+				optimized;
+		}
+		case Binary(var operator, var left, var right) -> {
+			var optimized = new Binary(operator, optimize(left, bound), optimize(right, bound));
+			yield optimized.left() instanceof Constant(var l) && optimized.right() instanceof Constant(var r) ?
+				fold(() -> ExpressionEvaluator.apply(operator, l, r), optimized) :
+				optimized;
+		}
+		case And(var operands) -> optimize(operands, true, bound, And.class, And::operands, And::new);
+		case Or(var operands) -> optimize(operands, false, bound, Or.class, Or::operands, Or::new);
+		};
+	}
+
+	/**
+	 * @param neutral the value that can be removed, true for "and", false for
+	 * "or"; the other value decides the result
+	 */
+	private static <T extends Expression> Expression optimize(List<Expression> operands, boolean neutral,
+			Set<String> bound, Class<T> type, Function<T, List<Expression>> operandsOf,
+			Function<List<Expression>, T> constructor) {
+		var flattened = new ArrayList<Expression>();
+		for (var operand : operands) {
+			var optimizedOperand = optimize(operand, bound);
+			if (type.isInstance(optimizedOperand)) {
+				// nested "and" in "and", or "or" in "or"
+				flattened.addAll(operandsOf.apply(type.cast(optimizedOperand)));
+			} else {
+				flattened.add(optimizedOperand);
+			}
+		}
+		var optimized = new ArrayList<Expression>();
+		for (var operand : flattened) {
+			if (operand instanceof Constant(var value) && value instanceof Boolean b) {
+				if (b != neutral) {
+					// the following operands are never evaluated, and the
+					// previous ones matter only if they raise an error
+					optimized.removeIf(o -> cannotFail(o, bound));
+					if (optimized.isEmpty()) {
+						return b ? TRUE : FALSE;
+					}
+					optimized.add(operand);
+					return constructor.apply(optimized);
+				}
+			} else {
+				optimized.add(operand);
+			}
+		}
+		if (optimized.isEmpty()) {
+			return neutral ? TRUE : FALSE;
+		}
+		return constructor.apply(cheapestFirst(optimized, bound));
+	}
+
+	/**
+	 * Orders each run of contiguous operands that cannot raise errors
+	 * cheapest-first; stable: operands with the same cost keep their order.
+	 */
+	private static List<Expression> cheapestFirst(List<Expression> operands, Set<String> bound) {
+		var ordered = new ArrayList<Expression>(operands.size());
+		var run = new ArrayList<Expression>();
+		for (var operand : operands) {
+			if (cannotFail(operand, bound)) {
+				run.add(operand);
+			} else {
+				run.sort(Comparator.comparingInt(ExpressionOptimizer::cost));
+				ordered.addAll(run);
+				run.clear();
+				ordered.add(operand);
+			}
+		}
+		run.sort(Comparator.comparingInt(ExpressionOptimizer::cost));
+		ordered.addAll(run);
+		return ordered;
+	}
+
+	/**
+	 * @return whether the expression, as an operand of "and" or "or", surely
+	 * evaluates to a boolean without raising errors, that is, it only reads
+	 * bound names and constants, and only with operators that cannot fail
+	 */
+	static boolean cannotFail(Expression expression, Set<String> bound) {
+		return switch (expression) {
+		case Constant(var value) -> value instanceof Boolean;
+		case Unary(var operator, var operand) ->
+			operator == UnaryOperator.NOT && cannotFail(operand, bound);
+		case Binary(var operator, var left, var right) ->
+			(operator == BinaryOperator.EQ || operator == BinaryOperator.NE) &&
+				isDefined(left, bound) && isDefined(right, bound);
+		case And(var operands) -> operands.stream().allMatch(o -> cannotFail(o, bound));
+		case Or(var operands) -> operands.stream().allMatch(o -> cannotFail(o, bound));
+		// a bound name might not be a boolean
+		case Name name -> false;
+		};
+	}
+
+	/**
+	 * @return whether the expression evaluates to a value without raising
+	 * errors, and comparing it for equality cannot fail either
+	 */
+	private static boolean isDefined(Expression expression, Set<String> bound) {
+		return switch (expression) {
+		case Name(var name) -> bound.contains(name);
+		case Constant constant -> true;
+		default -> cannotFail(expression, bound);
+		};
+	}
+
+	private static Expression fold(Supplier<Object> evaluation, Expression unfolded) {
+		try {
+			return new Constant(evaluation.get());
+		} catch (RuntimeException e) {
+			// the error will be raised when evaluating the expression
+			return unfolded;
+		}
+	}
+
+	/**
+	 * @return an estimate of the cost of evaluating the expression, where
+	 * resolving a name costs more than an operation
+	 */
+	static int cost(Expression expression) {
+		return switch (expression) {
+		case Name name -> 2;
+		case Constant constant -> 0;
+		case Unary(var operator, var operand) -> 1 + cost(operand);
+		case Binary(var operator, var left, var right) -> cost(operator) + cost(left) + cost(right);
+		case And(var operands) -> operands.stream().mapToInt(ExpressionOptimizer::cost).sum();
+		case Or(var operands) -> operands.stream().mapToInt(ExpressionOptimizer::cost).sum();
+		};
+	}
+
+	private static int cost(BinaryOperator operator) {
+		return switch (operator) {
+		case CONTAINS, STARTS_WITH, ENDS_WITH -> 3;
+		default -> 1;
+		};
+	}
+}
@@ -1,13 +1,27 @@
 package colpo.core;
 
+import java.util.List;
+
 public class ExpressionWithDescription implements ExpressionCode {
 
 	private ExpressionCode expressionCode;
 	private String description;
+	private List<String> names;
 
 	public ExpressionWithDescription(ExpressionCode expressionCode, String description) {
+		this(expressionCode, description, expressionCode.names());
+	}
+
+	/**
+	 * @param expressionCode
+	 * @param description
+	 * @param names the names of attributes the expression reads
+	 * @see ExpressionCode#names()
+	 */
+	public ExpressionWithDescription(ExpressionCode expressionCode, String description, List<String> names) {
 		this.expressionCode = expressionCode;
 		this.description = description;
+		this.names = List.copyOf(names);
 	}
 
 	@Override
@@ -15,6 +29,11 @@ public class ExpressionWithDescription implements ExpressionCode {
 		return expressionCode.evaluate(context);
 	}
 
+	@Override
+	public List<String> names() {
+		return names;
+	}
+
 	@Override
 	public String toString() {
 		return description;
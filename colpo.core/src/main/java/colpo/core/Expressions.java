@@ -0,0 +1,116 @@
+package colpo.core;
+
+import java.util.List;
+
+import colpo.core.Expression.And;
+import colpo.core.Expression.Binary;
+import colpo.core.Expression.BinaryOperator;
+import colpo.core.Expression.Constant;
+import colpo.core.Expression.Name;
+import colpo.core.Expression.Or;
+import colpo.core.Expression.Unary;
+import colpo.core.Expression.UnaryOperator;
+
+/**
+ * Static factory methods for building {@link Expression}s, e.g.,
+ *
+ * <pre>
+ * condition(and(gt(name("timeHour"), constant(7)), eq(name("position"), constant("Prato"))))
+ * </pre>
+ *
+ * @author Lorenzo Bettini
+ */
+public class Expressions {
+
+	private Expressions() {
+		// Only static methods
+	}
+
+	public static ExpressionCondition condition(Expression expression) {
+		return new ExpressionCondition(expression);
+	}
+
+	public static Expression name(String name) {
+		return new Name(name);
+	}
+
+	public static Expression constant(Object value) {
+		return new Constant(value);
+	}
+
+	public static Expression and(Expression... operands) {
+		return new And(List.of(operands));
+	}
+
+	public static Expression or(Expression... operands) {
+		return new Or(List.of(operands));
+	}
+
+	public static Expression not(Expression operand) {
+		return new Unary(UnaryOperator.NOT, operand);
+	}
+
+	public static Expression negate(Expression operand) {
+		return new Unary(UnaryOperator.NEGATE, operand);
+	}
+
+	public static Expression length(Expression operand) {
+		return new Unary(UnaryOperator.LENGTH, operand);
+	}
+
+	public static Expression eq(Expression left, Expression right) {
+		return new Binary(BinaryOperator.EQ, left, right);
+	}
+
+	public static Expression ne(Expression left, Expression right) {
+		return new Binary(BinaryOperator.NE, left, right);
+	}
+
+	public static Expression lt(Expression left, Expression right) {
+		return new Binary(BinaryOperator.LT, left, right);
+	}
+
+	public static Expression le(Expression left, Expression right) {
+		return new Binary(BinaryOperator.LE, left, right);
+	}
+
+	public static Expression gt(Expression left, Expression right) {
+		return new Binary(BinaryOperator.GT, left, right);
+	}
+
+	public static Expression ge(Expression left, Expression right) {
+		return new Binary(BinaryOperator.GE, left, right);
+	}
+
+	public static Expression add(Expression left, Expression right) {
+		return new Binary(BinaryOperator.ADD, left, right);
+	}
+
+	public static Expression subtract(Expression left, Expression right) {
+		return new Binary(BinaryOperator.SUBTRACT, left, right);
+	}
+
+	public static Expression multiply(Expression left, Expression right) {
+		return new Binary(BinaryOperator.MULTIPLY, left, right);
+	}
+
+	public static Expression divide(Expression left, Expression right) {
+		return new Binary(BinaryOperator.DIVIDE, left, right);
+	}
+
+	public static Expression modulo(Expression left, Expression right) {
+		return new Binary(BinaryOperator.MODULO, left, right);
+	}
+
+	public static Expression contains(Expression left, Expression right) {
+		return new Binary(BinaryOperator.CONTAINS, left, right);
+	}
+
+	public static Expression startsWith(Expression left, Expression right) {
+		return new Binary(BinaryOperator.STARTS_WITH, left, right);
+	}
+
+	public static Expression endsWith(Expression left, Expression right) {
+		return new Binary(BinaryOperator.ENDS_WITH, left, right);
+	}
+}
@@ -0,0 +1,152 @@
+package colpo.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable set of indexes of policies (participants), backed by a
+ * sorted array of primitive ints, so that sets of participants can be
+ * iterated and intersected without boxing.
+ *
+ * @author Lorenzo Bettini
+ */
+public final class IndexSet {
+
+	public static final IndexSet EMPTY = new IndexSet(new int[0]);
+
+	private final int[] indexes;
+
+	private IndexSet(int[] indexes) {
+		this.indexes = indexes;
+	}
+
+	public static IndexSet of(int... indexes) {
+		if (indexes.length == 1) {
+			return new IndexSet(indexes.clone());
+		}
+		return new IndexSet(Arrays.stream(indexes).sorted().distinct().toArray());
+	}
+
+	public static IndexSet of(BitSet bitSet) {
+		if (bitSet.isEmpty()) {
+			return EMPTY;
+		}
+		return new IndexSet(bitSet.stream().toArray());
+	}
+
+	public int size() {
+		return indexes.length;
+	}
+
+	public boolean isEmpty() {
+		return indexes.length == 0;
+	}
+
+	/**
+	 * @param position
+	 * @return the index at the given position, in ascending order
+	 */
+	public int get(int position) {
+		return indexes[position];
+	}
+
+	public boolean contains(int index) {
+		return Arrays.binarySearch(indexes, index) >= 0;
+	}
+
+	/**
+	 * @param index
+	 * @return this set without the passed index, which is this very set if it
+	 * does not contain the index
+	 */
+	public IndexSet without(int index) {
+		var position = Arrays.binarySearch(indexes, index);
+		if (position < 0) {
+			return this;
+		}
+		var result = new int[indexes.length - 1];
+		System.arraycopy(indexes, 0, result, 0, position);
+		System.arraycopy(indexes, position + 1, result, position, result.length - position);
+		return new IndexSet(result);
+	}
+
+	/**
+	 * @param index
+	 * @return whether this set contains an index different from the passed
+	 * one, that is, whether {@link #without(int)} would not be empty
+	 */
+	public boolean containsOtherThan(int index) {
+		return indexes.length > 1 || (indexes.length == 1 && indexes[0] != index);
+	}
+
+	/**
+	 * @param other
+	 * @return the indexes in both sets
+	 */
+	public IndexSet intersection(IndexSet other) {
+		var result = new int[Math.min(indexes.length, other.indexes.length)];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < indexes.length && j < other.indexes.length) {
+			if (indexes[i] < other.indexes[j]) {
+				i++;
+			} else if (indexes[i] > other.indexes[j]) {
+				j++;
+			} else {
+				result[size++] = indexes[i];
+				i++;
+				j++;
+			}
+		}
+		return size == 0 ? EMPTY : new IndexSet(Arrays.copyOf(result, size));
+	}
+
+	public void forEach(IntConsumer action) {
+		for (var index : indexes) {
+			action.accept(index);
+		}
+	}
+
+	public boolean anyMatch(IntPredicate predicate) {
+		for (var index : indexes) {
+			if (predicate.test(index)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean allMatch(IntPredicate predicate) {
+		for (var index : indexes) {
+			if (!predicate.test(index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(indexes);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+		IndexSet other = (IndexSet) obj;
+		return Arrays.equals(indexes, other.indexes);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(indexes);
+	}
+}
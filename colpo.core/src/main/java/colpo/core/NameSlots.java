@@ -0,0 +1,51 @@
+package colpo.core;
+
+import java.util.List;
+
+/**
+ * The names read by a condition (see {@link ExpressionCode#names()}) bound
+ * at compile time to their ids (see {@link AttributeNames}), which are the
+ * slots where values are looked up with {@link Attributes#valueOf(int)}.
+ *
+ * @author Lorenzo Bettini
+ */
+public final class NameSlots {
+
+	public static final NameSlots NONE = new NameSlots(List.of());
+
+	private final String[] names;
+	private final int[] ids;
+
+	private NameSlots(List<String> names) {
+		this.names = names.toArray(String[]::new);
+		this.ids = names.stream().mapToInt(AttributeNames::intern).toArray();
+	}
+
+	public static NameSlots of(List<String> names) {
+		return names.isEmpty() ? NONE : new NameSlots(names);
+	}
+
+	/**
+	 * @param name
+	 * @return the id of the name, which is looked up only if the name has
+	 * not been bound; -1 if the name has never been used
+	 */
+	public int idOf(String name) {
+		// names in conditions are usually the same string constants
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] == name) { // NOSONAR
+				return ids[i];
+			}
+		}
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return ids[i];
+			}
+		}
+		return AttributeNames.lookup(name);
+	}
+
+	public int size() {
+		return names.length;
+	}
+}
@@ -2,7 +2,7 @@ package colpo.core;
 
 public interface Participant {
 
-	static final Attributes EMPTY_ATTRIBUTES = new Attributes();
+	static final Attributes EMPTY_ATTRIBUTES = new Attributes().frozen();
 
 	default int getIndex() {
 		return -1;
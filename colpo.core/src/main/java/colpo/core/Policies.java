@@ -1,6 +1,7 @@
 package colpo.core;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -18,17 +19,104 @@ public class Policies {
 	}
 
 	private List<Policy> collection = new ArrayList<>();
+	private AttributesIndex partyIndex = new AttributesIndex();
+
+	private long version = 0;
+
+	private boolean immutable = false;
 
 	public Policies add(Policy policy) {
+		if (immutable) {
+			throw new UnsupportedOperationException("cannot add a policy to a snapshot");
+		}
 		collection.add(policy);
+		partyIndex.add(collection.size(), policy.party());
+		policy.party().whenChanged(this::partiesChanged);
+		policy.rules().addOwner(this);
+		changed();
 		return this;
 	}
 
+	/**
+	 * A party modified after being added: it must be indexed again.
+	 */
+	private void partiesChanged() {
+		partyIndex = new AttributesIndex();
+		for (int i = 0; i < collection.size(); i++) {
+			partyIndex.add(i + 1, collection.get(i).party());
+		}
+		changed();
+	}
+
+	/**
+	 * @return a number that changes each time a policy is added, or a rule is
+	 * added to one of the policies, or the attributes of a party or of a rule
+	 * of the policies are modified (see {@link Attributes#add(String, Object)})
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	void changed() {
+		version++;
+	}
+
 	public Stream<PolicyData> getPolicyData() {
 		return IntStream.range(0, collection.size())
 			.mapToObj(i -> new PolicyData(i + 1, collection.get(i)));
 	}
 
+	/**
+	 * The policies whose party is matched by the passed attributes,
+	 * in policy index order, computed through the inverted index
+	 * of party attributes, without scanning all the policies.
+	 *
+	 * @param attributes
+	 * @return
+	 */
+	public Stream<PolicyData> getPolicyData(Attributes attributes) {
+		return getMatchingIndexes(attributes).stream()
+			.mapToObj(i -> new PolicyData(i, getByIndex(i)));
+	}
+
+	/**
+	 * The indexes of the policies whose party is matched by the passed attributes.
+	 *
+	 * @param attributes
+	 * @return
+	 */
+	public BitSet getMatchingIndexes(Attributes attributes) {
+		return partyIndex.matching(attributes);
+	}
+
+	/**
+	 * An immutable copy of these policies, with frozen parties and immutable
+	 * copies of their rules (see {@link Rules#snapshot()}), that can be safely
+	 * shared among threads, e.g., by a
+	 * {@link colpo.core.semantics.Semantics} evaluating requests
+	 * concurrently. The {@link Rule}s themselves are shared, so their
+	 * attributes must not be modified.
+	 *
+	 * @return
+	 */
+	public Policies snapshot() {
+		var snapshot = new Policies();
+		collection.forEach(policy ->
+			snapshot.add(new Policy(policy.party().frozen(), policy.rules().snapshot())));
+		snapshot.immutable = true;
+		return snapshot;
+	}
+
+	/**
+	 * The immutable form of the current policies, to be evaluated; it must be
+	 * compiled again when policies are added.
+	 *
+	 * @return
+	 */
+	public CompiledPolicies compile() {
+		return new CompiledPolicies(this);
+	}
+
 	public Policy getByIndex(int i) {
 		return collection.get(i - 1);
 	}
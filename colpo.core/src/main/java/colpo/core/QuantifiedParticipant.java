@@ -34,6 +34,18 @@ public class QuantifiedParticipant implements RequestFromParticipant, ExchangeTo
 		return attributes;
 	}
 
+	/**
+	 * @return an equal participant with frozen attributes (see
+	 * {@link Attributes#frozen()}), or this participant if they are already
+	 * frozen
+	 */
+	public QuantifiedParticipant frozen() {
+		if (attributes.isFrozen()) {
+			return this;
+		}
+		return new QuantifiedParticipant(quantifier, attributes.frozen());
+	}
+
 	@Override
 	public String toString() {
 		return String.format("%s: %s",
@@ -44,7 +56,7 @@ public class QuantifiedParticipant implements RequestFromParticipant, ExchangeTo
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(attributes, quantifier);
+		return 31 * Objects.hashCode(attributes) + quantifier.hashCode();
 	}
 
 	@Override
@@ -14,6 +14,23 @@ public record Request(IndexParticipant requester, Attributes resource, RequestFr
 		}
 	}
 
+	/**
+	 * An equal request whose attributes are frozen (see
+	 * {@link Attributes#frozen()}), so that its hash code is cheap to compute
+	 * and equal requests derived from it share the same attributes, which are
+	 * then compared by identity.
+	 *
+	 * @return this request, if its attributes are already frozen
+	 */
+	public Request canonical() {
+		var canonicalResource = resource != null ? resource.frozen() : null;
+		var canonicalFrom = from instanceof QuantifiedParticipant quantified ? quantified.frozen() : from;
+		if (canonicalResource == resource && canonicalFrom == from) {
+			return this;
+		}
+		return new Request(requester, canonicalResource, canonicalFrom);
+	}
+
 	/**
 	 * Create a copy of this request but replacing the "from" Participant
 	 * with the Participant index.
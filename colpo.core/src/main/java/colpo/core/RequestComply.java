@@ -9,5 +9,31 @@ package colpo.core;
  */
 @FunctionalInterface
 public interface RequestComply {
+
+	/**
+	 * A request can comply only with requests with an equal partition key.
+	 *
+	 * @param requester
+	 * @param from
+	 */
+	static record PartitionKey(IndexParticipant requester, RequestFromParticipant from) {
+
+		/**
+		 * The key of all the requests, when the predicate does not partition them.
+		 */
+		public static final PartitionKey ALL = new PartitionKey(null, null);
+	}
+
 	boolean test(Request newRequest, Request existingRequest);
+
+	/**
+	 * The collected requests are partitioned by this key, so that, for a new
+	 * request, only the existing requests with an equal key are tested.
+	 *
+	 * @param request
+	 * @return by default, the same key for all the requests
+	 */
+	default PartitionKey partitionKey(Request request) {
+		return PartitionKey.ALL;
+	}
 }
@@ -10,19 +10,44 @@ import java.util.Collection;
  */
 public class Result {
 
-	private boolean permitted = false;
+	/**
+	 * An evaluation is indeterminate when it has been stopped, e.g., because
+	 * it exceeded one of its limits or it has been cancelled, before reaching
+	 * a decision.
+	 */
+	public enum Status {
+		PERMITTED, DENIED, INDETERMINATE
+	}
+
+	private Status status;
 	private Collection<Request> requests = new ArrayList<>();
 
 	public Result(boolean permitted) {
-		this.permitted = permitted;
+		this(permitted ? Status.PERMITTED : Status.DENIED);
+	}
+
+	public Result(Status status) {
+		this.status = status;
 	}
 
 	public static Result permitted() {
 		return new Result(true);
 	}
 
+	public static Result indeterminate() {
+		return new Result(Status.INDETERMINATE);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
 	public boolean isPermitted() {
-		return permitted;
+		return status == Status.PERMITTED;
+	}
+
+	public boolean isIndeterminate() {
+		return status == Status.INDETERMINATE;
 	}
 
 	public Collection<Request> getRequests() {
@@ -5,10 +5,14 @@ package colpo.core;
  */
 public class Rule {
 
-	private static final ExpressionWithDescription TRUE =
+	/**
+	 * The default condition, recognized when compiling policies (see
+	 * {@link CompiledPolicies.RuleKind#TRIVIAL}).
+	 */
+	static final ExpressionWithDescription TRUE =
 			new ExpressionWithDescription(context -> true, "true");
 
-	private static final Attributes EMPTY_ATTRIBUTES = new Attributes();
+	private static final Attributes EMPTY_ATTRIBUTES = new Attributes().frozen();
 
 	private final Attributes resource;
 	private final ExpressionCode condition;
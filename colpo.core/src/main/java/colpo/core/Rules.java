@@ -1,7 +1,9 @@
 package colpo.core;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -15,17 +17,118 @@ public class Rules {
 	}
 
 	private List<Rule> collection = new ArrayList<>();
+	private AttributesIndex resourceIndex = new AttributesIndex();
+	private BitSet emptyResourceIndexes = new BitSet();
+	/**
+	 * The policies these rules have been added to, whose version changes when
+	 * a rule is added.
+	 */
+	private List<Policies> owners = new ArrayList<>(1);
+
+	private boolean immutable = false;
 
 	public Rules add(Rule rule) {
-		collection.add(rule);
+		if (immutable) {
+			throw new UnsupportedOperationException("cannot add a rule to a snapshot");
+		}
+		append(rule);
+		forEachAttributes(rule, attributes -> attributes.whenChanged(this::attributesChanged));
+		owners.forEach(Policies::changed);
 		return this;
 	}
 
+	private void append(Rule rule) {
+		collection.add(rule);
+		var index = collection.size();
+		resourceIndex.add(index, rule.getResource());
+		if (rule.getResource().isEmpty()) {
+			emptyResourceIndexes.set(index);
+		}
+	}
+
+	/**
+	 * The attributes of a rule modified after being added: resources must be
+	 * indexed again, and the policies must be compiled again.
+	 */
+	private void attributesChanged() {
+		var rules = List.copyOf(collection);
+		collection.clear();
+		resourceIndex = new AttributesIndex();
+		emptyResourceIndexes.clear();
+		rules.forEach(this::append);
+		owners.forEach(Policies::changed);
+	}
+
+	private static void forEachAttributes(Rule rule, Consumer<Attributes> action) {
+		action.accept(rule.getResource());
+		forEachAttributes(rule.getExchange(), action);
+	}
+
+	private static void forEachAttributes(Exchange exchange, Consumer<Attributes> action) {
+		switch (exchange) {
+		case CompositeExchange e -> {
+			forEachAttributes(e.left(), action);
+			forEachAttributes(e.right(), action);
+		}
+		case SingleExchange e -> {
+			action.accept(e.resource());
+			action.accept(e.to().getAttributes());
+			action.accept(e.from().getAttributes());
+		}
+		case null -> {
+			// no exchange
+		}
+		}
+	}
+
+	void addOwner(Policies policies) {
+		owners.add(policies);
+	}
+
+	/**
+	 * @return an immutable copy of these rules, not affected by the rules
+	 * added later; the attributes of the rules must not be modified, since
+	 * the copy is not notified
+	 */
+	public Rules snapshot() {
+		var snapshot = new Rules();
+		collection.forEach(snapshot::append);
+		snapshot.immutable = true;
+		return snapshot;
+	}
+
 	public Stream<RuleData> getRuleData() {
 		return IntStream.range(0, collection.size())
 			.mapToObj(i -> new RuleData(i + 1, collection.get(i)));
 	}
 
+	/**
+	 * The rules whose resource can match the passed (requested) resource,
+	 * in rule index order, so that first-match order is preserved.
+	 *
+	 * @param resource
+	 * @return
+	 */
+	public Stream<RuleData> getRuleData(Attributes resource) {
+		return getCandidateIndexes(resource).stream()
+			.mapToObj(i -> new RuleData(i, collection.get(i - 1)));
+	}
+
+	/**
+	 * The indexes (starting from 1) of the rules whose resource can match the
+	 * passed (requested) resource, computed through the index of rules'
+	 * resource attributes. Rules with an empty resource are always
+	 * candidates.
+	 *
+	 * @param resource
+	 * @return
+	 */
+	public BitSet getCandidateIndexes(Attributes resource) {
+		var candidates = resourceIndex.matching(resource);
+		candidates.or(emptyResourceIndexes);
+		return candidates;
+	}
+
 	@Override
 	public String toString() {
 		return collection.toString();
@@ -0,0 +1,135 @@
+package colpo.core.semantics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import colpo.core.Request;
+import colpo.core.Result;
+
+/**
+ * Evaluates batches of independent requests, each one on its own virtual
+ * thread, with at most a given number of concurrent evaluations.
+ *
+ * Requests are taken from their source only when there is room for another
+ * evaluation and the completions are being consumed, so a consumer that stops
+ * early leaves at most that number of evaluations running; closing the stream
+ * of completions cancels them as well.
+ *
+ * @author Lorenzo Bettini
+ */
+class BatchEvaluator {
+
+	private final Semantics semantics;
+	private final TraceSink traceSink;
+	private final int maxConcurrency;
+
+	BatchEvaluator(Semantics semantics, TraceSink traceSink, int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("max concurrency must be positive: " + maxConcurrency);
+		}
+		this.semantics = semantics;
+		this.traceSink = traceSink;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	List<Result> evaluateAll(Iterator<Request> requests) {
+		var results = new ArrayList<Result>();
+		new Completions(requests, new Cancellation()).forEachRemaining(completion -> {
+			while (results.size() <= completion.index()) {
+				results.add(null);
+			}
+			results.set(completion.index(), completion.result());
+		});
+		return results;
+	}
+
+	Stream<Completion> evaluateAllAsCompleted(Iterator<Request> requests) {
+		var cancellation = new Cancellation();
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(new Completions(requests, cancellation),
+					Spliterator.NONNULL),
+				false)
+			.onClose(cancellation::cancel);
+	}
+
+	/**
+	 * The completed evaluations, in order of completion; when an evaluation
+	 * fails, the others are cancelled and the failure is thrown.
+	 */
+	private class Completions implements Iterator<Completion> {
+
+		private final Iterator<Request> requests;
+		private final Cancellation cancellation;
+		/**
+		 * Completions or failures.
+		 */
+		private final BlockingQueue<Object> completed = new LinkedBlockingQueue<>();
+		private int index = 0;
+		private int running = 0;
+
+		private Completions(Iterator<Request> requests, Cancellation cancellation) {
+			this.requests = requests;
+			this.cancellation = cancellation;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (running < maxConcurrency && !cancellation.isCancelled() && requests.hasNext()) {
+				start(index++, requests.next());
+			}
+			return running > 0;
+		}
+
+		@Override
+		public Completion next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			var next = take();
+			running--;
+			if (next instanceof Completion completion) {
+				return completion;
+			}
+			cancellation.cancel();
+			throw failure((Throwable) next);
+		}
+
+		private void start(int requestIndex, Request request) {
+			running++;
+			Thread.ofVirtual().start(() -> {
+				try {
+					var trace = traceSink.newSink();
+					completed.add(new Completion(requestIndex, request,
+						semantics.evaluate(request, trace, cancellation), trace));
+				} catch (Throwable e) { // NOSONAR rethrown to the consumer
+					completed.add(e);
+				}
+			});
+		}
+
+		private Object take() {
+			try {
+				return completed.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancellation.cancel();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private static RuntimeException failure(Throwable cause) {
+		if (cause instanceof RuntimeException runtimeException) {
+			return runtimeException;
+		}
+		return new IllegalStateException(cause);
+	}
+}
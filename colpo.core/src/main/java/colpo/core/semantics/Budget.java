@@ -0,0 +1,87 @@
+package colpo.core.semantics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The limits of a single top-level evaluation, shared with its forked
+ * contexts: when one of them is exceeded, the evaluation is cancelled
+ * through the passed cancellation, and the reason is recorded.
+ *
+ * @author Lorenzo Bettini
+ */
+class Budget {
+
+	private final int maxDepth;
+	private final long maxRuleEvaluations;
+	/**
+	 * In terms of {@link System#nanoTime()}, or {@link Long#MAX_VALUE} if
+	 * there's no timeout.
+	 */
+	private final long deadline;
+	private final Cancellation cancellation;
+	private final AtomicLong ruleEvaluations = new AtomicLong();
+	private volatile String exceeded = null;
+
+	/**
+	 * @param maxDepth
+	 * @param maxRuleEvaluations
+	 * @param timeout null for no timeout
+	 * @param cancellation cancelled when a limit is exceeded
+	 */
+	Budget(int maxDepth, long maxRuleEvaluations, Duration timeout, Cancellation cancellation) {
+		this.maxDepth = maxDepth;
+		this.maxRuleEvaluations = maxRuleEvaluations;
+		this.deadline = timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos();
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * @param depth the current depth of nested exchange evaluations
+	 * @return false if the depth exceeds the limit
+	 */
+	boolean checkDepth(int depth) {
+		if (depth > maxDepth) {
+			return exceed(String.format("depth limit %d exceeded", maxDepth));
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether the depth of nested exchange evaluations is limited
+	 */
+	boolean limitsDepth() {
+		return maxDepth != Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Counts a rule evaluation, checking also the deadline.
+	 *
+	 * @return false if a limit is exceeded
+	 */
+	boolean countRuleEvaluation() {
+		if (maxRuleEvaluations != Long.MAX_VALUE &&
+				ruleEvaluations.incrementAndGet() > maxRuleEvaluations) {
+			return exceed(String.format("rule evaluation limit %d exceeded", maxRuleEvaluations));
+		}
+		if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+			return exceed("deadline exceeded");
+		}
+		return true;
+	}
+
+	/**
+	 * @return the first limit that has been exceeded, or null
+	 */
+	String exceeded() {
+		return exceeded;
+	}
+
+	private synchronized boolean exceed(String reason) {
+		if (exceeded == null) {
+			exceeded = reason;
+		}
+		cancellation.cancel();
+		return false;
+	}
+}
@@ -0,0 +1,32 @@
+package colpo.core.semantics;
+
+/**
+ * Cooperative cancellation of an evaluation: the evaluation checks it at
+ * each step and, once cancelled, stops as soon as possible, with an
+ * indeterminate result (see {@link Semantics#evaluate(colpo.core.Request, Cancellation)}).
+ *
+ * A cancellation is also cancelled when its parent is cancelled.
+ *
+ * @author Lorenzo Bettini
+ */
+public class Cancellation {
+
+	private final Cancellation parent;
+	private volatile boolean cancelled = false;
+
+	public Cancellation() {
+		this(null);
+	}
+
+	Cancellation(Cancellation parent) {
+		this.parent = parent;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled || (parent != null && parent.isCancelled());
+	}
+}
@@ -0,0 +1,268 @@
+package colpo.core.semantics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import colpo.core.Attributes;
+import colpo.core.CompiledPolicies.CompiledAndExchange;
+import colpo.core.CompiledPolicies.CompiledExchange;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledPolicy;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+import colpo.core.ContextHandler;
+import colpo.core.CostModel;
+import colpo.core.IndexSet;
+import colpo.core.Request;
+import colpo.core.RequestComply;
+import colpo.core.Result;
+import colpo.core.semantics.SolutionEnumerator.InProgress;
+
+/**
+ * Finds the cheapest of the solutions enumerated by
+ * {@link SolutionEnumerator}, according to a {@link CostModel}, with a
+ * branch-and-bound search: each step is given a bound, and only looks for
+ * solutions cheaper than that.
+ *
+ * The alternatives (policies, rules, the branches of an
+ * {@link colpo.core.OrExchange}, "any" participants) are bounded by the
+ * cheapest solution found so far; the parts that must all be satisfied
+ * ("all" participants, {@link colpo.core.AndExchange}) do not depend on each
+ * other, so the cheapest combination is made of the cheapest solution of
+ * each part, and each part is bounded by what is left by the previous ones.
+ *
+ * @author Lorenzo Bettini
+ */
+class CheapestSolutionSearch {
+
+	private static record Solution(double cost, List<Request> requests) {
+
+	}
+
+	private static final Solution EMPTY = new Solution(0, List.of());
+	private static final IntPredicate ALL_INDEXES = index -> true;
+
+	/**
+	 * The search of one of the parts of a step, given its index.
+	 */
+	@FunctionalInterface
+	private static interface IndexSearch {
+		Solution apply(int index, double bound);
+	}
+
+	private final Semantics semantics;
+	private final ContextHandler contextHandler;
+	private final RequestComply requestComply;
+	private final EvaluationContext context;
+	private final CostModel costModel;
+
+	/**
+	 * @param semantics
+	 * @param contextHandler
+	 * @param requestComply
+	 * @param context only used for the policies and to evaluate conditions,
+	 * not traced
+	 * @param costModel
+	 */
+	CheapestSolutionSearch(Semantics semantics, ContextHandler contextHandler, RequestComply requestComply,
+			EvaluationContext context, CostModel costModel) {
+		this.semantics = semantics;
+		this.contextHandler = contextHandler;
+		this.requestComply = requestComply;
+		this.context = context;
+		this.costModel = costModel;
+	}
+
+	/**
+	 * @param request canonical
+	 * @return the cheapest permitted result, or a denied one
+	 */
+	Result search(Request request) {
+		var solution = search(request, null, Double.POSITIVE_INFINITY);
+		return solution == null ?
+			Semantics.DENIED :
+			Result.permitted().addAll(solution.requests());
+	}
+
+	/**
+	 * @return the cheapest solution whose cost is less than the bound, or null
+	 */
+	private Solution search(Request request, InProgress inProgress, double bound) {
+		if (bound <= 0) {
+			return null;
+		}
+		var from = request.from();
+		var index = from.getIndex();
+		if (index > 0) {
+			return search(context.policies().getByIndex(index), request, inProgress, bound);
+		}
+		var candidates = semantics.policiesToEvaluate(request.requester(), from, context);
+		if (candidates.isEmpty()) {
+			return null;
+		}
+		IndexSearch policySearch = (i, b) -> search(
+			context.policies().getByIndex(i), Semantics.withFrom(request, i, context), inProgress, b);
+		return from.isAll() ?
+			sum(candidates, ALL_INDEXES, policySearch, bound) :
+			cheapest(candidates, ALL_INDEXES, policySearch, bound);
+	}
+
+	private Solution search(CompiledPolicy policy, Request request, InProgress inProgress, double bound) {
+		var candidateIndexes = IndexSet.of(semantics.candidateIndexes(policy, request, context));
+		return cheapest(candidateIndexes, ALL_INDEXES,
+			(i, b) -> search(policy.getRule(i), request, inProgress, b),
+			bound);
+	}
+
+	private Solution search(CompiledRule rule, Request request, InProgress inProgress, double bound) {
+		if (!semantics.matcher().match(request.resource(), rule.resource())) {
+			return null;
+		}
+		var cost = costOf(request);
+		if (cost >= bound || !holds(rule, request)) {
+			return null;
+		}
+		if (rule.exchange() == null) {
+			return new Solution(cost, List.of(request));
+		}
+		var exchangeSolution = search(rule.exchange(), request, new InProgress(request, inProgress), bound - cost);
+		if (exchangeSolution == null) {
+			return null;
+		}
+		var requests = new ArrayList<Request>(exchangeSolution.requests().size() + 1);
+		requests.add(request);
+		requests.addAll(exchangeSolution.requests());
+		return new Solution(cost + exchangeSolution.cost(), requests);
+	}
+
+	private double costOf(Request request) {
+		var cost = costModel.cost(request);
+		if (cost < 0) {
+			throw new IllegalArgumentException("negative cost " + cost + " of " + request);
+		}
+		return cost;
+	}
+
+	private boolean holds(CompiledRule rule, Request request) {
+		try {
+			return rule.condition().evaluate(new RuleAttributesResolver(rule, request, contextHandler, context));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private Solution search(CompiledExchange exchange, Request request, InProgress inProgress, double bound) {
+		if (bound <= 0) {
+			return null;
+		}
+		return switch (exchange) {
+		case CompiledOrExchange e -> {
+			var left = search(e.left(), request, inProgress, bound);
+			var right = search(e.right(), request, inProgress, left == null ? bound : left.cost());
+			yield right != null ? right : left;
+		}
+		case CompiledAndExchange e -> {
+			var left = search(e.left(), request, inProgress, bound);
+			if (left == null) {
+				yield null;
+			}
+			var right = search(e.right(), request, inProgress, bound - left.cost());
+			yield right == null ? null : combine(left, right);
+		}
+		case CompiledSingleExchange e -> search(e, request, inProgress, bound);
+		};
+	}
+
+	private Solution search(CompiledSingleExchange exchange, Request request, InProgress inProgress,
+			double bound) {
+		var exchangeFrom = exchange.from();
+		var exchangeTo = exchange.to();
+		var fromIndexes = exchangeFrom.isRequester() ?
+			IndexSet.of(request.requester().getIndex()) :
+			exchangeFrom.indexes();
+		var toIndexes = exchangeTo.indexes();
+		if (toIndexes.isEmpty()) {
+			return EMPTY; // there's no one to satisfy
+		}
+		if (fromIndexes.isEmpty()) {
+			return null; // no one can satisfy
+		}
+		var resource = exchange.exchange().resource();
+		IndexSearch fromSearch = (fromIndex, fromBound) -> {
+			IndexSearch toSearch = (toIndex, toBound) ->
+				search(resource, toIndex, fromIndex, inProgress, toBound);
+			IntPredicate different = toIndex -> toIndex != fromIndex;
+			return exchangeTo.isAll() ?
+				sum(toIndexes, different, toSearch, fromBound) :
+				cheapest(toIndexes, different, toSearch, fromBound);
+		};
+		if (!exchangeFrom.isAll()) {
+			return cheapest(fromIndexes, ALL_INDEXES, fromSearch, bound);
+		}
+		// an allSuchThat is not satisfied if no request could be generated
+		if (!fromIndexes.anyMatch(toIndexes::containsOtherThan)) {
+			return null;
+		}
+		return sum(fromIndexes, ALL_INDEXES, fromSearch, bound);
+	}
+
+	private Solution search(Attributes resource, int to, int from, InProgress inProgress, double bound) {
+		var policies = context.policies();
+		var exchangeRequest = new Request(policies.participant(to), resource, policies.participant(from));
+		if (InProgress.anyCompliant(exchangeRequest, inProgress, requestComply)) {
+			return bound > 0 ? EMPTY : null;
+		}
+		return search(exchangeRequest, inProgress, bound);
+	}
+
+	/**
+	 * @return the cheapest of the solutions of the accepted indexes, the first
+	 * one if more have the same cost
+	 */
+	private static Solution cheapest(IndexSet indexes, IntPredicate accepted, IndexSearch search,
+			double bound) {
+		Solution best = null;
+		for (int i = 0; i < indexes.size() && bound > 0; i++) {
+			var index = indexes.get(i);
+			if (!accepted.test(index)) {
+				continue;
+			}
+			var solution = search.apply(index, bound);
+			if (solution != null) {
+				best = solution;
+				bound = solution.cost();
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the combination of the cheapest solutions of all the accepted
+	 * indexes
+	 */
+	private static Solution sum(IndexSet indexes, IntPredicate accepted, IndexSearch search,
+			double bound) {
+		var result = EMPTY;
+		for (int i = 0; i < indexes.size(); i++) {
+			var index = indexes.get(i);
+			if (!accepted.test(index)) {
+				continue;
+			}
+			var solution = search.apply(index, bound - result.cost());
+			if (solution == null) {
+				return null;
+			}
+			result = combine(result, solution);
+		}
+		// there might be no indexes at all
+		return result.cost() < bound ? result : null;
+	}
+
+	private static Solution combine(Solution first, Solution second) {
+		var requests = new ArrayList<Request>(first.requests().size() + second.requests().size());
+		requests.addAll(first.requests());
+		requests.addAll(second.requests());
+		return new Solution(first.cost() + second.cost(), requests);
+	}
+}
@@ -0,0 +1,18 @@
+package colpo.core.semantics;
+
+import colpo.core.Request;
+import colpo.core.Result;
+
+/**
+ * The completed evaluation of a request of a batch.
+ *
+ * @param index the position of the request in the batch
+ * @param request
+ * @param result
+ * @param trace the trace of this evaluation
+ *
+ * @author Lorenzo Bettini
+ */
+public record Completion(int index, Request request, Result result, TraceSink trace) {
+
+}
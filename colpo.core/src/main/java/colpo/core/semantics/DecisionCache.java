@@ -0,0 +1,112 @@
+package colpo.core.semantics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import colpo.core.CompiledPolicies;
+import colpo.core.ContextHandler;
+import colpo.core.Request;
+import colpo.core.Result;
+
+/**
+ * A bounded cache of the decisions of {@link Semantics#evaluate(Request)},
+ * keyed by the request, with least-recently-used eviction.
+ *
+ * A cached decision is discarded when a policy is added to the evaluated
+ * policies, or a rule to one of them, or when an attribute is added (with
+ * {@link ContextHandler#add(int, String, Object)}) to the context of a party
+ * whose context was used to reach the decision.
+ *
+ * A cache belongs to one {@link Semantics}, which creates it (see
+ * {@link Semantics#decisionCache(int)}), since decisions also depend on how
+ * the Semantics evaluates requests; the cache also checks that decisions
+ * were reached on the same compiled policies, not only on the same version.
+ *
+ * The cache can be shared among threads.
+ *
+ * @author Lorenzo Bettini
+ */
+public class DecisionCache {
+
+	/**
+	 * @param result
+	 * @param trace the trace of the evaluation, to be replayed
+	 * @param contextVersions the versions of the contexts of the parties
+	 * that were used for the evaluation
+	 */
+	static record Decision(Result result, String trace, Map<Integer, Long> contextVersions) {
+
+	}
+
+	private Map<Request, Decision> decisions;
+	private CompiledPolicies policies = null;
+	private long hits = 0;
+	private long misses = 0;
+
+	DecisionCache(int maximumSize) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximum size must be positive: " + maximumSize);
+		}
+		decisions = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<Request, Decision> eldest) {
+				return size() > maximumSize;
+			}
+		};
+	}
+
+	/**
+	 * @param request
+	 * @param currentPolicies the policies the decision must have been reached
+	 * on, compared by identity: the decisions on other policies are discarded
+	 * @param contextHandler
+	 * @return
+	 */
+	synchronized Decision get(Request request, CompiledPolicies currentPolicies, ContextHandler contextHandler) {
+		if (currentPolicies != policies) {
+			decisions.clear();
+			policies = currentPolicies;
+		}
+		var decision = decisions.get(request);
+		if (decision != null && !isUpToDate(decision, contextHandler)) {
+			decisions.remove(request);
+			decision = null;
+		}
+		if (decision == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return decision;
+	}
+
+	private boolean isUpToDate(Decision decision, ContextHandler contextHandler) {
+		return decision.contextVersions().entrySet().stream()
+			.allMatch(e -> e.getValue() == contextHandler.getVersion(e.getKey()));
+	}
+
+	synchronized void put(Request request, CompiledPolicies currentPolicies, Decision decision) {
+		if (currentPolicies == policies) {
+			decisions.put(request, decision);
+		}
+	}
+
+	public synchronized void clear() {
+		decisions.clear();
+	}
+
+	public synchronized int size() {
+		return decisions.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,111 @@
+package colpo.core.semantics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import colpo.core.CompiledPolicies;
+import colpo.core.Request;
+import colpo.core.RequestComply;
+import colpo.core.RequestComply.PartitionKey;
+import colpo.core.Result;
+
+/**
+ * The state of a single top-level evaluation, kept out of {@link Semantics}
+ * so that the same {@link Semantics} can perform concurrent evaluations.
+ *
+ * @param policies the policies evaluated, the same during the whole evaluation
+ * @param trace where the steps of this evaluation are recorded
+ * @param requests the requests being evaluated, used for compliance
+ * @param memo the results of the sub-evaluations, by request, see {@link MemoEntry}
+ * @param contextVersions the versions of the contexts of the parties used
+ * by this evaluation, recorded for the {@link DecisionCache}
+ * @param cancellation checked at each step of the evaluation
+ * @param budget the limits of the evaluation, shared with forked contexts
+ *
+ * @author Lorenzo Bettini
+ */
+record EvaluationContext(CompiledPolicies policies, TraceSink trace, InProgressRequests requests,
+		Map<Request, List<MemoEntry>> memo, Map<Integer, Long> contextVersions,
+		Cancellation cancellation, Budget budget) {
+
+	/**
+	 * The result of a sub-evaluation depends on the request and on the
+	 * requests being evaluated, since these are used for compliance, but only
+	 * on the ones in the partitions searched for a compliant request (see
+	 * {@link InProgressRequests#track()}); the trace is stored as well, so
+	 * that it can be replayed.
+	 *
+	 * @param result
+	 * @param trace
+	 * @param depth the depth of the sub-evaluation, which fitted in the depth
+	 * limit from there
+	 * @param inProgress the requests being evaluated, in the searched
+	 * partitions
+	 */
+	static record MemoEntry(Result result, String trace, int depth,
+			Map<PartitionKey, Set<Request>> inProgress) {
+
+	}
+
+	/**
+	 * @param policies
+	 * @param trace
+	 * @param requestComply
+	 * @param cancellation the cancellation of the whole evaluation, also
+	 * cancelled by the budget when a limit is exceeded
+	 * @param budget
+	 */
+	EvaluationContext(CompiledPolicies policies, TraceSink trace, RequestComply requestComply,
+			Cancellation cancellation, Budget budget) {
+		// concurrent maps, since they are shared with forked contexts
+		this(policies, trace, new InProgressRequests(requestComply), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+			cancellation, budget);
+	}
+
+	/**
+	 * The partitions searched by the returned evaluation are recorded as
+	 * searched by the current one, which depends on them as well.
+	 *
+	 * @param request
+	 * @return a memoized evaluation of the request that is valid for the
+	 * current requests being evaluated, or null
+	 */
+	MemoEntry memoized(Request request) {
+		var entries = memo.get(request);
+		if (entries == null) {
+			return null;
+		}
+		var depth = requests.size();
+		for (var entry : entries) {
+			if ((entry.depth() >= depth || !budget.limitsDepth()) && requests.hasSnapshot(entry.inProgress())) {
+				requests.addSearched(entry.inProgress().keySet());
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	void memoize(Request request, MemoEntry entry) {
+		memo.merge(request, List.of(entry), (entries, added) -> {
+			var merged = new ArrayList<MemoEntry>(entries.size() + 1);
+			merged.addAll(entries);
+			merged.addAll(added);
+			return merged;
+		});
+	}
+
+	/**
+	 * A context for evaluating a part of this evaluation in parallel, with its
+	 * own trace and its own copy of the requests being evaluated; the memo
+	 * table and the budget are shared, and the returned context is cancelled when this one is.
+	 *
+	 * @return
+	 */
+	EvaluationContext fork() {
+		return new EvaluationContext(policies, trace.newSink(), requests.copy(),
+			memo, contextVersions, new Cancellation(cancellation), budget);
+	}
+}
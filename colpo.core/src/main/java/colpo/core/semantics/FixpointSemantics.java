@@ -0,0 +1,104 @@
+package colpo.core.semantics;
+
+import java.util.List;
+
+import colpo.core.AttributeMatcher;
+import colpo.core.ContextHandler;
+import colpo.core.DefaultRequestComply;
+import colpo.core.Policies;
+import colpo.core.Request;
+import colpo.core.RequestComply;
+
+/**
+ * Answers whether requests are permitted by looking them up in the relation
+ * of all the permitted requests, computed bottom-up, at once, as a fixpoint,
+ * instead of searching the policies for each request like {@link Semantics}.
+ *
+ * The relation contains the requests (requester, resource, from), where
+ * requester and from are different policies and the resource is one of the
+ * resources of the exchanges of the policies, that is, all the requests that
+ * can be generated by exchanges; requests for other resources are evaluated
+ * with {@link Semantics}.
+ *
+ * The relation is computed on the first query, and computed again when
+ * policies are added or the context of a party read by a condition changes.
+ *
+ * @author Lorenzo Bettini
+ */
+public class FixpointSemantics {
+
+	private final Policies policies;
+	private AttributeMatcher matcher = new AttributeMatcher();
+	private ContextHandler contextHandler = new ContextHandler();
+	private RequestComply requestComply = new DefaultRequestComply(matcher);
+	private PermittedRelation relation;
+
+	public FixpointSemantics(Policies policies) {
+		this.policies = policies;
+	}
+
+	public synchronized FixpointSemantics contextHandler(ContextHandler contextHandler) {
+		this.contextHandler = contextHandler;
+		relation = null;
+		return this;
+	}
+
+	public synchronized FixpointSemantics requestComply(RequestComply requestComply) {
+		this.requestComply = requestComply;
+		relation = null;
+		return this;
+	}
+
+	/**
+	 * @param request
+	 * @return whether the request is permitted, as in
+	 * {@link Semantics#evaluate(Request)}, without collecting the exchange
+	 * requests
+	 */
+	public boolean isPermitted(Request request) {
+		var canonicalRequest = request.canonical();
+		var current = relation();
+		var resource = canonicalRequest.resource();
+		var requester = canonicalRequest.requester().getIndex();
+		var from = canonicalRequest.from();
+		if (!current.covers(resource)) {
+			return semantics(current).evaluate(canonicalRequest).isPermitted();
+		}
+		if (from.getIndex() > 0) {
+			return current.contains(requester, resource, from.getIndex());
+		}
+		var candidates = current.policies().resolve(from.getAttributes()).without(requester);
+		if (candidates.isEmpty()) {
+			return false;
+		}
+		return from.isAll() ?
+			candidates.allMatch(i -> current.contains(requester, resource, i)) :
+			candidates.anyMatch(i -> current.contains(requester, resource, i));
+	}
+
+	/**
+	 * @return all the permitted requests whose resource is the resource of an
+	 * exchange, e.g., for a report of who can get what from whom
+	 */
+	public List<Request> getPermitted() {
+		return relation().permitted();
+	}
+
+	private Semantics semantics(PermittedRelation current) {
+		return new Semantics(current.policies())
+			.traceSink(TraceSink.NO_OP)
+			.contextHandler(contextHandler)
+			.requestComply(requestComply);
+	}
+
+	private synchronized PermittedRelation relation() {
+		var current = relation;
+		if (current == null ||
+				current.policies().getVersion() != policies.getVersion() ||
+				current.isStale(contextHandler)) {
+			current = new PermittedRelation(policies.compile(), contextHandler, requestComply, matcher);
+			relation = current;
+		}
+		return current;
+	}
+}
@@ -0,0 +1,176 @@
+package colpo.core.semantics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import colpo.core.Request;
+import colpo.core.RequestComply;
+import colpo.core.RequestComply.PartitionKey;
+
+/**
+ * The requests being evaluated, partitioned according to
+ * {@link RequestComply#partitionKey(Request)}, so that the search for a
+ * compliant request only scans the requests of the same partition.
+ *
+ * The partitions searched are recorded (see {@link #track()}), so that the
+ * result of a sub-evaluation can be reused whenever those partitions contain
+ * the same requests.
+ *
+ * @author Lorenzo Bettini
+ */
+class InProgressRequests {
+
+	private RequestComply requestComply;
+	private Set<Request> requests;
+	private Map<PartitionKey, List<Request>> partitions;
+	/**
+	 * The keys of the partitions searched since the last {@link #track()},
+	 * or null.
+	 */
+	private Set<PartitionKey> searched;
+
+	InProgressRequests(RequestComply requestComply) {
+		this(requestComply, new LinkedHashSet<>(), new HashMap<>(), null);
+	}
+
+	private InProgressRequests(RequestComply requestComply, Set<Request> requests,
+			Map<PartitionKey, List<Request>> partitions, Set<PartitionKey> searched) {
+		this.requestComply = requestComply;
+		this.requests = requests;
+		this.partitions = partitions;
+		this.searched = searched;
+	}
+
+	void add(Request request) {
+		if (requests.add(request)) {
+			partitions.computeIfAbsent(requestComply.partitionKey(request), key -> new ArrayList<>())
+				.add(request);
+		}
+	}
+
+	void remove(Request request) {
+		if (requests.remove(request)) {
+			partitions.get(requestComply.partitionKey(request)).remove(request);
+		}
+	}
+
+	/**
+	 * @param newRequest
+	 * @return whether an existing request complies with the new one
+	 */
+	boolean anyCompliant(Request newRequest) {
+		var key = requestComply.partitionKey(newRequest);
+		if (searched != null) {
+			searched.add(key);
+		}
+		var partition = partitions.get(key);
+		if (partition == null) {
+			return false;
+		}
+		for (var existingRequest : partition) {
+			if (requestComply.test(newRequest, existingRequest)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of requests being evaluated, that is, the depth of
+	 * the nested exchange evaluations
+	 */
+	int size() {
+		return requests.size();
+	}
+
+	/**
+	 * Starts recording the partitions searched, e.g., by a sub-evaluation.
+	 *
+	 * @return the partitions recorded so far, to be passed to
+	 * {@link #untrack(Set)}
+	 */
+	Set<PartitionKey> track() {
+		var previous = searched;
+		searched = new HashSet<>();
+		return previous;
+	}
+
+	/**
+	 * Goes back to recording in the previous set, which also gets the
+	 * partitions recorded since the matching {@link #track()}.
+	 *
+	 * @param previous
+	 * @return the partitions searched since the matching {@link #track()}
+	 */
+	Set<PartitionKey> untrack(Set<PartitionKey> previous) {
+		var current = searched;
+		searched = previous;
+		addSearched(current);
+		return current;
+	}
+
+	/**
+	 * Records the partitions as searched, e.g., by a memoized sub-evaluation.
+	 *
+	 * @param keys
+	 */
+	void addSearched(Collection<PartitionKey> keys) {
+		if (searched != null) {
+			searched.addAll(keys);
+		}
+	}
+
+	/**
+	 * @return the partitions recorded as searched, e.g., by a forked copy
+	 */
+	Set<PartitionKey> searched() {
+		return searched;
+	}
+
+	/**
+	 * @param keys
+	 * @return an immutable copy of the requests in the passed partitions
+	 */
+	Map<PartitionKey, Set<Request>> snapshot(Set<PartitionKey> keys) {
+		var snapshot = new HashMap<PartitionKey, Set<Request>>();
+		for (var key : keys) {
+			var partition = partitions.get(key);
+			snapshot.put(key, partition == null ? Set.of() : Set.copyOf(partition));
+		}
+		return Map.copyOf(snapshot);
+	}
+
+	/**
+	 * @param snapshot
+	 * @return whether the partitions of the snapshot (see
+	 * {@link #snapshot(Set)}) contain the same requests now
+	 */
+	boolean hasSnapshot(Map<PartitionKey, Set<Request>> snapshot) {
+		for (var entry : snapshot.entrySet()) {
+			var partition = partitions.get(entry.getKey());
+			var size = partition == null ? 0 : partition.size();
+			if (size != entry.getValue().size() ||
+					(size > 0 && !entry.getValue().containsAll(partition))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The copy records the partitions it searches in a set of its own (see
+	 * {@link #searched()}).
+	 */
+	InProgressRequests copy() {
+		var partitionsCopy = new HashMap<PartitionKey, List<Request>>();
+		partitions.forEach((key, partition) -> partitionsCopy.put(key, new ArrayList<>(partition)));
+		return new InProgressRequests(requestComply, new LinkedHashSet<>(requests), partitionsCopy,
+			new HashSet<>());
+	}
+}
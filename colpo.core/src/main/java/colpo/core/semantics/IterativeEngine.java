@@ -0,0 +1,667 @@
+package colpo.core.semantics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import colpo.core.CompiledPolicies.CompiledAndExchange;
+import colpo.core.CompiledPolicies.CompiledExchange;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledPolicy;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+import colpo.core.CompositeExchange;
+import colpo.core.ContextHandler;
+import colpo.core.IndexSet;
+import colpo.core.Request;
+import colpo.core.RequestComply.PartitionKey;
+import colpo.core.Result;
+import colpo.core.semantics.EvaluationContext.MemoEntry;
+import colpo.core.semantics.Semantics.Outcome;
+
+/**
+ * Evaluates a request like the recursive evaluation of {@link Semantics},
+ * with the same results and traces, but with an explicit stack of frames,
+ * one for each request, policy, rule and exchange being evaluated, so that
+ * the depth of exchange chains is not limited by the size of the thread's
+ * stack (see {@link Semantics.Engine#ITERATIVE}).
+ *
+ * Each frame is a state machine: a step either pushes a child frame, whose
+ * result is then available in {@link #returned}, or completes the frame with
+ * its result. Completed frames are recycled.
+ *
+ * Fan-outs are always evaluated sequentially.
+ *
+ * @author Lorenzo Bettini
+ */
+class IterativeEngine {
+
+	private final Semantics semantics;
+	private final ContextHandler contextHandler;
+	private final EvaluationContext context;
+	private final TraceSink trace;
+
+	private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+	private final ArrayDeque<RequestFrame> requestFrames = new ArrayDeque<>();
+	private final ArrayDeque<PolicyFrame> policyFrames = new ArrayDeque<>();
+	private final ArrayDeque<RuleFrame> ruleFrames = new ArrayDeque<>();
+	private final ArrayDeque<ExchangeFrame> exchangeFrames = new ArrayDeque<>();
+	private final ArrayDeque<SingleExchangeFrame> singleExchangeFrames = new ArrayDeque<>();
+
+	/**
+	 * The result of the last completed frame.
+	 */
+	private Result returned;
+
+	IterativeEngine(Semantics semantics, ContextHandler contextHandler, EvaluationContext context) {
+		this.semantics = semantics;
+		this.contextHandler = contextHandler;
+		this.context = context;
+		this.trace = context.trace();
+	}
+
+	Result evaluate(Request request) {
+		pushRequest(request);
+		while (!stack.isEmpty()) {
+			try {
+				stack.peek().step();
+			} catch (Exception e) {
+				unwind(e);
+			}
+		}
+		return returned;
+	}
+
+	/**
+	 * Like an exception thrown during the recursive evaluation, an exception
+	 * thrown by a frame is caught by the nearest rule being evaluated.
+	 */
+	private void unwind(Exception e) {
+		while (!stack.isEmpty()) {
+			if (stack.peek() instanceof RuleFrame ruleFrame) {
+				ruleFrame.fail(e);
+				return;
+			}
+			stack.pop().recycle();
+		}
+		throw e instanceof RuntimeException runtimeException ?
+			runtimeException : new IllegalStateException(e);
+	}
+
+	private void complete(Result result) {
+		stack.pop().recycle();
+		returned = result;
+	}
+
+	private void pushRequest(Request request) {
+		var frame = requestFrames.isEmpty() ? new RequestFrame() : requestFrames.pop();
+		frame.request = request;
+		stack.push(frame);
+	}
+
+	private void pushPolicy(CompiledPolicy policy, Request request) {
+		var frame = policyFrames.isEmpty() ? new PolicyFrame() : policyFrames.pop();
+		frame.policy = policy;
+		frame.request = request;
+		stack.push(frame);
+	}
+
+	private void pushRule(CompiledRule rule, Request request, boolean candidate) {
+		var frame = ruleFrames.isEmpty() ? new RuleFrame() : ruleFrames.pop();
+		frame.rule = rule;
+		frame.request = request;
+		frame.candidate = candidate;
+		stack.push(frame);
+	}
+
+	private void pushExchange(CompiledRule rule, CompiledExchange exchange, Request request) {
+		var frame = exchangeFrames.isEmpty() ? new ExchangeFrame() : exchangeFrames.pop();
+		frame.rule = rule;
+		frame.exchange = exchange;
+		frame.request = request;
+		stack.push(frame);
+	}
+
+	private void pushSingleExchange(CompiledRule rule, CompiledSingleExchange exchange, Request request) {
+		var frame = singleExchangeFrames.isEmpty() ? new SingleExchangeFrame() : singleExchangeFrames.pop();
+		frame.rule = rule;
+		frame.exchange = exchange;
+		frame.request = request;
+		stack.push(frame);
+	}
+
+	private abstract static class Frame {
+
+		protected static final int START = 0;
+
+		protected int state = START;
+
+		abstract void step() throws Exception; // NOSONAR
+
+		/**
+		 * Clears the frame and gives it back to its pool.
+		 */
+		abstract void recycle();
+	}
+
+	/**
+	 * A request, with its memoization; if it is from a quantified participant,
+	 * the fan-out on the matching policies.
+	 */
+	private class RequestFrame extends Frame {
+
+		private static final int AFTER_POLICY = 1;
+		private static final int NEXT_CANDIDATE = 2;
+		private static final int AFTER_CANDIDATE = 3;
+
+		private Request request;
+		private int mark;
+		private int depth;
+		/**
+		 * The partitions searched by the enclosing evaluation, while this one
+		 * is tracked.
+		 */
+		private Set<PartitionKey> outer;
+		private boolean tracking;
+		private IndexSet candidates;
+		private int position;
+		private final List<Outcome> outcomes = new ArrayList<>();
+
+		@Override
+		void step() {
+			switch (state) {
+			case START -> start();
+			case AFTER_POLICY -> finish(returned);
+			case NEXT_CANDIDATE -> {
+				var i = candidates.get(position);
+				state = AFTER_CANDIDATE;
+				pushPolicy(context.policies().getByIndex(i), Semantics.withFrom(request, i, context));
+			}
+			case AFTER_CANDIDATE -> {
+				var all = request.from().isAll();
+				var outcome = Outcome.of(returned);
+				outcomes.add(outcome);
+				position++;
+				if (outcome.permitted() != all || position == candidates.size()) {
+					finish(Semantics.isPermitted(all, outcomes) ?
+						Result.permitted().addAll(Semantics.requestsOf(outcomes)) : Semantics.DENIED);
+				} else {
+					state = NEXT_CANDIDATE;
+				}
+			}
+			default -> throw new IllegalStateException("unexpected state: " + state);
+			}
+		}
+
+		private void start() {
+			if (context.cancellation().isCancelled() ||
+					!context.budget().checkDepth(context.requests().size())) {
+				complete(Semantics.DENIED);
+				return;
+			}
+			var entry = context.memoized(request);
+			if (entry != null) {
+				trace.addLines(entry.trace());
+				complete(Semantics.copy(entry.result()));
+				return;
+			}
+			mark = trace.mark();
+			depth = context.requests().size();
+			outer = context.requests().track();
+			tracking = true;
+			var request = this.request;
+			trace.addAndThenIndent(() -> String.format("evaluating %s", request));
+			var from = request.from();
+			var index = from.getIndex();
+			if (index > 0) {
+				state = AFTER_POLICY;
+				pushPolicy(context.policies().getByIndex(index), request);
+				return;
+			}
+			trace.addAndThenIndent(() -> "finding matching policies");
+			candidates = semantics.policiesToEvaluate(request.requester(), from, context);
+			trace.removeIndent();
+			if (candidates.isEmpty()) {
+				finish(Semantics.DENIED);
+				return;
+			}
+			position = 0;
+			state = NEXT_CANDIDATE;
+		}
+
+		private void finish(Result result) {
+			var permitted = result.isPermitted();
+			trace.removeIndentAndThenAdd(() -> String.format("result: %s", permitted));
+			var searched = untrack();
+			// the result of a cancelled evaluation is meaningless
+			if (!context.cancellation().isCancelled()) {
+				context.memoize(request, new MemoEntry(Semantics.copy(result), trace.since(mark), depth,
+					context.requests().snapshot(searched)));
+			}
+			complete(result);
+		}
+
+		private Set<PartitionKey> untrack() {
+			tracking = false;
+			return context.requests().untrack(outer);
+		}
+
+		@Override
+		void recycle() {
+			// when unwinding an exception
+			if (tracking) {
+				untrack();
+			}
+			state = START;
+			request = null;
+			outer = null;
+			candidates = null;
+			outcomes.clear();
+			requestFrames.push(this);
+		}
+	}
+
+	/**
+	 * The rules of a policy, evaluated in order until one permits the request.
+	 */
+	private class PolicyFrame extends Frame {
+
+		private static final int NEXT_RULE = 1;
+		private static final int AFTER_RULE = 2;
+
+		private CompiledPolicy policy;
+		private Request request;
+		private BitSet candidateIndexes;
+		private boolean traced;
+		/**
+		 * The index of the next rule to evaluate, if not traced, otherwise its
+		 * position in the rules of the policy.
+		 */
+		private int position;
+
+		@Override
+		void step() {
+			switch (state) {
+			case START -> {
+				candidateIndexes = semantics.candidateIndexes(policy, request, context);
+				// all the rules are walked only to record the match in the trace
+				traced = trace.isEnabled();
+				position = traced ? 0 : candidateIndexes.nextSetBit(0);
+				state = NEXT_RULE;
+			}
+			case NEXT_RULE -> nextRule();
+			case AFTER_RULE -> {
+				if (returned.isPermitted()) {
+					complete(returned);
+					return;
+				}
+				position = traced ? position + 1 : candidateIndexes.nextSetBit(position + 1);
+				state = NEXT_RULE;
+			}
+			default -> throw new IllegalStateException("unexpected state: " + state);
+			}
+		}
+
+		private void nextRule() {
+			if (traced) {
+				if (position == policy.rules().size()) {
+					complete(Semantics.DENIED);
+					return;
+				}
+				var rule = policy.rules().get(position);
+				state = AFTER_RULE;
+				pushRule(rule, request, candidateIndexes.get(rule.index()));
+				return;
+			}
+			var resource = request.resource();
+			for (; position >= 0; position = candidateIndexes.nextSetBit(position + 1)) {
+				var rule = policy.getRule(position);
+				if (!rule.isTrivial()) {
+					state = AFTER_RULE;
+					pushRule(rule, request, true);
+					return;
+				}
+				// decided by the resource match alone: nothing else to evaluate
+				if (!context.budget().countRuleEvaluation()) {
+					complete(Semantics.DENIED);
+					return;
+				}
+				if (semantics.matcher().match(resource, rule.resource())) {
+					complete(Result.permitted().add(request));
+					return;
+				}
+			}
+			complete(Semantics.DENIED);
+		}
+
+		@Override
+		void recycle() {
+			state = START;
+			policy = null;
+			request = null;
+			candidateIndexes = null;
+			policyFrames.push(this);
+		}
+	}
+
+	/**
+	 * A rule: its resource, its condition and then its exchange, if any.
+	 */
+	private class RuleFrame extends Frame {
+
+		private static final int AFTER_EXCHANGE = 1;
+
+		private CompiledRule rule;
+		private Request request;
+		private boolean candidate;
+
+		@Override
+		void step() {
+			switch (state) {
+			case START -> start();
+			case AFTER_EXCHANGE -> {
+				var result = returned;
+				finish(result.isPermitted() ?
+					Result.permitted()
+						.add(request)
+						.addAll(result.getRequests()) :
+					result);
+			}
+			default -> throw new IllegalStateException("unexpected state: " + state);
+			}
+		}
+
+		private void start() {
+			// rules that are not candidates are only walked to record the trace
+			if (context.cancellation().isCancelled() || (candidate && !context.budget().countRuleEvaluation())) {
+				complete(Semantics.DENIED);
+				return;
+			}
+			var policyIndex = rule.policyIndex();
+			var request = this.request;
+			trace.addAndThenIndent(() -> String.format("policy %d: evaluating %s",
+					policyIndex, request));
+			try {
+				var rule = this.rule;
+				Supplier<String> prefix = rule::name;
+				boolean matched = candidate ?
+					semantics.tryMatch(prefix, "resource", request.resource(), rule.resource(), context) :
+					semantics.traceMatch(prefix, "resource", request.resource(), rule.resource(), false, context);
+				if (!matched) {
+					finish(Semantics.DENIED);
+					return;
+				}
+				boolean outcome = rule.condition().evaluate(
+					new RuleAttributesResolver(rule, request, contextHandler, context));
+				trace.add(() -> String.format("%s: condition %s -> %s", rule.name(), rule.condition(), outcome));
+				if (!outcome) {
+					finish(Semantics.DENIED);
+					return;
+				}
+				if (rule.exchange() == null) {
+					// no exchange requests to evaluate, so no need to track this request
+					finish(Result.permitted().add(request));
+					return;
+				}
+				state = AFTER_EXCHANGE;
+				pushExchange(rule, rule.exchange(), request);
+			} catch (Exception e) {
+				fail(e);
+			}
+		}
+
+		void fail(Exception e) {
+			var rule = this.rule;
+			trace.add(() -> String.format("%s: condition %s -> %s", rule.name(), rule.condition(), e.getMessage()));
+			finish(Semantics.DENIED);
+		}
+
+		private void finish(Result result) {
+			trace.removeIndent();
+			complete(result);
+		}
+
+		@Override
+		void recycle() {
+			state = START;
+			rule = null;
+			request = null;
+			ruleFrames.push(this);
+		}
+	}
+
+	/**
+	 * A node of the exchange of a rule, while the rule's request is being
+	 * evaluated.
+	 */
+	private class ExchangeFrame extends Frame {
+
+		private static final int AFTER_LEFT = 1;
+		private static final int AFTER_RIGHT = 2;
+		private static final int AFTER_SINGLE = 3;
+
+		private CompiledRule rule;
+		private CompiledExchange exchange;
+		private Request request;
+		private boolean composite;
+		private Result left;
+
+		@Override
+		void step() {
+			var rule = this.rule;
+			switch (state) {
+			case START -> {
+				context.requests().add(request);
+				composite = exchange.exchange() instanceof CompositeExchange;
+				if (composite) {
+					var description = exchange.exchange();
+					trace.addAndThenIndent(() -> String.format("%s: evaluating %s", rule.name(), description));
+				}
+				switch (exchange) {
+				case CompiledOrExchange e -> {
+					state = AFTER_LEFT;
+					pushExchange(rule, e.left(), request);
+				}
+				case CompiledAndExchange e -> {
+					state = AFTER_LEFT;
+					pushExchange(rule, e.left(), request);
+				}
+				case CompiledSingleExchange e -> {
+					state = AFTER_SINGLE;
+					pushSingleExchange(rule, e, request);
+				}
+				}
+			}
+			case AFTER_LEFT -> {
+				switch (exchange) {
+				case CompiledOrExchange e when !returned.isPermitted() -> {
+					trace.addInPreviousIndent(() -> String.format("%s: OR", rule.name()));
+					state = AFTER_RIGHT;
+					pushExchange(rule, e.right(), request);
+				}
+				case CompiledAndExchange e when returned.isPermitted() -> {
+					left = returned;
+					trace.addInPreviousIndent(() -> String.format("%s: AND", rule.name()));
+					state = AFTER_RIGHT;
+					pushExchange(rule, e.right(), request);
+				}
+				default -> finish(returned);
+				}
+			}
+			case AFTER_RIGHT -> {
+				if (exchange instanceof CompiledAndExchange) {
+					finish(returned.isPermitted() ?
+						left.addAll(returned.getRequests()) : Semantics.DENIED);
+				} else {
+					finish(returned);
+				}
+			}
+			case AFTER_SINGLE -> finish(returned);
+			default -> throw new IllegalStateException("unexpected state: " + state);
+			}
+		}
+
+		private void finish(Result result) {
+			if (composite) {
+				var rule = this.rule;
+				var permitted = result.isPermitted();
+				trace.removeIndentAndThenAdd(() -> String.format("%s: END Exchange -> %s",
+						rule.name(), permitted));
+			}
+			context.requests().remove(request);
+			complete(result);
+		}
+
+		@Override
+		void recycle() {
+			state = START;
+			rule = null;
+			exchange = null;
+			request = null;
+			left = null;
+			exchangeFrames.push(this);
+		}
+	}
+
+	/**
+	 * A single exchange: for each "from" index, the exchange requests to all
+	 * the "to" indexes.
+	 */
+	private class SingleExchangeFrame extends Frame {
+
+		private static final int NEXT_FROM = 1;
+		private static final int NEXT_TO = 2;
+		private static final int AFTER_REQUEST = 3;
+
+		private CompiledRule rule;
+		private CompiledSingleExchange exchange;
+		private Request request;
+		private IndexSet fromIndexes;
+		private IndexSet toIndexes;
+		private int fromPosition;
+		private int fromIndex;
+		private int toPosition;
+		private final List<Outcome> outcomes = new ArrayList<>();
+		private final List<Outcome> innerOutcomes = new ArrayList<>();
+
+		@Override
+		void step() {
+			switch (state) {
+			case START -> start();
+			case NEXT_FROM -> {
+				fromIndex = fromIndexes.get(fromPosition);
+				toPosition = 0;
+				innerOutcomes.clear();
+				state = NEXT_TO;
+			}
+			case NEXT_TO -> nextTo();
+			case AFTER_REQUEST -> toOutcome(Outcome.of(returned));
+			default -> throw new IllegalStateException("unexpected state: " + state);
+			}
+		}
+
+		private void start() {
+			var rule = this.rule;
+			var exchange = this.exchange;
+			trace.add(() -> String.format("%s: evaluating %s", rule.name(), exchange.exchange()));
+			var exchangeFrom = exchange.from();
+			var exchangeTo = exchange.to();
+			fromIndexes = exchangeFrom.isRequester() ?
+				IndexSet.of(request.requester().getIndex()) :
+				semantics.computeIndexes(exchangeFrom, context);
+			toIndexes = exchangeTo.isMe() ?
+				exchangeTo.indexes() :
+				semantics.computeIndexes(exchangeTo, context);
+			if (toIndexes.isEmpty()) {
+				trace.add(() -> String.format("%s: satisfied: no one to exchange", rule.name()));
+				complete(Result.permitted()); // there's no one to satisfy
+				return;
+			}
+			if (fromIndexes.isEmpty()) {
+				trace.add(() -> String.format("%s: not satisfied: no one from exchange", rule.name()));
+				complete(Semantics.DENIED); // no one can satisfy
+				return;
+			}
+			fromPosition = 0;
+			state = NEXT_FROM;
+		}
+
+		private void nextTo() {
+			if (toPosition < toIndexes.size() && toIndexes.get(toPosition) == fromIndex) {
+				toPosition++; // no exchange request to oneself
+			}
+			if (toPosition == toIndexes.size()) {
+				fromOutcome();
+				return;
+			}
+			var policies = context.policies();
+			var exchangeRequest = new Request(
+				policies.participant(toIndexes.get(toPosition)),
+				exchange.exchange().resource(),
+				policies.participant(fromIndex));
+			if (context.requests().anyCompliant(exchangeRequest)) {
+				var rule = this.rule;
+				trace.add(() -> String.format("%s: compliant request found %s", rule.name(), exchangeRequest));
+				toOutcome(Outcome.of(Result.permitted()));
+				return;
+			}
+			state = AFTER_REQUEST;
+			pushRequest(exchangeRequest);
+		}
+
+		private void toOutcome(Outcome outcome) {
+			innerOutcomes.add(outcome);
+			toPosition++;
+			if (outcome.permitted() != exchange.to().isAll()) {
+				fromOutcome();
+			} else {
+				state = NEXT_TO;
+			}
+		}
+
+		private void fromOutcome() {
+			var all = exchange.from().isAll();
+			// all the requests of the successful exchange requests are collected
+			// even if the outcome is not permitted
+			var outcome = new Outcome(Semantics.isPermitted(exchange.to().isAll(), innerOutcomes),
+				Semantics.requestsOf(innerOutcomes),
+				toIndexes.containsOtherThan(fromIndex));
+			outcomes.add(outcome);
+			fromPosition++;
+			if (outcome.permitted() != all || fromPosition == fromIndexes.size()) {
+				finish();
+			} else {
+				state = NEXT_FROM;
+			}
+		}
+
+		private void finish() {
+			var permitted = Semantics.isPermitted(exchange.from().isAll(), outcomes);
+			// this additional check is required because allMatch returns
+			// true if no request could be generated
+			if (exchange.from().isAll() &&
+					outcomes.stream().noneMatch(Outcome::generated)) {
+				var rule = this.rule;
+				trace.add(() -> String.format("%s: not satisfied: no request could be generated", rule.name()));
+				permitted = false;
+			}
+			complete(permitted ? Result.permitted().addAll(Semantics.requestsOf(outcomes)) : Semantics.DENIED);
+		}
+
+		@Override
+		void recycle() {
+			state = START;
+			rule = null;
+			exchange = null;
+			request = null;
+			fromIndexes = null;
+			toIndexes = null;
+			outcomes.clear();
+			innerOutcomes.clear();
+			singleExchangeFrames.push(this);
+		}
+	}
+}
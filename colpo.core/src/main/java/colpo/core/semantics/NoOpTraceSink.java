@@ -0,0 +1,59 @@
+package colpo.core.semantics;
+
+import java.util.function.Supplier;
+
+/**
+ * @author Lorenzo Bettini
+ */
+class NoOpTraceSink implements TraceSink {
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public TraceSink newSink() {
+		return this;
+	}
+
+	@Override
+	public void add(Supplier<String> message) {
+		// nothing to record
+	}
+
+	@Override
+	public void addIndent() {
+		// nothing to record
+	}
+
+	@Override
+	public void removeIndent() {
+		// nothing to record
+	}
+
+	@Override
+	public void reset() {
+		// nothing to record
+	}
+
+	@Override
+	public int mark() {
+		return 0;
+	}
+
+	@Override
+	public String since(int mark) {
+		return "";
+	}
+
+	@Override
+	public void addLines(String lines) {
+		// nothing to record
+	}
+
+	@Override
+	public String toString() {
+		return "";
+	}
+}
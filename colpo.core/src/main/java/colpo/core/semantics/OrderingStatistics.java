@@ -0,0 +1,216 @@
+package colpo.core.semantics;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import colpo.core.CompiledPolicies;
+import colpo.core.CompiledPolicies.CompiledExchange;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledPolicy;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+import colpo.core.IndexSet;
+
+/**
+ * How often the rules, the policies and the branches of the
+ * {@link CompiledOrExchange}s of some compiled policies have succeeded, and
+ * how long their evaluations have taken, used to order them (see
+ * {@link Semantics.Ordering#ADAPTIVE}).
+ *
+ * Alternatives, where the first success decides, are ordered by their
+ * probability of success divided by their cost, and candidates that must all
+ * succeed by their probability of failure divided by their cost, so that the
+ * expected cost of deciding is minimized; the order of candidates with the
+ * same score is kept, so, at first, candidates are in the strict order.
+ *
+ * @author Lorenzo Bettini
+ */
+class OrderingStatistics {
+
+	/**
+	 * The cost of a candidate that has never been evaluated, in nanoseconds.
+	 */
+	private static final double PRIOR_COST = 1_000;
+
+	/**
+	 * The evaluations of some candidates, by index; updated concurrently.
+	 */
+	private static class Counters {
+
+		private final AtomicLongArray attempts;
+		private final AtomicLongArray successes;
+		private final AtomicLongArray nanos;
+
+		private Counters(int size) {
+			attempts = new AtomicLongArray(size);
+			successes = new AtomicLongArray(size);
+			nanos = new AtomicLongArray(size);
+		}
+
+		private void record(int index, boolean success, long elapsed) {
+			attempts.incrementAndGet(index);
+			if (success) {
+				successes.incrementAndGet(index);
+			}
+			nanos.addAndGet(index, elapsed);
+		}
+
+		/**
+		 * Both the probability and the cost are smoothed, so that the
+		 * candidates that have not been evaluated yet get a chance.
+		 */
+		private double score(int index, boolean all) {
+			var attemptCount = attempts.get(index);
+			var success = (successes.get(index) + 1.0) / (attemptCount + 2.0);
+			var cost = (nanos.get(index) + PRIOR_COST) / (attemptCount + 1.0);
+			return (all ? 1 - success : success) / cost;
+		}
+
+		/**
+		 * @return the positions of the passed indexes, by descending score
+		 */
+		private int[] order(int[] indexes, boolean all) {
+			var size = indexes.length;
+			var positions = new int[size];
+			var scores = new double[size];
+			for (int i = 0; i < size; i++) {
+				positions[i] = i;
+				scores[i] = score(indexes[i], all);
+			}
+			// insertion sort, which is stable, on few candidates
+			for (int i = 1; i < size; i++) {
+				var position = positions[i];
+				var score = scores[i];
+				int j = i - 1;
+				for (; j >= 0 && scores[j] < score; j--) {
+					positions[j + 1] = positions[j];
+					scores[j + 1] = scores[j];
+				}
+				positions[j + 1] = position;
+				scores[j + 1] = score;
+			}
+			return positions;
+		}
+	}
+
+	/**
+	 * Compiled exchanges are compared by identity: records would compare
+	 * (and hash) all their components.
+	 */
+	private static record Identity(CompiledExchange exchange) {
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Identity other && other.exchange == exchange;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(exchange);
+		}
+	}
+
+	private final CompiledPolicies policies;
+	/**
+	 * By policy index, for the policies of requests.
+	 */
+	private final Counters policyCounters;
+	/**
+	 * By exchange, then by policy index, for the "from" participants of
+	 * exchanges: a policy that often permits requests might seldom satisfy a
+	 * given exchange.
+	 */
+	private final Map<Identity, Counters> exchangeCounters = new ConcurrentHashMap<>();
+	/**
+	 * By policy index, then by rule index.
+	 */
+	private final Counters[] ruleCounters;
+	/**
+	 * The left branch at index 0, the right one at index 1.
+	 */
+	private final Map<Identity, Counters> branchCounters = new ConcurrentHashMap<>();
+
+	OrderingStatistics(CompiledPolicies policies) {
+		this.policies = policies;
+		var size = policies.size();
+		policyCounters = new Counters(size + 1);
+		ruleCounters = new Counters[size + 1];
+		for (int i = 1; i <= size; i++) {
+			ruleCounters[i] = new Counters(policies.getByIndex(i).rules().size() + 1);
+		}
+	}
+
+	/**
+	 * @return the policies these statistics are about
+	 */
+	CompiledPolicies policies() {
+		return policies;
+	}
+
+	/**
+	 * @param policy
+	 * @param candidateIndexes
+	 * @return the candidate rule indexes, the most promising first
+	 */
+	int[] rulesInOrder(CompiledPolicy policy, BitSet candidateIndexes) {
+		var indexes = candidateIndexes.stream().toArray();
+		var positions = ruleCounters[policy.index()].order(indexes, false);
+		var result = new int[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			result[i] = indexes[positions[i]];
+		}
+		return result;
+	}
+
+	void recordRule(CompiledRule rule, boolean permitted, long elapsed) {
+		ruleCounters[rule.policyIndex()].record(rule.index(), permitted, elapsed);
+	}
+
+	/**
+	 * @param exchange the exchange whose "from" participants are the
+	 * candidates, or null if they are the policies of a request
+	 * @param candidates policy indexes
+	 * @param all whether all the candidates must succeed
+	 * @return the positions of the candidates, the one most likely to decide
+	 * first
+	 */
+	int[] policiesInOrder(CompiledSingleExchange exchange, IndexSet candidates, boolean all) {
+		var indexes = new int[candidates.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = candidates.get(i);
+		}
+		var counters = exchange == null ? policyCounters : exchangeCounters.get(new Identity(exchange));
+		if (counters == null) {
+			var positions = new int[indexes.length];
+			Arrays.setAll(positions, i -> i);
+			return positions;
+		}
+		return counters.order(indexes, all);
+	}
+
+	/**
+	 * @param exchange see {@link #policiesInOrder(CompiledSingleExchange, IndexSet, boolean)}
+	 */
+	void recordPolicy(CompiledSingleExchange exchange, int index, boolean permitted, long elapsed) {
+		var counters = exchange == null ? policyCounters :
+			exchangeCounters.computeIfAbsent(new Identity(exchange), key -> new Counters(policies.size() + 1));
+		counters.record(index, permitted, elapsed);
+	}
+
+	/**
+	 * @param exchange
+	 * @return whether the right branch is more promising than the left one
+	 */
+	boolean rightFirst(CompiledOrExchange exchange) {
+		var counters = branchCounters.get(new Identity(exchange));
+		return counters != null && counters.score(1, false) > counters.score(0, false);
+	}
+
+	void recordBranch(CompiledOrExchange exchange, boolean right, boolean permitted, long elapsed) {
+		branchCounters.computeIfAbsent(new Identity(exchange), key -> new Counters(2))
+			.record(right ? 1 : 0, permitted, elapsed);
+	}
+}
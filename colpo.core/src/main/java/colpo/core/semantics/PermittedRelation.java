@@ -0,0 +1,448 @@
+package colpo.core.semantics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import colpo.core.AttributeMatcher;
+import colpo.core.Attributes;
+import colpo.core.CompiledPolicies;
+import colpo.core.CompiledPolicies.CompiledAndExchange;
+import colpo.core.CompiledPolicies.CompiledExchange;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+import colpo.core.ContextHandler;
+import colpo.core.IndexSet;
+import colpo.core.Request;
+import colpo.core.RequestComply;
+import colpo.core.RequestComply.PartitionKey;
+
+/**
+ * All the permitted requests (requester, resource, from) of some compiled
+ * policies, where the resource is one of the resources of their exchanges
+ * and requester and from are indexes of different policies, computed at once
+ * as a fixpoint.
+ *
+ * Since a cycle of exchange requests is satisfied when it reaches a request
+ * that is being evaluated (see {@link RequestComply}), this is the greatest
+ * fixpoint: all the requests matched by a rule whose condition holds are
+ * first assumed to be permitted; then, a request is removed when none of its
+ * rules has a satisfied exchange, and only the requests whose exchanges
+ * depend on a removed request are checked again, until nothing changes.
+ *
+ * An exchange request is satisfied by its own permitted request; it can
+ * also comply with a different request only if that request is being
+ * evaluated, that is, only within a cycle through that request's rule. Thus,
+ * the fixpoint is computed for each strongly connected component of the
+ * dependencies, the dependencies first; when exchange requests of a component
+ * comply with requests of the same component, the fixpoint is computed for
+ * each of its requests, as the one being evaluated: its exchange requests
+ * comply with it and with the request that generated them.
+ *
+ * Conditions are evaluated once, against the context at the time of the
+ * computation; the versions of the contexts that have been read are recorded
+ * (see {@link #isStale(ContextHandler)}).
+ *
+ * @author Lorenzo Bettini
+ */
+class PermittedRelation {
+
+	/**
+	 * A request that can be permitted, with the rules whose resource and
+	 * condition hold for it.
+	 */
+	private static class Fact {
+
+		private final int id;
+		private final Request request;
+		private final List<CompiledRule> rules;
+		/**
+		 * The facts the exchange requests are equal to or comply with.
+		 */
+		private final List<Fact> successors = new ArrayList<>();
+		/**
+		 * The facts the exchange requests comply with, without being equal.
+		 */
+		private final List<Fact> compliedWith = new ArrayList<>();
+		private int component = -1;
+		private boolean permitted = true;
+
+		private Fact(int id, Request request, List<CompiledRule> rules) {
+			this.id = id;
+			this.request = request;
+			this.rules = rules;
+		}
+	}
+
+	private final CompiledPolicies policies;
+	private final RequestComply requestComply;
+	private final Set<Attributes> resources = new LinkedHashSet<>();
+	private final Map<Request, Fact> facts = new LinkedHashMap<>();
+	private final Map<PartitionKey, List<Fact>> partitions = new HashMap<>();
+	/**
+	 * The facts whose exchanges read the facts of a partition.
+	 */
+	private final Map<PartitionKey, Set<Fact>> dependents = new HashMap<>();
+	private final Map<Integer, Long> contextVersions;
+
+	PermittedRelation(CompiledPolicies policies, ContextHandler contextHandler,
+			RequestComply requestComply, AttributeMatcher matcher) {
+		this.policies = policies;
+		this.requestComply = requestComply;
+		var cancellation = new Cancellation();
+		// only used to evaluate conditions
+		var context = new EvaluationContext(policies, TraceSink.NO_OP, requestComply, cancellation,
+			new Budget(Integer.MAX_VALUE, Long.MAX_VALUE, null, cancellation));
+		contextVersions = context.contextVersions();
+		for (int i = 1; i <= policies.size(); i++) {
+			for (var rule : policies.getByIndex(i).rules()) {
+				collectResources(rule.exchange());
+			}
+		}
+		for (var resource : resources) {
+			for (int from = 1; from <= policies.size(); from++) {
+				var policy = policies.getByIndex(from);
+				var candidates = policy.getCandidateIndexes(resource);
+				if (candidates.isEmpty()) {
+					continue;
+				}
+				for (int requester = 1; requester <= policies.size(); requester++) {
+					if (requester == from) {
+						continue;
+					}
+					var request = new Request(policies.participant(requester), resource,
+						policies.participant(from));
+					var rules = new ArrayList<CompiledRule>();
+					for (int r = candidates.nextSetBit(0); r >= 0; r = candidates.nextSetBit(r + 1)) {
+						var rule = policy.getRule(r);
+						if (matcher.match(resource, rule.resource()) &&
+								holds(rule, request, contextHandler, context)) {
+							rules.add(rule);
+						}
+					}
+					if (!rules.isEmpty()) {
+						add(new Fact(facts.size(), request, rules));
+					}
+				}
+			}
+		}
+		facts.values().forEach(this::link);
+		computeFixpoint();
+	}
+
+	private void collectResources(CompiledExchange exchange) {
+		switch (exchange) {
+		case CompiledOrExchange e -> {
+			collectResources(e.left());
+			collectResources(e.right());
+		}
+		case CompiledAndExchange e -> {
+			collectResources(e.left());
+			collectResources(e.right());
+		}
+		case CompiledSingleExchange e -> resources.add(e.exchange().resource());
+		case null -> {
+			// no exchange
+		}
+		}
+	}
+
+	private static boolean holds(CompiledRule rule, Request request, ContextHandler contextHandler,
+			EvaluationContext context) {
+		try {
+			return rule.condition().evaluate(new RuleAttributesResolver(rule, request, contextHandler, context));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private void add(Fact fact) {
+		facts.put(fact.request, fact);
+		partitions.computeIfAbsent(requestComply.partitionKey(fact.request), key -> new ArrayList<>())
+			.add(fact);
+	}
+
+	/**
+	 * Records the facts read by the exchanges of the fact, once all the facts
+	 * are known.
+	 */
+	private void link(Fact fact) {
+		for (var rule : fact.rules) {
+			forEachExchangeRequest(rule.exchange(), fact.request, request -> {
+				var partitionKey = requestComply.partitionKey(request);
+				dependents.computeIfAbsent(partitionKey, key -> new LinkedHashSet<>())
+					.add(fact);
+				var exact = facts.get(request);
+				if (exact != null) {
+					fact.successors.add(exact);
+				}
+				for (var existing : partitions.getOrDefault(partitionKey, List.of())) {
+					if (existing != exact && requestComply.test(request, existing.request)) {
+						fact.successors.add(existing);
+						fact.compliedWith.add(existing);
+					}
+				}
+			});
+		}
+	}
+
+	private void forEachExchangeRequest(CompiledExchange exchange, Request request,
+			Consumer<Request> consumer) {
+		switch (exchange) {
+		case CompiledOrExchange e -> {
+			forEachExchangeRequest(e.left(), request, consumer);
+			forEachExchangeRequest(e.right(), request, consumer);
+		}
+		case CompiledAndExchange e -> {
+			forEachExchangeRequest(e.left(), request, consumer);
+			forEachExchangeRequest(e.right(), request, consumer);
+		}
+		case CompiledSingleExchange e -> {
+			var fromIndexes = fromIndexes(e, request);
+			var toIndexes = e.to().indexes();
+			fromIndexes.forEach(from -> toIndexes.forEach(to -> {
+				if (to != from) {
+					consumer.accept(exchangeRequest(e, to, from));
+				}
+			}));
+		}
+		case null -> {
+			// no exchange
+		}
+		}
+	}
+
+	private void computeFixpoint() {
+		for (var component : components()) {
+			var id = component.get(0).component;
+			if (component.stream().allMatch(fact -> fact.compliedWith.stream().noneMatch(c -> c.component == id))) {
+				computeFixpoint(component, null);
+				continue;
+			}
+			var permitted = new boolean[component.size()];
+			for (int i = 0; i < component.size(); i++) {
+				var root = component.get(i);
+				computeFixpoint(component, root);
+				permitted[i] = root.permitted;
+			}
+			for (int i = 0; i < component.size(); i++) {
+				component.get(i).permitted = permitted[i];
+			}
+		}
+	}
+
+	/**
+	 * @param root the fact being evaluated, whose exchange requests can
+	 * comply with it, or null if they cannot comply with facts of the component
+	 */
+	private void computeFixpoint(List<Fact> component, Fact root) {
+		component.forEach(fact -> fact.permitted = true);
+		var worklist = new ArrayDeque<>(component);
+		while (!worklist.isEmpty()) {
+			var fact = worklist.poll();
+			if (!fact.permitted || isSupported(fact, root)) {
+				continue;
+			}
+			fact.permitted = false;
+			if (fact == root) {
+				return;
+			}
+			var factDependents = dependents.get(requestComply.partitionKey(fact.request));
+			if (factDependents != null) {
+				for (var dependent : factDependents) {
+					if (dependent.permitted && dependent.component == fact.component) {
+						worklist.add(dependent);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tarjan's algorithm, without recursion.
+	 *
+	 * @return the strongly connected components of the facts, where a
+	 * component comes after the components it depends on
+	 */
+	private List<List<Fact>> components() {
+		var all = List.copyOf(facts.values());
+		var order = new int[all.size()];
+		var lowest = new int[all.size()];
+		var onStack = new boolean[all.size()];
+		Arrays.fill(order, -1);
+		var stack = new ArrayDeque<Fact>();
+		// the fact being visited and the position of its next successor
+		var visits = new ArrayDeque<int[]>();
+		var components = new ArrayList<List<Fact>>();
+		var counter = 0;
+		for (var start : all) {
+			if (order[start.id] >= 0) {
+				continue;
+			}
+			order[start.id] = lowest[start.id] = counter++;
+			stack.push(start);
+			onStack[start.id] = true;
+			visits.push(new int[] { start.id, 0 });
+			while (!visits.isEmpty()) {
+				var visit = visits.peek();
+				var fact = all.get(visit[0]);
+				if (visit[1] < fact.successors.size()) {
+					var successor = fact.successors.get(visit[1]++);
+					if (order[successor.id] < 0) {
+						order[successor.id] = lowest[successor.id] = counter++;
+						stack.push(successor);
+						onStack[successor.id] = true;
+						visits.push(new int[] { successor.id, 0 });
+					} else if (onStack[successor.id]) {
+						lowest[fact.id] = Math.min(lowest[fact.id], order[successor.id]);
+					}
+					continue;
+				}
+				visits.pop();
+				if (!visits.isEmpty()) {
+					var parent = visits.peek()[0];
+					lowest[parent] = Math.min(lowest[parent], lowest[fact.id]);
+				}
+				if (lowest[fact.id] == order[fact.id]) {
+					var component = new ArrayList<Fact>();
+					Fact member;
+					do {
+						member = stack.pop();
+						onStack[member.id] = false;
+						member.component = components.size();
+						component.add(member);
+					} while (member != fact);
+					components.add(component);
+				}
+			}
+		}
+		return components;
+	}
+
+	private boolean isSupported(Fact fact, Fact root) {
+		for (var rule : fact.rules) {
+			if (rule.exchange() == null || isSatisfied(rule.exchange(), fact, root)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Like the evaluation of an exchange in {@link Semantics}, but exchange
+	 * requests are looked up in the facts assumed so far.
+	 */
+	private boolean isSatisfied(CompiledExchange exchange, Fact fact, Fact root) {
+		return switch (exchange) {
+		case CompiledOrExchange e -> isSatisfied(e.left(), fact, root) || isSatisfied(e.right(), fact, root);
+		case CompiledAndExchange e -> isSatisfied(e.left(), fact, root) && isSatisfied(e.right(), fact, root);
+		case CompiledSingleExchange e -> isSatisfied(e, fact, root);
+		};
+	}
+
+	private boolean isSatisfied(CompiledSingleExchange exchange, Fact fact, Fact root) {
+		var request = fact.request;
+		var fromIndexes = fromIndexes(exchange, request);
+		var toIndexes = exchange.to().indexes();
+		if (toIndexes.isEmpty()) {
+			return true; // there's no one to satisfy
+		}
+		if (fromIndexes.isEmpty()) {
+			return false; // no one can satisfy
+		}
+		var fromAll = exchange.from().isAll();
+		var toAll = exchange.to().isAll();
+		var generated = false;
+		for (int i = 0; i < fromIndexes.size(); i++) {
+			var from = fromIndexes.get(i);
+			generated |= toIndexes.containsOtherThan(from);
+			var satisfied = toAll ?
+				toIndexes.allMatch(to -> to == from || isPermitted(exchangeRequest(exchange, to, from), fact, root)) :
+				toIndexes.anyMatch(to -> to != from && isPermitted(exchangeRequest(exchange, to, from), fact, root));
+			if (satisfied != fromAll) {
+				return satisfied;
+			}
+		}
+		// an allSuchThat is not satisfied if no request could be generated
+		return fromAll && generated;
+	}
+
+	private static IndexSet fromIndexes(CompiledSingleExchange exchange, Request request) {
+		return exchange.from().isRequester() ?
+			IndexSet.of(request.requester().getIndex()) :
+			exchange.from().indexes();
+	}
+
+	private Request exchangeRequest(CompiledSingleExchange exchange, int to, int from) {
+		return new Request(policies.participant(to), exchange.exchange().resource(),
+			policies.participant(from));
+	}
+
+	/**
+	 * @param request an exchange request, with indexes as requester and from
+	 * @param parent the fact whose exchange generated the request
+	 * @param root see {@link #computeFixpoint(List, Fact)}
+	 * @return whether the request is permitted, or complies with a request
+	 * being evaluated
+	 */
+	private boolean isPermitted(Request request, Fact parent, Fact root) {
+		var fact = facts.get(request);
+		if (fact != null && fact.permitted) {
+			return true;
+		}
+		return root != null &&
+			(requestComply.test(request, root.request) || requestComply.test(request, parent.request));
+	}
+
+	/**
+	 * @param resource
+	 * @return whether requests for this resource are in the relation
+	 */
+	boolean covers(Attributes resource) {
+		return resources.contains(resource);
+	}
+
+	/**
+	 * @param requester
+	 * @param resource one of the covered resources
+	 * @param from
+	 * @return
+	 */
+	boolean contains(int requester, Attributes resource, int from) {
+		var fact = facts.get(new Request(policies.participant(requester), resource,
+			policies.participant(from)));
+		return fact != null && fact.permitted;
+	}
+
+	/**
+	 * @return the permitted requests
+	 */
+	List<Request> permitted() {
+		return facts.values().stream()
+			.filter(fact -> fact.permitted)
+			.map(fact -> fact.request)
+			.toList();
+	}
+
+	CompiledPolicies policies() {
+		return policies;
+	}
+
+	/**
+	 * @param contextHandler
+	 * @return whether a context read by a condition has changed since the
+	 * computation
+	 */
+	boolean isStale(ContextHandler contextHandler) {
+		return contextVersions.entrySet().stream()
+			.anyMatch(e -> contextHandler.getVersion(e.getKey()) != e.getValue());
+	}
+}
@@ -0,0 +1,70 @@
+package colpo.core.semantics;
+
+import colpo.core.Attributes;
+import colpo.core.AttributesResolver;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.ContextHandler;
+import colpo.core.Request;
+
+/**
+ * Resolves the names read by the condition of a rule, probing, in this
+ * order, the requested resource, the context of the rule's party and the
+ * requester's party. Built once for each evaluation of a condition, it
+ * looks up values by the slots bound when compiling the rule.
+ *
+ * @author Lorenzo Bettini
+ */
+class RuleAttributesResolver implements AttributesResolver {
+
+	private CompiledRule rule;
+	private Request request;
+	private ContextHandler contextHandler;
+	private EvaluationContext context;
+
+	private Attributes partyContext;
+	private Attributes requesterParty;
+
+	RuleAttributesResolver(CompiledRule rule, Request request, ContextHandler contextHandler,
+			EvaluationContext context) {
+		this.rule = rule;
+		this.request = request;
+		this.contextHandler = contextHandler;
+		this.context = context;
+	}
+
+	@Override
+	public Object name(String name) throws UndefinedName {
+		var id = rule.slots().idOf(name);
+		var value = id >= 0 ? request.resource().valueOf(id) : null;
+		if (value == null) {
+			value = valueInContext(id);
+		}
+		if (value == null && id >= 0) {
+			value = requesterParty().valueOf(id);
+		}
+		if (value == null) {
+			throw new UndefinedName(name);
+		}
+		return value;
+	}
+
+	/**
+	 * Records the version of the context, since the result depends on it,
+	 * even if the name is not there (yet).
+	 */
+	private Object valueInContext(int id) {
+		if (partyContext == null) {
+			var policyIndex = rule.policyIndex();
+			context.contextVersions().computeIfAbsent(policyIndex, contextHandler::getVersion);
+			partyContext = contextHandler.ofParty(policyIndex);
+		}
+		return id >= 0 ? partyContext.valueOf(id) : null;
+	}
+
+	private Attributes requesterParty() {
+		if (requesterParty == null) {
+			requesterParty = context.policies().getByIndex(request.requester().index()).party();
+		}
+		return requesterParty;
+	}
+}
@@ -1,168 +1,892 @@
 package colpo.core.semantics;
 
-import static colpo.core.Participants.index;
-
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Set;
-import java.util.function.BiPredicate;
-import java.util.function.Predicate;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import colpo.core.AndExchange;
 import colpo.core.AttributeMatcher;
 import colpo.core.Attributes;
+import colpo.core.CompiledPolicies;
+import colpo.core.CompiledPolicies.CompiledAndExchange;
+import colpo.core.CompiledPolicies.CompiledExchange;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledParticipant;
+import colpo.core.CompiledPolicies.CompiledPolicy;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
 import colpo.core.CompositeExchange;
 import colpo.core.ContextHandler;
+import colpo.core.CostModel;
 import colpo.core.DefaultRequestComply;
-import colpo.core.Exchange;
+import colpo.core.ExchangeGraph;
 import colpo.core.IndexParticipant;
-import colpo.core.OrExchange;
+import colpo.core.IndexSet;
 import colpo.core.Participant;
 import colpo.core.Policies;
-import colpo.core.Policies.PolicyData;
-import colpo.core.Policy;
 import colpo.core.Request;
 import colpo.core.RequestComply;
+import colpo.core.RequestComply.PartitionKey;
 import colpo.core.RequestFromParticipant;
 import colpo.core.Result;
-import colpo.core.Rule;
-import colpo.core.Rules;
 import colpo.core.SingleExchange;
+import colpo.core.semantics.DecisionCache.Decision;
+import colpo.core.semantics.EvaluationContext.MemoEntry;
 
 /**
+ * Evaluates requests against policies, in their compiled form (see
+ * {@link CompiledPolicies}).
+ *
+ * All the state of an evaluation is kept in a per-call context, so, once
+ * configured, a {@link Semantics} can be shared among threads evaluating
+ * requests concurrently, provided the {@link Policies} are not modified in the
+ * meantime (see {@link Policies#snapshot()}), or it has been created with
+ * {@link CompiledPolicies}, which are immutable; each evaluation should then
+ * record its steps in its own trace (see {@link #evaluate(Request, TraceSink)}).
+ *
  * @author Lorenzo Bettini
  */
 public class Semantics {
 
+	/**
+	 * How requests are evaluated; both engines give the same results and
+	 * traces.
+	 */
+	public enum Engine {
+		/**
+		 * Evaluates nested requests, rules and exchanges with recursive calls.
+		 */
+		RECURSIVE,
+		/**
+		 * Evaluates nested requests, rules and exchanges with an explicit stack,
+		 * so that long exchange chains do not overflow the thread's stack, e.g.,
+		 * of a virtual thread; fan-outs are always evaluated sequentially (see
+		 * {@link Semantics#parallel(int)}).
+		 */
+		ITERATIVE
+	}
+
+	/**
+	 * The order in which alternatives (the rules of a policy, the policies of
+	 * an anySuchThat, the branches of an {@link colpo.core.OrExchange}) and
+	 * candidates that must all succeed (the policies of an allSuchThat) are
+	 * evaluated.
+	 */
+	public enum Ordering {
+		/**
+		 * In index order, and the left branch first: the first success
+		 * defines the result, e.g., its collected requests.
+		 */
+		STRICT,
+		/**
+		 * When not tracing, the most likely to succeed first, among
+		 * alternatives, and the most likely to fail first, among candidates
+		 * that must all succeed, according to the successes and costs of
+		 * previous evaluations of this {@link Semantics} (see
+		 * {@link OrderingStatistics}), collected again when the policies are
+		 * compiled again.
+		 *
+		 * Whether a request is permitted does not depend on the order, but the
+		 * collected requests may, since another alternative can succeed first,
+		 * and so can the rule evaluations counted for
+		 * {@link Semantics#maxRuleEvaluations(long)}. The iterative engine
+		 * always evaluates in the strict order.
+		 */
+		ADAPTIVE
+	}
+
+	/**
+	 * null when created with compiled policies
+	 */
 	private Policies policies;
+	private volatile CompiledPolicies compiledPolicies;
 	private AttributeMatcher matcher = new AttributeMatcher();
-	private Trace trace = new Trace();
+	private TraceSink traceSink = new Trace();
 	private ContextHandler contextHandler = EMPTY_CONTEXT_HANDLER;
 	private RequestComply requestComply = new DefaultRequestComply(matcher);
 
+	private DecisionCache decisionCache = null;
+
+	private int maxDepth = Integer.MAX_VALUE;
+	private long maxRuleEvaluations = Long.MAX_VALUE;
+	private Duration timeout = null;
+
+	private Engine engine = Engine.RECURSIVE;
+
+	private Ordering ordering = Ordering.STRICT;
+	private volatile OrderingStatistics statistics = null;
+
+	private int parallelThreshold = Integer.MAX_VALUE;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * The trace of the last evaluation, performed by any thread.
+	 */
+	private volatile TraceSink lastTrace = null;
+
 	private static final ContextHandler EMPTY_CONTEXT_HANDLER = new ContextHandler();
-	private static final Result DENIED = new Result(false);
+	static final Result DENIED = new Result(false);
+	private static final IntPredicate ALL_CANDIDATES = candidate -> true;
 
+	/**
+	 * The policies are compiled again, before an evaluation, if they have
+	 * changed since the last compilation (see {@link Policies#getVersion()}):
+	 * policies or rules have been added, or the attributes of parties or of
+	 * rules have been modified.
+	 *
+	 * @param policies
+	 */
 	public Semantics(Policies policies) {
 		this.policies = policies;
+		this.compiledPolicies = policies.compile();
+	}
+
+	/**
+	 * The passed compiled policies are evaluated as they are, even if policies
+	 * are added to the {@link Policies} they have been compiled from.
+	 *
+	 * @param compiledPolicies
+	 */
+	public Semantics(CompiledPolicies compiledPolicies) {
+		this.compiledPolicies = compiledPolicies;
 	}
 
 	public Semantics contextHandler(ContextHandler contextHandler) {
 		this.contextHandler = contextHandler;
+		clearDecisions();
+		return this;
+	}
+
+	/**
+	 * Caches the decisions of this Semantics in a new {@link DecisionCache},
+	 * which is not shared with other Semantics.
+	 *
+	 * @param maximumSize
+	 * @return
+	 */
+	public Semantics decisionCache(int maximumSize) {
+		this.decisionCache = new DecisionCache(maximumSize);
+		return this;
+	}
+
+	/**
+	 * @return the cache of the decisions, e.g., for its statistics, or null
+	 * if decisions are not cached
+	 */
+	public DecisionCache getDecisionCache() {
+		return decisionCache;
+	}
+
+	/**
+	 * Where the steps of evaluations are recorded; use {@link TraceSink#NO_OP}
+	 * to disable tracing. Each evaluation records its steps in a new sink
+	 * created with {@link TraceSink#newSink()}.
+	 *
+	 * @param traceSink
+	 * @return
+	 */
+	public Semantics traceSink(TraceSink traceSink) {
+		this.traceSink = traceSink;
+		// cached decisions carry the trace of the previous sink
+		clearDecisions();
+		return this;
+	}
+
+	/**
+	 * Cached decisions depend on how requests are evaluated.
+	 */
+	private void clearDecisions() {
+		if (decisionCache != null) {
+			decisionCache.clear();
+		}
+	}
+
+	/**
+	 * Enables the parallel evaluation of the candidates of quantified
+	 * participants (the matching policies of an anySuchThat/allSuchThat
+	 * "from", and the parties of an exchange) when they are at least the
+	 * given threshold, using the common fork-join pool.
+	 *
+	 * As soon as a candidate decides the outcome (a success for "any", a
+	 * failure for "all"), the evaluation of the following candidates is
+	 * cancelled. Results and traces are the same as in the sequential
+	 * evaluation.
+	 *
+	 * @param threshold
+	 * @return
+	 */
+	public Semantics parallel(int threshold) {
+		return parallel(threshold, ForkJoinPool.commonPool());
+	}
+
+	public Semantics parallel(int threshold, ForkJoinPool pool) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be positive: " + threshold);
+		}
+		this.parallelThreshold = threshold;
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Limits the depth of nested exchange requests: an evaluation that goes
+	 * deeper is stopped with an indeterminate result (see
+	 * {@link Result#isIndeterminate()}).
+	 *
+	 * @param maxDepth 0 means that no exchange request can be evaluated
+	 * @return
+	 */
+	public Semantics maxDepth(int maxDepth) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("max depth must not be negative: " + maxDepth);
+		}
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * Limits the number of rules evaluated by a single evaluation, including
+	 * the rules evaluated for exchange requests: an evaluation that needs more
+	 * is stopped with an indeterminate result (see
+	 * {@link Result#isIndeterminate()}).
+	 *
+	 * @param maxRuleEvaluations
+	 * @return
+	 */
+	public Semantics maxRuleEvaluations(long maxRuleEvaluations) {
+		if (maxRuleEvaluations < 1) {
+			throw new IllegalArgumentException("max rule evaluations must be positive: " + maxRuleEvaluations);
+		}
+		this.maxRuleEvaluations = maxRuleEvaluations;
+		return this;
+	}
+
+	/**
+	 * Limits the wall-clock time of a single evaluation: an evaluation that
+	 * takes longer is stopped with an indeterminate result (see
+	 * {@link Result#isIndeterminate()}).
+	 *
+	 * @param timeout null for no timeout
+	 * @return
+	 */
+	public Semantics timeout(Duration timeout) {
+		this.timeout = timeout;
+		return this;
+	}
+
+	public Semantics engine(Engine engine) {
+		this.engine = engine;
+		return this;
+	}
+
+	public Semantics ordering(Ordering ordering) {
+		this.ordering = ordering;
 		return this;
 	}
 
 	public Semantics requestComply(RequestComply requestComply) {
 		this.requestComply = requestComply;
+		clearDecisions();
 		return this;
 	}
 
 	public Result evaluate(Request request) {
-		trace.reset();
-		return evaluate(request, new LinkedHashSet<>());
+		return evaluate(request, traceSink.newSink());
+	}
+
+	/**
+	 * Evaluates the request until it is decided or the passed cancellation is
+	 * cancelled, e.g., by another thread; in the latter case, the result is
+	 * indeterminate (see {@link Result#isIndeterminate()}).
+	 *
+	 * @param request
+	 * @param cancellation
+	 * @return
+	 */
+	public Result evaluate(Request request, Cancellation cancellation) {
+		return evaluate(request, traceSink.newSink(), cancellation);
+	}
+
+	/**
+	 * Evaluates the request recording the steps in the passed trace.
+	 *
+	 * The request is first made canonical (see {@link Request#canonical()}),
+	 * and so are all the requests generated during the evaluation, so that
+	 * they are cheap to hash and compare when checking the requests being
+	 * evaluated, compliance and cached decisions.
+	 *
+	 * @param request
+	 * @param trace
+	 * @return
+	 */
+	public Result evaluate(Request request, TraceSink trace) {
+		return evaluate(request, trace, new Cancellation());
+	}
+
+	/**
+	 * Evaluates the request recording the steps in the passed trace, until it
+	 * is decided, the passed cancellation is cancelled or one of the limits
+	 * (see {@link #maxDepth(int)}, {@link #maxRuleEvaluations(long)} and
+	 * {@link #timeout(Duration)}) is exceeded; in the last two cases, the
+	 * result is indeterminate, and it is not cached.
+	 *
+	 * @param request
+	 * @param trace
+	 * @param cancellation
+	 * @return
+	 */
+	public Result evaluate(Request request, TraceSink trace, Cancellation cancellation) {
+		var canonicalRequest = request.canonical();
+		lastTrace = trace;
+		// the sink might already contain the steps of other evaluations
+		var mark = trace.mark();
+		var compiled = compiledPolicies();
+		if (decisionCache != null) {
+			var decision = decisionCache.get(canonicalRequest, compiled, contextHandler);
+			if (decision != null) {
+				trace.addLines(decision.trace());
+				return copy(decision.result());
+			}
+		}
+		var evaluationCancellation = new Cancellation(cancellation);
+		var budget = new Budget(maxDepth, maxRuleEvaluations, timeout, evaluationCancellation);
+		var context = new EvaluationContext(compiled, trace, requestComply, evaluationCancellation, budget);
+		var result = engine == Engine.ITERATIVE ?
+			new IterativeEngine(this, contextHandler, context).evaluate(canonicalRequest) :
+			evaluate(canonicalRequest, context);
+		if (evaluationCancellation.isCancelled()) {
+			var reason = budget.exceeded() != null ? budget.exceeded() : "cancelled";
+			trace.add(() -> String.format("indeterminate: %s", reason));
+			return Result.indeterminate();
+		}
+		if (decisionCache != null) {
+			decisionCache.put(canonicalRequest, compiled,
+				new Decision(copy(result), trace.since(mark), Map.copyOf(context.contextVersions())));
+		}
+		return result;
+	}
+
+	/**
+	 * All the distinct ways the request can be permitted, each one with the
+	 * requests it collects, e.g., to choose the cheapest alternative, instead
+	 * of the first one found by {@link #evaluate(Request)}: all the candidate
+	 * policies and rules and both the branches of an
+	 * {@link colpo.core.OrExchange} are tried, in the same order.
+	 *
+	 * The solutions are computed lazily, while the stream is consumed, so
+	 * taking only the first ones only costs the evaluations needed for those;
+	 * they are not traced, cached or limited (see {@link #maxDepth(int)}).
+	 *
+	 * @param request
+	 * @return the permitted results, empty if the request is not permitted
+	 */
+	public Stream<Result> solutions(Request request) {
+		var solutions = new SolutionEnumerator(this, contextHandler, requestComply, untracedContext())
+			.solutions(request.canonical());
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(solutions, Spliterator.ORDERED | Spliterator.NONNULL), false)
+			.map(requests -> Result.permitted().addAll(requests));
+	}
+
+	/**
+	 * The cheapest of the {@link #solutions(Request)}, found with a
+	 * branch-and-bound search: the alternatives whose partial cost already
+	 * reaches the cost of the cheapest solution found so far are not explored
+	 * any further. Among solutions with the same cost, the first one is
+	 * returned; like the solutions, the search is not traced, cached or
+	 * limited.
+	 *
+	 * @param request
+	 * @param costModel
+	 * @return the permitted result with the minimum total cost (see
+	 * {@link CostModel#total(Result)}), or a denied result
+	 */
+	public Result cheapest(Request request, CostModel costModel) {
+		return new CheapestSolutionSearch(this, contextHandler, requestComply, untracedContext(), costModel)
+			.search(request.canonical());
+	}
+
+	/**
+	 * A context only used to evaluate conditions, outside {@link #evaluate(Request)}.
+	 */
+	private EvaluationContext untracedContext() {
+		var cancellation = new Cancellation();
+		return new EvaluationContext(compiledPolicies(), TraceSink.NO_OP, requestComply, cancellation,
+			new Budget(Integer.MAX_VALUE, Long.MAX_VALUE, null, cancellation));
+	}
+
+	private CompiledPolicies compiledPolicies() {
+		var compiled = compiledPolicies;
+		if (policies != null && compiled.getVersion() != policies.getVersion()) {
+			compiled = policies.compile();
+			compiledPolicies = compiled;
+		}
+		return compiled;
+	}
+
+	/**
+	 * Evaluates the independent requests concurrently, each one on its own
+	 * virtual thread, with its own trace and context, so that evaluations
+	 * waiting for the context (e.g., a {@link ContextHandler} backed by a slow
+	 * store) do not block platform threads.
+	 *
+	 * @param requests
+	 * @param maxConcurrency the maximum number of concurrent evaluations
+	 * @return the results in the order of the requests
+	 */
+	public List<Result> evaluateAll(Iterable<Request> requests, int maxConcurrency) {
+		return new BatchEvaluator(this, traceSink, maxConcurrency)
+			.evaluateAll(requests.iterator());
+	}
+
+	/**
+	 * Like {@link #evaluateAll(Iterable, int)}, consuming the requests of the
+	 * stream while they are evaluated.
+	 *
+	 * @param requests
+	 * @param maxConcurrency the maximum number of concurrent evaluations
+	 * @return the results in the order of the requests
+	 */
+	public List<Result> evaluateAll(Stream<Request> requests, int maxConcurrency) {
+		return new BatchEvaluator(this, traceSink, maxConcurrency)
+			.evaluateAll(requests.iterator());
+	}
+
+	/**
+	 * Like {@link #evaluateAll(Iterable, int)}, but the evaluations are
+	 * returned as soon as they complete.
+	 *
+	 * The requests are evaluated only while the returned stream is consumed:
+	 * when the consumer stops early, e.g., with
+	 * {@link Stream#findFirst()}, at most maxConcurrency evaluations are
+	 * left running, and closing the stream cancels them.
+	 *
+	 * @param requests
+	 * @param maxConcurrency the maximum number of concurrent evaluations
+	 * @return the completed evaluations, in order of completion
+	 */
+	public Stream<Completion> evaluateAllAsCompleted(Iterable<Request> requests, int maxConcurrency) {
+		return new BatchEvaluator(this, traceSink, maxConcurrency)
+			.evaluateAllAsCompleted(requests.iterator());
+	}
+
+	/**
+	 * Like {@link #evaluateAllAsCompleted(Iterable, int)}; closing the
+	 * returned stream also closes the stream of requests.
+	 *
+	 * @param requests
+	 * @param maxConcurrency the maximum number of concurrent evaluations
+	 * @return the completed evaluations, in order of completion
+	 */
+	public Stream<Completion> evaluateAllAsCompleted(Stream<Request> requests, int maxConcurrency) {
+		return new BatchEvaluator(this, traceSink, maxConcurrency)
+			.evaluateAllAsCompleted(requests.iterator())
+			.onClose(requests::close);
+	}
+
+	private Result evaluate(Request request, EvaluationContext context) {
+		if (context.cancellation().isCancelled() ||
+				!context.budget().checkDepth(context.requests().size())) {
+			return DENIED;
+		}
+		var entry = context.memoized(request);
+		if (entry == null) {
+			var mark = context.trace().mark();
+			var requests = context.requests();
+			var depth = requests.size();
+			var outer = requests.track();
+			Result result;
+			Set<PartitionKey> searched;
+			try {
+				result = evaluateNotMemoized(request, context);
+			} finally {
+				searched = requests.untrack(outer);
+			}
+			// the result of a cancelled evaluation is meaningless
+			if (!context.cancellation().isCancelled()) {
+				context.memoize(request, new MemoEntry(copy(result), context.trace().since(mark), depth,
+					requests.snapshot(searched)));
+			}
+			return result;
+		}
+		context.trace().addLines(entry.trace());
+		return copy(entry.result());
+	}
+
+	/**
+	 * Results are modified by the callers, so a memoized result cannot be shared.
+	 */
+	static Result copy(Result result) {
+		if (!result.isPermitted()) {
+			return DENIED;
+		}
+		return Result.permitted().addAll(result.getRequests());
 	}
 
-	private Result evaluate(Request request, Set<Request> requests) {
-		trace.addAndThenIndent(String.format("evaluating %s", request));
+	private Result evaluateNotMemoized(Request request, EvaluationContext context) {
+		context.trace().addAndThenIndent(() -> String.format("evaluating %s", request));
 		var from = request.from();
 		var index = from.getIndex();
 		var result = DENIED;
 		if (index > 0) {
-			result = evaluate(index, policies.getByIndex(index), request, requests);
+			result = evaluate(context.policies().getByIndex(index), request, context);
 		} else {
-			trace.addAndThenIndent("finding matching policies");
-			var policiesToEvaluate = policiesToEvaluate(request.requester(), from);
-			trace.removeIndent();
+			context.trace().addAndThenIndent(() -> "finding matching policies");
+			var policiesToEvaluate = policiesToEvaluate(request.requester(), from, context);
+			context.trace().removeIndent();
 			if (!policiesToEvaluate.isEmpty()) {
-				var successfullRequests = new ArrayList<Request>();
-				Predicate<PolicyData> evaluatePredicate =
-					d -> collectingRequests(
-						evaluate(d.index(), d.policy(), request.withFrom(d.index()), requests),
-						successfullRequests);
-				var permitted = false;
-				if (from.isAll()) {
-					permitted = policiesToEvaluate.stream()
-						.allMatch(evaluatePredicate);
-				} else {
-					permitted = policiesToEvaluate.stream()
-						.anyMatch(evaluatePredicate);
-				}
-				if (permitted) {
-					result = Result.permitted().addAll(successfullRequests);
+				var outcomes = fanOutPolicies(from.isAll(), policiesToEvaluate, null,
+					(i, c) -> Outcome.of(evaluate(c.policies().getByIndex(i), withFrom(request, i, c), c)),
+					context);
+				if (isPermitted(from.isAll(), outcomes)) {
+					result = Result.permitted().addAll(requestsOf(outcomes));
 				}
 			}
 		}
-		trace.removeIndentAndThenAdd(String.format("result: %s", result.isPermitted()));
+		var permitted = result.isPermitted();
+		context.trace().removeIndentAndThenAdd(() -> String.format("result: %s", permitted));
 		return result;
 	}
 
-	private boolean collectingRequests(Result result, Collection<Request> requests) {
-		var permitted = result.isPermitted();
-		if (permitted) {
-			requests.addAll(result.getRequests());
+	/**
+	 * Like {@link Request#withFrom(int)}, but reusing the participants of the
+	 * compiled policies.
+	 */
+	static Request withFrom(Request request, int participantIndex, EvaluationContext context) {
+		return new Request(request.requester(), request.resource(),
+			context.policies().participant(participantIndex));
+	}
+
+	/**
+	 * The outcome of the evaluation of one of the candidates of a fan-out.
+	 *
+	 * @param permitted
+	 * @param requests the requests collected by the evaluation, also when not
+	 * permitted, e.g., by the successful exchange requests of a failed "all"
+	 * @param generated whether at least one exchange request has been generated
+	 */
+	static record Outcome(boolean permitted, List<Request> requests, boolean generated) {
+
+		static Outcome of(Result result) {
+			return new Outcome(result.isPermitted(),
+				result.isPermitted() ? List.copyOf(result.getRequests()) : List.of(),
+				true);
+		}
+	}
+
+	/**
+	 * The evaluation of a candidate of a fan-out, given its index.
+	 */
+	@FunctionalInterface
+	private static interface IndexEvaluation {
+		Outcome apply(int index, EvaluationContext context);
+	}
+
+	/**
+	 * Evaluates the accepted candidates, in order, until one decides the
+	 * outcome: a success, if not all, or a failure, if all. If there are enough
+	 * candidates, they are evaluated in parallel (see {@link #parallel(int)}).
+	 *
+	 * @param accepted the candidates to evaluate, so that a candidate can be
+	 * skipped without copying the set of candidates
+	 * @return the outcomes of the candidates up to (and including) the deciding
+	 * one, exactly as they would be evaluated sequentially.
+	 */
+	private List<Outcome> fanOut(boolean all, IndexSet candidates, IntPredicate accepted,
+			IndexEvaluation evaluation, EvaluationContext context) {
+		var size = candidates.size();
+		if (size >= parallelThreshold) {
+			return parallelFanOut(all, candidates, accepted, evaluation, context);
+		}
+		var outcomes = new ArrayList<Outcome>();
+		for (int i = 0; i < size; i++) {
+			var candidate = candidates.get(i);
+			if (!accepted.test(candidate)) {
+				continue;
+			}
+			var outcome = evaluation.apply(candidate, context);
+			outcomes.add(outcome);
+			if (outcome.permitted() != all) {
+				break;
+			}
+		}
+		return outcomes;
+	}
+
+	/**
+	 * Like {@link #fanOut(boolean, IndexSet, IntPredicate, IndexEvaluation, EvaluationContext)},
+	 * but the candidates are policies, which can be ordered by their statistics.
+	 *
+	 * @param exchange the exchange whose "from" participants are the
+	 * candidates, or null if they are the policies of a request, since
+	 * statistics are kept for each of them
+	 */
+	private List<Outcome> fanOutPolicies(boolean all, IndexSet candidates, CompiledSingleExchange exchange,
+			IndexEvaluation evaluation, EvaluationContext context) {
+		var size = candidates.size();
+		var statistics = size > 1 && size < parallelThreshold ? statistics(context) : null;
+		if (statistics != null) {
+			return adaptiveFanOut(all, candidates, exchange, evaluation, statistics, context);
+		}
+		return fanOut(all, candidates, ALL_CANDIDATES, evaluation, context);
+	}
+
+	/**
+	 * Evaluates the candidates in the order of the statistics; if no
+	 * candidate decides the outcome, the outcomes are in the order of the
+	 * candidates, as in the sequential evaluation.
+	 */
+	private List<Outcome> adaptiveFanOut(boolean all, IndexSet candidates, CompiledSingleExchange exchange,
+			IndexEvaluation evaluation, OrderingStatistics statistics, EvaluationContext context) {
+		var outcomes = new Outcome[candidates.size()];
+		var evaluated = new ArrayList<Outcome>();
+		for (var position : statistics.policiesInOrder(exchange, candidates, all)) {
+			var index = candidates.get(position);
+			var start = System.nanoTime();
+			var outcome = evaluation.apply(index, context);
+			if (!context.cancellation().isCancelled()) {
+				statistics.recordPolicy(exchange, index, outcome.permitted(), System.nanoTime() - start);
+			}
+			if (outcome.permitted() != all) {
+				evaluated.add(outcome);
+				return evaluated;
+			}
+			outcomes[position] = outcome;
+			evaluated.add(outcome);
+		}
+		return Arrays.asList(outcomes);
+	}
+
+	private List<Outcome> parallelFanOut(boolean all, IndexSet candidates, IntPredicate accepted,
+			IndexEvaluation evaluation, EvaluationContext context) {
+		var acceptedCandidates = new ArrayList<Integer>(candidates.size());
+		candidates.forEach(candidate -> {
+			if (accepted.test(candidate)) {
+				acceptedCandidates.add(candidate);
+			}
+		});
+		var size = acceptedCandidates.size();
+		var forked = new ArrayList<EvaluationContext>(size);
+		var tasks = new ArrayList<ForkJoinTask<Outcome>>(size);
+		for (int i = 0; i < size; i++) {
+			forked.add(context.fork());
+		}
+		for (int i = 0; i < size; i++) {
+			var index = i;
+			int candidate = acceptedCandidates.get(i);
+			tasks.add(ForkJoinTask.adapt(() -> {
+				var outcome = evaluation.apply(candidate, forked.get(index));
+				if (outcome.permitted() != all) {
+					// the following candidates cannot change the outcome anymore
+					for (int j = index + 1; j < size; j++) {
+						forked.get(j).cancellation().cancel();
+						tasks.get(j).cancel(false);
+					}
+				}
+				return outcome;
+			}));
+		}
+		// all the tasks must be created before forking, since they cancel each other
+		tasks.forEach(this::fork);
+		var outcomes = new ArrayList<Outcome>();
+		for (int i = 0; i < size; i++) {
+			var outcome = tasks.get(i).join();
+			context.trace().addLines(forked.get(i).trace().since(0));
+			context.requests().addSearched(forked.get(i).requests().searched());
+			outcomes.add(outcome);
+			if (outcome.permitted() != all) {
+				break;
+			}
+		}
+		return outcomes;
+	}
+
+	private void fork(ForkJoinTask<?> task) {
+		if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+			task.fork();
+		} else {
+			pool.execute(task);
 		}
-		return permitted;
 	}
 
-	private Collection<PolicyData> policiesToEvaluate(Participant requester,
-			Participant from) {
-		return policies.getPolicyData()
-			.filter(d -> d.index() != requester.getIndex())
-			.filter(d -> {
-				var attributes1 = from.getAttributes();
-				var attributes2 = d.policy().party();
-				return tryMatch("policy " + d.index(), "from", attributes1, attributes2);
-			})
+	static boolean isPermitted(boolean all, List<Outcome> outcomes) {
+		return all ?
+			outcomes.stream().allMatch(Outcome::permitted) :
+			outcomes.stream().anyMatch(Outcome::permitted);
+	}
+
+	static List<Request> requestsOf(List<Outcome> outcomes) {
+		return outcomes.stream()
+			.flatMap(o -> o.requests().stream())
 			.toList();
 	}
 
-	private boolean tryMatch(String prefix, String description, Attributes attributes1, Attributes attributes2) {
-		boolean matchResult = matcher.match(attributes1, attributes2);
-		trace.add(String.format("%s: %s match(%s, %s) -> %s",
-			prefix, description, attributes1, attributes2, matchResult));
+	IndexSet policiesToEvaluate(Participant requester,
+			Participant from, EvaluationContext context) {
+		var policies = context.policies();
+		var attributes1 = from.getAttributes();
+		var matchingIndexes = policies.resolve(attributes1);
+		var requesterIndex = requester.getIndex();
+		if (!context.trace().isEnabled()) {
+			return matchingIndexes.without(requesterIndex);
+		}
+		// all the policies are walked only to record the match in the trace
+		var policiesToEvaluate = new BitSet();
+		for (int i = 1; i <= policies.size(); i++) {
+			var policy = policies.getByIndex(i);
+			if (i != requesterIndex &&
+					traceMatch(() -> "policy " + policy.index(), "from",
+						attributes1, policy.party(), matchingIndexes.contains(i), context)) {
+				policiesToEvaluate.set(i);
+			}
+		}
+		return IndexSet.of(policiesToEvaluate);
+	}
+
+	boolean tryMatch(Supplier<String> prefix, String description, Attributes attributes1, Attributes attributes2,
+			EvaluationContext context) {
+		return traceMatch(prefix, description, attributes1, attributes2,
+				matcher.match(attributes1, attributes2), context);
+	}
+
+	AttributeMatcher matcher() {
+		return matcher;
+	}
+
+	/**
+	 * Only records in the trace the result of a match that has already been
+	 * computed, e.g., through the index of {@link Policies}.
+	 */
+	boolean traceMatch(Supplier<String> prefix, String description, Attributes attributes1, Attributes attributes2,
+			boolean matchResult, EvaluationContext context) {
+		context.trace().add(() -> String.format("%s: %s match(%s, %s) -> %s",
+			prefix.get(), description, attributes1, attributes2, matchResult));
 		return matchResult;
 	}
 
-	private Result evaluate(int policyIndex, Policy policy, Request request, Set<Request> requests) {
-		return evaluate(policyIndex, policy.rules(), request, requests);
+	/**
+	 * When not tracing, the rules that are dead (see {@link ExchangeGraph}) are
+	 * not evaluated at all; the analysis relies on the default
+	 * {@link RequestComply}, so, with a custom one, all the rules are evaluated.
+	 */
+	BitSet candidateIndexes(CompiledPolicy policy, Request request, EvaluationContext context) {
+		return context.trace().isEnabled() || !(requestComply instanceof DefaultRequestComply) ?
+			policy.getCandidateIndexes(request.resource()) :
+			policy.getLiveCandidateIndexes(request.resource());
+	}
+
+	private Result evaluate(CompiledPolicy policy, Request request, EvaluationContext context) {
+		var candidateIndexes = candidateIndexes(policy, request, context);
+		if (!context.trace().isEnabled()) {
+			var statistics = statistics(context);
+			if (statistics != null) {
+				for (var i : statistics.rulesInOrder(policy, candidateIndexes)) {
+					var rule = policy.getRule(i);
+					var start = System.nanoTime();
+					var result = evaluateCandidate(rule, request, context);
+					// the outcome of a cancelled evaluation is meaningless
+					if (!context.cancellation().isCancelled()) {
+						statistics.recordRule(rule, result.isPermitted(), System.nanoTime() - start);
+					}
+					if (result.isPermitted()) {
+						return result;
+					}
+				}
+				return DENIED;
+			}
+			for (int i = candidateIndexes.nextSetBit(0); i >= 0; i = candidateIndexes.nextSetBit(i + 1)) {
+				var result = evaluateCandidate(policy.getRule(i), request, context);
+				if (result.isPermitted()) {
+					return result;
+				}
+			}
+			return DENIED;
+		}
+		// all the rules are walked only to record the match in the trace
+		for (var rule : policy.rules()) {
+			var result = evaluate(rule, request, context, candidateIndexes.get(rule.index()));
+			if (result.isPermitted()) {
+				return result;
+			}
+		}
+		return DENIED;
+	}
+
+	/**
+	 * Evaluates a candidate rule, when not tracing.
+	 */
+	private Result evaluateCandidate(CompiledRule rule, Request request, EvaluationContext context) {
+		if (!rule.isTrivial()) {
+			return evaluate(rule, request, context, true);
+		}
+		if (!context.budget().countRuleEvaluation()) {
+			return DENIED;
+		}
+		// decided by the resource match alone: nothing else to evaluate
+		return matcher.match(request.resource(), rule.resource()) ?
+			Result.permitted().add(request) :
+			DENIED;
 	}
 
-	private Result evaluate(int policyIndex, Rules rules, Request request, Set<Request> requests) {
-		return rules.getRuleData()
-			.map(r -> evaluate(policyIndex, r.index(), r.rule(), request, requests))
-			.filter(Result::isPermitted)
-			.findFirst()
-			.orElse(DENIED);
+	/**
+	 * @return the statistics to order the candidates, or null if they must be
+	 * evaluated in the strict order
+	 */
+	private OrderingStatistics statistics(EvaluationContext context) {
+		if (ordering == Ordering.STRICT || context.trace().isEnabled()) {
+			return null;
+		}
+		var current = statistics;
+		if (current == null || current.policies() != context.policies()) {
+			current = new OrderingStatistics(context.policies());
+			statistics = current;
+		}
+		return current;
 	}
 
-	private Result evaluate(int policyIndex, int ruleIndex, Rule rule, Request request, Set<Request> requests) {
-		trace.addAndThenIndent(String.format("policy %d: evaluating %s",
+	/**
+	 * @param candidate whether the rule's resource can match, according to the
+	 * index of the rules; if not, the resource is not even matched.
+	 */
+	private Result evaluate(CompiledRule rule, Request request, EvaluationContext context,
+			boolean candidate) {
+		// rules that are not candidates are only walked to record the trace
+		if (context.cancellation().isCancelled() || (candidate && !context.budget().countRuleEvaluation())) {
+			return DENIED;
+		}
+		var policyIndex = rule.policyIndex();
+		context.trace().addAndThenIndent(() -> String.format("policy %d: evaluating %s",
 				policyIndex, request));
 		try {
-			boolean outcome = tryMatch(traceForRule(policyIndex, ruleIndex), "resource", request.resource(), rule.getResource());
-			if (!outcome) {
+			Supplier<String> prefix = rule::name;
+			boolean matched = candidate ?
+				tryMatch(prefix, "resource", request.resource(), rule.resource(), context) :
+				traceMatch(prefix, "resource", request.resource(), rule.resource(), false, context);
+			if (!matched) {
 				return DENIED;
 			}
-			outcome = rule.getCondition().evaluate(
-				name -> Stream.of(
-							request.resource(),
-							contextHandler.ofParty(policyIndex),
-							policies.getByIndex(request.requester().index()).party())
-					.map(attributes -> attributes.name(name))
-					.filter(Objects::nonNull)
-					.findFirst()
-					.orElseThrow(() -> new UndefinedName(name))
-			);
-			trace.add(String.format("%s: condition %s -> %s", traceForRule(policyIndex, ruleIndex), rule.getCondition(), outcome));
+			boolean outcome = rule.condition().evaluate(
+				new RuleAttributesResolver(rule, request, contextHandler, context));
+			context.trace().add(() -> String.format("%s: condition %s -> %s", rule.name(), rule.condition(), outcome));
 			if (!outcome) {
 				return DENIED;
 			}
-			var result = evaluateExchange(policyIndex, ruleIndex, rule.getExchange(), request, requests);
+			if (rule.exchange() == null) {
+				// no exchange requests to evaluate, so no need to track this request
+				return Result.permitted().add(request);
+			}
+			var result = evaluateExchange(rule, rule.exchange(), request, context);
 			if (result.isPermitted()) {
 				return Result.permitted()
 						.add(request)
@@ -170,36 +894,38 @@ public class Semantics {
 			}
 			return result;
 		} catch (Exception e) {
-			trace.add(String.format("%s: condition %s -> %s", traceForRule(policyIndex, ruleIndex), rule.getCondition(), e.getMessage()));
+			context.trace().add(() -> String.format("%s: condition %s -> %s", rule.name(), rule.condition(), e.getMessage()));
 			return DENIED;
 		} finally {
-			trace.removeIndent();
+			context.trace().removeIndent();
 		}
 	}
 
-	private Result evaluateExchange(int policyIndex, int ruleIndex, Exchange exchange, Request request, Set<Request> requests) {
+	private Result evaluateExchange(CompiledRule rule, CompiledExchange exchange, Request request, EvaluationContext context) {
 		Result result;
-		requests.add(request);
+		context.requests().add(request);
 
-		var isComposite = exchange instanceof CompositeExchange;
+		var isComposite = exchange != null && exchange.exchange() instanceof CompositeExchange;
 
 		if (isComposite) {
-			trace.addAndThenIndent(String.format("%s: evaluating %s", traceForRule(policyIndex, ruleIndex), exchange));
+			context.trace().addAndThenIndent(() -> String.format("%s: evaluating %s", rule.name(), exchange.exchange()));
 		}
 
 		switch (exchange) {
-		case OrExchange(var left, var right) -> {
-			result = evaluateExchange(policyIndex, ruleIndex, left, request, requests);
+		case CompiledOrExchange orExchange when statistics(context) != null ->
+			result = evaluateAdaptively(rule, orExchange, request, context, statistics(context));
+		case CompiledOrExchange(var e, var left, var right) -> {
+			result = evaluateExchange(rule, left, request, context);
 			if (!result.isPermitted()) {
-				trace.addInPreviousIndent(String.format("%s: OR", traceForRule(policyIndex, ruleIndex)));
-				result = evaluateExchange(policyIndex, ruleIndex, right, request, requests);
+				context.trace().addInPreviousIndent(() -> String.format("%s: OR", rule.name()));
+				result = evaluateExchange(rule, right, request, context);
 			}
 		}
-		case AndExchange(var left, var right) -> {
-			result = evaluateExchange(policyIndex, ruleIndex, left, request, requests);
+		case CompiledAndExchange(var e, var left, var right) -> {
+			result = evaluateExchange(rule, left, request, context);
 			if (result.isPermitted()) {
-				trace.addInPreviousIndent(String.format("%s: AND", traceForRule(policyIndex, ruleIndex)));
-				var result1 = evaluateExchange(policyIndex, ruleIndex, right, request, requests);
+				context.trace().addInPreviousIndent(() -> String.format("%s: AND", rule.name()));
+				var result1 = evaluateExchange(rule, right, request, context);
 				if (result1.isPermitted()) {
 					result.addAll(result1.getRequests());
 				} else {
@@ -207,140 +933,150 @@ public class Semantics {
 				}
 			}
 		}
-		case SingleExchange singleExchange -> result = evaluate(policyIndex, ruleIndex, singleExchange, request, requests);
+		case CompiledSingleExchange singleExchange -> result = evaluate(rule, singleExchange, request, context);
 		case null -> result = Result.permitted();
 		}
 
 		if (isComposite) {
-			trace.removeIndentAndThenAdd(String.format("%s: END Exchange -> %s",
-					traceForRule(policyIndex, ruleIndex), result.isPermitted()));
+			var permitted = result.isPermitted();
+			context.trace().removeIndentAndThenAdd(() -> String.format("%s: END Exchange -> %s",
+					rule.name(), permitted));
 		}
 
-		requests.remove(request);
+		context.requests().remove(request);
+
+		return result;
+	}
 
+	/**
+	 * Evaluates first the branch that is more likely to succeed, when not
+	 * tracing.
+	 */
+	private Result evaluateAdaptively(CompiledRule rule, CompiledOrExchange exchange, Request request,
+			EvaluationContext context, OrderingStatistics statistics) {
+		var rightFirst = statistics.rightFirst(exchange);
+		var result = evaluateBranch(rule, exchange, rightFirst, request, context, statistics);
+		if (!result.isPermitted()) {
+			result = evaluateBranch(rule, exchange, !rightFirst, request, context, statistics);
+		}
+		return result;
+	}
+
+	private Result evaluateBranch(CompiledRule rule, CompiledOrExchange exchange, boolean right, Request request,
+			EvaluationContext context, OrderingStatistics statistics) {
+		var start = System.nanoTime();
+		var result = evaluateExchange(rule, right ? exchange.right() : exchange.left(), request, context);
+		if (!context.cancellation().isCancelled()) {
+			statistics.recordBranch(exchange, right, result.isPermitted(), System.nanoTime() - start);
+		}
 		return result;
 	}
 
-	private Result evaluate(int policyIndex, int ruleIndex, SingleExchange exchange, Request request, Set<Request> requests) {
-		trace.add(String.format("%s: evaluating %s", traceForRule(policyIndex, ruleIndex), exchange));
+	private Result evaluate(CompiledRule rule, CompiledSingleExchange exchange, Request request, EvaluationContext context) {
+		context.trace().add(() -> String.format("%s: evaluating %s", rule.name(), exchange.exchange()));
 
 		var exchangeFrom = exchange.from();
 		var exchangeTo = exchange.to();
 
-		Collection<Integer> fromIndexes;
-		Collection<Integer> toIndexes;
+		IndexSet fromIndexes;
+		IndexSet toIndexes;
 
 		if (exchangeFrom.isRequester()) {
-			fromIndexes = Collections.singleton(request.requester().getIndex());
+			fromIndexes = IndexSet.of(request.requester().getIndex());
 		} else {
-			fromIndexes = computeIndexes(exchangeFrom.getAttributes());
+			fromIndexes = computeIndexes(exchangeFrom, context);
 		}
 
 		if (exchangeTo.isMe()) {
-			toIndexes = Collections.singleton(policyIndex);
+			toIndexes = exchangeTo.indexes();
 		} else {
-			toIndexes = computeIndexes(exchangeTo.getAttributes());
+			toIndexes = computeIndexes(exchangeTo, context);
 		}
 
 		if (toIndexes.isEmpty()) {
-			trace.add(String.format("%s: satisfied: no one to exchange", traceForRule(policyIndex, ruleIndex)));
+			context.trace().add(() -> String.format("%s: satisfied: no one to exchange", rule.name()));
 			return Result.permitted(); // there's no one to satisfy
 		}
 		// this check would be implied by the later
 		// atLeastOneRequest.hasBeenGenerated for from: allSuchThat
 		// but this way we can give a more informative message
 		if (fromIndexes.isEmpty()) {
-			trace.add(String.format("%s: not satisfied: no one from exchange", traceForRule(policyIndex, ruleIndex)));
+			context.trace().add(() -> String.format("%s: not satisfied: no one from exchange", rule.name()));
 			return DENIED; // no one can satisfy
 		}
 
-		BiPredicate<Integer, Integer> differentIndexes = (i1, i2) -> !i1.equals(i2);
-
-		Predicate<Integer> innerOperation;
-
-		// to keep track of the fact that at least one inner
-		// "loop" is executed; that's required for the semantics of allMatch
-		// see below
-		var atLeastOneRequest = new Object() {
-			boolean hasBeenGenerated = false;
+		// evaluates, for a "from" index, the exchange requests to all the "to" indexes
+		IndexEvaluation innerOperation = (fromIndex, c) -> {
+			var innerOutcomes = fanOut(exchangeTo.isAll(), toIndexes, toIndex -> toIndex != fromIndex,
+				(toIndex, c1) -> Outcome.of(
+					evaluateExchangeRequest(rule, exchange.exchange(),
+						c1.policies().participant(toIndex), c1.policies().participant(fromIndex), c1)),
+				c);
+			// all the requests of the successful exchange requests are collected
+			// even if the outcome is not permitted
+			return new Outcome(isPermitted(exchangeTo.isAll(), innerOutcomes),
+				requestsOf(innerOutcomes),
+				toIndexes.containsOtherThan(fromIndex));
 		};
 
-		var successfullRequests = new ArrayList<Request>();
-		BiPredicate<Integer, Integer> innerPredicate = (fromIndex, toIndex) -> {
-			// record that at least one inner loop has been executed
-			// useful for the external allMatch case
-			// see below
-			atLeastOneRequest.hasBeenGenerated = true;
-			return collectingRequests(
-				evaluateExchangeRequest(policyIndex, ruleIndex, exchange, index(toIndex), index(fromIndex), requests),
-				successfullRequests);
-		};
+		var outcomes = fanOutPolicies(exchangeFrom.isAll(), fromIndexes, exchange, innerOperation, context);
+		var permitted = isPermitted(exchangeFrom.isAll(), outcomes);
 
-		if (exchangeTo.isAll()) {
-			innerOperation = fromIndex ->
-				toIndexes.stream()
-					.filter(toIndex -> differentIndexes.test(toIndex, fromIndex))
-					.allMatch(toIndex -> innerPredicate.test(fromIndex, toIndex));
-		} else {
-			innerOperation = fromIndex ->
-				toIndexes.stream()
-					.filter(toIndex -> differentIndexes.test(toIndex, fromIndex))
-					.anyMatch(toIndex -> innerPredicate.test(fromIndex, toIndex));
-		}
-
-		var permitted = false;
-
-		if (exchangeFrom.isAll()) {
-			permitted = fromIndexes.stream()
-				.allMatch(innerOperation);
-			// this additional check is required because allMatch returns
-			// true if the stream was empty
-			if (!atLeastOneRequest.hasBeenGenerated) {
-				trace.add(String.format("%s: not satisfied: no request could be generated", traceForRule(policyIndex, ruleIndex)));
-				permitted = false;
-			}
-		} else {
-			permitted = fromIndexes.stream()
-				.anyMatch(innerOperation);
+		// this additional check is required because allMatch returns
+		// true if no request could be generated
+		if (exchangeFrom.isAll() &&
+				outcomes.stream().noneMatch(Outcome::generated)) {
+			context.trace().add(() -> String.format("%s: not satisfied: no request could be generated", rule.name()));
+			permitted = false;
 		}
 
-		return permitted ? Result.permitted().addAll(successfullRequests) : DENIED;
+		return permitted ? Result.permitted().addAll(requestsOf(outcomes)) : DENIED;
 	}
 
-	private List<Integer> computeIndexes(Attributes attributesToMatch) {
-		return policies.getPolicyData()
-				.filter(d -> {
-					var attributes1 = attributesToMatch;
-					var attributes2 = d.policy().party();
-					return tryMatch("policy " + d.index(), "from", attributes1, attributes2);
-				})
-				.map(PolicyData::index)
-				.toList();
+	/**
+	 * The indexes of the participant have already been computed when compiling
+	 * the policies.
+	 */
+	IndexSet computeIndexes(CompiledParticipant participant, EvaluationContext context) {
+		var indexes = participant.indexes();
+		if (!context.trace().isEnabled()) {
+			return indexes;
+		}
+		// all the policies are walked only to record the match in the trace
+		var policies = context.policies();
+		var attributesToMatch = participant.participant().getAttributes();
+		for (int i = 1; i <= policies.size(); i++) {
+			var policy = policies.getByIndex(i);
+			traceMatch(() -> "policy " + policy.index(), "from",
+				attributesToMatch, policy.party(), indexes.contains(i), context);
+		}
+		return indexes;
 	}
 
-	private Result evaluateExchangeRequest(int policyIndex,
-			int ruleIndex,
+	private Result evaluateExchangeRequest(CompiledRule rule,
 			SingleExchange exchange,
 			IndexParticipant exchangeRequestRequester,
 			RequestFromParticipant exchangeRequestFrom,
-			Set<Request> requests) {
+			EvaluationContext context) {
 		var exchangeRequest = new Request(
 			exchangeRequestRequester,
 			exchange.resource(),
 			exchangeRequestFrom);
-		if (requests.stream()
-				.anyMatch(existingRequest -> requestComply.test(exchangeRequest, existingRequest))) {
-			trace.add(String.format("%s: compliant request found %s", traceForRule(policyIndex, ruleIndex), exchangeRequest));
+		if (context.requests().anyCompliant(exchangeRequest)) {
+			context.trace().add(() -> String.format("%s: compliant request found %s", rule.name(), exchangeRequest));
 			return Result.permitted();
 		}
-		return evaluate(exchangeRequest, requests);
-	}
-
-	private String traceForRule(int policyIndex, int ruleIndex) {
-		return String.format("rule %d.%d", policyIndex, ruleIndex);
+		return evaluate(exchangeRequest, context);
 	}
 
+	/**
+	 * Evaluations performed concurrently should pass their own trace to
+	 * {@link #evaluate(Request, TraceSink)} instead.
+	 *
+	 * @return the trace of the last evaluation, or an empty trace if it has
+	 * not been recorded in a {@link Trace}, e.g., because tracing is disabled
+	 */
 	public Trace getTrace() {
-		return trace;
+		return lastTrace instanceof Trace trace ? trace : new Trace();
 	}
 }
@@ -0,0 +1,411 @@
+package colpo.core.semantics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import colpo.core.Attributes;
+import colpo.core.CompiledPolicies.CompiledAndExchange;
+import colpo.core.CompiledPolicies.CompiledExchange;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledPolicy;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+import colpo.core.ContextHandler;
+import colpo.core.IndexSet;
+import colpo.core.Request;
+import colpo.core.RequestComply;
+
+/**
+ * Enumerates, lazily, all the ways a request can be permitted, each one with
+ * the requests it collects, in the order they are tried by {@link Semantics}:
+ * all the candidate policies and rules, and both the branches of an
+ * {@link colpo.core.OrExchange}, instead of stopping at the first success.
+ *
+ * A solution is only computed when the next one is requested, so the
+ * requests being evaluated, used for compliance, are kept in an immutable
+ * list, shared by the solutions computed in the meantime. Solutions
+ * collecting the same requests as a previous one are skipped at every level,
+ * and the solutions combined by an "and" or an allSuchThat are enumerated
+ * only once (see {@link Product}).
+ *
+ * @author Lorenzo Bettini
+ */
+class SolutionEnumerator {
+
+	/**
+	 * The requests being evaluated, the innermost first.
+	 */
+	static record InProgress(Request request, InProgress next) {
+
+		/**
+		 * @param inProgress null if there are no requests being evaluated
+		 */
+		static boolean anyCompliant(Request newRequest, InProgress inProgress, RequestComply requestComply) {
+			var key = requestComply.partitionKey(newRequest);
+			for (var existing = inProgress; existing != null; existing = existing.next()) {
+				if (key.equals(requestComply.partitionKey(existing.request())) &&
+						requestComply.test(newRequest, existing.request())) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static final IntPredicate ALL_INDEXES = index -> true;
+
+	private final Semantics semantics;
+	private final ContextHandler contextHandler;
+	private final RequestComply requestComply;
+	private final EvaluationContext context;
+
+	/**
+	 * @param semantics
+	 * @param contextHandler
+	 * @param requestComply
+	 * @param context only used for the policies and to evaluate conditions,
+	 * not traced
+	 */
+	SolutionEnumerator(Semantics semantics, ContextHandler contextHandler, RequestComply requestComply,
+			EvaluationContext context) {
+		this.semantics = semantics;
+		this.contextHandler = contextHandler;
+		this.requestComply = requestComply;
+		this.context = context;
+	}
+
+	/**
+	 * @param request canonical
+	 * @return the distinct sets of requests collected by the solutions
+	 */
+	Iterator<List<Request>> solutions(Request request) {
+		return solutions(request, null);
+	}
+
+	private Iterator<List<Request>> solutions(Request request, InProgress inProgress) {
+		var from = request.from();
+		var index = from.getIndex();
+		if (index > 0) {
+			return distinct(solutions(context.policies().getByIndex(index), request, inProgress));
+		}
+		var candidates = semantics.policiesToEvaluate(request.requester(), from, context);
+		if (candidates.isEmpty()) {
+			return none();
+		}
+		IntFunction<Iterator<List<Request>>> policySolutions = i -> solutions(
+			context.policies().getByIndex(i), Semantics.withFrom(request, i, context), inProgress);
+		return from.isAll() ?
+			product(candidates, ALL_INDEXES, policySolutions) :
+			distinct(concat(candidates, ALL_INDEXES, policySolutions));
+	}
+
+	private Iterator<List<Request>> solutions(CompiledPolicy policy, Request request, InProgress inProgress) {
+		var candidateIndexes = semantics.candidateIndexes(policy, request, context);
+		return new Concat<>(candidateIndexes.stream()
+			.mapToObj(i -> (Supplier<Iterator<List<Request>>>) () ->
+				solutions(policy.getRule(i), request, inProgress))
+			.iterator());
+	}
+
+	private Iterator<List<Request>> solutions(CompiledRule rule, Request request, InProgress inProgress) {
+		if (!semantics.matcher().match(request.resource(), rule.resource()) || !holds(rule, request)) {
+			return none();
+		}
+		if (rule.exchange() == null) {
+			return one(List.of(request));
+		}
+		return map(solutions(rule.exchange(), request, new InProgress(request, inProgress)),
+			requests -> concat(List.of(request), requests));
+	}
+
+	private boolean holds(CompiledRule rule, Request request) {
+		try {
+			return rule.condition().evaluate(new RuleAttributesResolver(rule, request, contextHandler, context));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private Iterator<List<Request>> solutions(CompiledExchange exchange, Request request, InProgress inProgress) {
+		return switch (exchange) {
+		case CompiledOrExchange e -> distinct(new Concat<>(List.<Supplier<Iterator<List<Request>>>>of(
+			() -> solutions(e.left(), request, inProgress),
+			() -> solutions(e.right(), request, inProgress)).iterator()));
+		case CompiledAndExchange e -> product(List.of(
+			() -> solutions(e.left(), request, inProgress),
+			() -> solutions(e.right(), request, inProgress)));
+		case CompiledSingleExchange e -> solutions(e, request, inProgress);
+		};
+	}
+
+	private Iterator<List<Request>> solutions(CompiledSingleExchange exchange, Request request,
+			InProgress inProgress) {
+		var exchangeFrom = exchange.from();
+		var exchangeTo = exchange.to();
+		var fromIndexes = exchangeFrom.isRequester() ?
+			IndexSet.of(request.requester().getIndex()) :
+			exchangeFrom.indexes();
+		var toIndexes = exchangeTo.indexes();
+		if (toIndexes.isEmpty()) {
+			return one(List.of()); // there's no one to satisfy
+		}
+		if (fromIndexes.isEmpty()) {
+			return none(); // no one can satisfy
+		}
+		var resource = exchange.exchange().resource();
+		IntFunction<Iterator<List<Request>>> fromSolutions = fromIndex -> {
+			IntFunction<Iterator<List<Request>>> toSolutions = toIndex ->
+				solutions(resource, toIndex, fromIndex, inProgress);
+			IntPredicate different = toIndex -> toIndex != fromIndex;
+			return exchangeTo.isAll() ?
+				product(toIndexes, different, toSolutions) :
+				distinct(concat(toIndexes, different, toSolutions));
+		};
+		if (!exchangeFrom.isAll()) {
+			return distinct(concat(fromIndexes, ALL_INDEXES, fromSolutions));
+		}
+		// an allSuchThat is not satisfied if no request could be generated
+		if (!fromIndexes.anyMatch(toIndexes::containsOtherThan)) {
+			return none();
+		}
+		return product(fromIndexes, ALL_INDEXES, fromSolutions);
+	}
+
+	private Iterator<List<Request>> solutions(Attributes resource, int to, int from, InProgress inProgress) {
+		var policies = context.policies();
+		var exchangeRequest = new Request(policies.participant(to), resource, policies.participant(from));
+		if (InProgress.anyCompliant(exchangeRequest, inProgress, requestComply)) {
+			return one(List.of());
+		}
+		return solutions(exchangeRequest, inProgress);
+	}
+
+	private static Iterator<List<Request>> none() {
+		return Collections.emptyIterator();
+	}
+
+	private static Iterator<List<Request>> one(List<Request> requests) {
+		return List.of(requests).iterator();
+	}
+
+	private static List<Request> concat(List<Request> first, List<Request> second) {
+		var requests = new ArrayList<Request>(first.size() + second.size());
+		requests.addAll(first);
+		requests.addAll(second);
+		return requests;
+	}
+
+	/**
+	 * The solutions of any of the accepted indexes, in order.
+	 */
+	private static Iterator<List<Request>> concat(IndexSet indexes, IntPredicate accepted,
+			IntFunction<Iterator<List<Request>>> solutions) {
+		return new Concat<>(IntStream.range(0, indexes.size())
+			.filter(i -> accepted.test(indexes.get(i)))
+			.mapToObj(i -> (Supplier<Iterator<List<Request>>>) () -> solutions.apply(indexes.get(i)))
+			.iterator());
+	}
+
+	/**
+	 * The combinations of the solutions of all the accepted indexes.
+	 */
+	private static Iterator<List<Request>> product(IndexSet indexes, IntPredicate accepted,
+			IntFunction<Iterator<List<Request>>> solutions) {
+		return product(IntStream.range(0, indexes.size())
+			.filter(i -> accepted.test(indexes.get(i)))
+			.mapToObj(i -> (Supplier<Iterator<List<Request>>>) () -> solutions.apply(indexes.get(i)))
+			.toList());
+	}
+
+	private static Iterator<List<Request>> product(List<Supplier<Iterator<List<Request>>>> factors) {
+		return distinct(new Product(factors));
+	}
+
+	/**
+	 * @return the solutions without the ones collecting the same requests as
+	 * a previous one
+	 */
+	private static Iterator<List<Request>> distinct(Iterator<List<Request>> solutions) {
+		var seen = new HashSet<Set<Request>>();
+		return filter(solutions, requests -> seen.add(Set.copyOf(requests)));
+	}
+
+	private static <T, R> Iterator<R> map(Iterator<T> iterator, Function<T, R> function) {
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public R next() {
+				return function.apply(iterator.next());
+			}
+		};
+	}
+
+	private static <T> Iterator<T> filter(Iterator<T> iterator, Predicate<T> predicate) {
+		return new Iterator<>() {
+			private T next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && iterator.hasNext()) {
+					var candidate = iterator.next();
+					if (predicate.test(candidate)) {
+						next = candidate;
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				var result = next;
+				next = null;
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * The solutions of a factor of a {@link Product}, computed once, when they
+	 * are first needed, and then reused for all the combinations.
+	 */
+	private static class Factor {
+
+		private final Iterator<List<Request>> solutions;
+		private final List<List<Request>> computed = new ArrayList<>();
+
+		private Factor(Iterator<List<Request>> solutions) {
+			this.solutions = solutions;
+		}
+
+		private boolean has(int position) {
+			while (computed.size() <= position && solutions.hasNext()) {
+				computed.add(solutions.next());
+			}
+			return position < computed.size();
+		}
+
+		private List<Request> get(int position) {
+			return computed.get(position);
+		}
+	}
+
+	/**
+	 * The combinations of the solutions of the factors, in order, the last
+	 * factor varying first. The solutions of a factor do not depend on the
+	 * solutions chosen for the other factors, so each factor is enumerated
+	 * only once; the first solution of all the factors is computed before
+	 * any combination, so that an empty factor stops the product at once.
+	 */
+	private static class Product implements Iterator<List<Request>> {
+
+		private final List<Supplier<Iterator<List<Request>>>> suppliers;
+		private Factor[] factors;
+		private int[] positions;
+		private List<Request> next;
+		private boolean exhausted = false;
+
+		private Product(List<Supplier<Iterator<List<Request>>>> suppliers) {
+			this.suppliers = suppliers;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !exhausted) {
+				next = advance();
+				exhausted = next == null;
+			}
+			return next != null;
+		}
+
+		@Override
+		public List<Request> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			var result = next;
+			next = null;
+			return result;
+		}
+
+		private List<Request> advance() {
+			if (factors == null) {
+				factors = new Factor[suppliers.size()];
+				positions = new int[suppliers.size()];
+				for (int i = 0; i < factors.length; i++) {
+					factors[i] = new Factor(suppliers.get(i).get());
+					if (!factors[i].has(0)) {
+						return null;
+					}
+				}
+				return combination();
+			}
+			for (int i = factors.length - 1; i >= 0; i--) {
+				if (factors[i].has(positions[i] + 1)) {
+					positions[i]++;
+					return combination();
+				}
+				positions[i] = 0;
+			}
+			return null;
+		}
+
+		private List<Request> combination() {
+			var requests = new ArrayList<Request>();
+			for (int i = 0; i < factors.length; i++) {
+				requests.addAll(factors[i].get(positions[i]));
+			}
+			return requests;
+		}
+	}
+
+	/**
+	 * The elements of the iterators, each one created only when the previous
+	 * ones are exhausted.
+	 */
+	private static class Concat<T> implements Iterator<T> {
+
+		private final Iterator<? extends Supplier<Iterator<T>>> parts;
+		private Iterator<T> current = Collections.emptyIterator();
+
+		private Concat(Iterator<? extends Supplier<Iterator<T>>> parts) {
+			this.parts = parts;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!current.hasNext()) {
+				if (!parts.hasNext()) {
+					return false;
+				}
+				current = parts.next().get();
+			}
+			return true;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return current.next();
+		}
+	}
+}
@@ -1,31 +1,54 @@
 package colpo.core.semantics;
 
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
 /**
+ * A {@link TraceSink} recording the steps as indented text lines.
+ *
  * @author Lorenzo Bettini
  */
-public class Trace {
+public class Trace implements TraceSink {
 
 	private StringBuilder builder = new StringBuilder();
 	private int indent = 0;
 
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public TraceSink newSink() {
+		return new Trace();
+	}
+
 	public void add(String string) {
 		builder.append(String.format("%s%s%s",
 			" ".repeat(indent), string, "\n"));
 	}
 
+	@Override
+	public void add(Supplier<String> message) {
+		add(message.get());
+	}
+
 	@Override
 	public String toString() {
 		return builder.toString();
 	}
 
+	@Override
 	public void addIndent() {
 		indent += 2;
 	}
 
+	@Override
 	public void removeIndent() {
 		indent -= 2;
 	}
 
+	@Override
 	public void reset() {
 		builder = new StringBuilder();
 		indent = 0;
@@ -46,4 +69,21 @@ public class Trace {
 		removeIndent();
 		add(string);
 	}
+
+	@Override
+	public int mark() {
+		return builder.length();
+	}
+
+	@Override
+	public String since(int mark) {
+		return builder.substring(mark).lines()
+			.map(line -> line.substring(Math.min(indent, line.length())) + "\n")
+			.collect(Collectors.joining());
+	}
+
+	@Override
+	public void addLines(String lines) {
+		lines.lines().forEach(this::add);
+	}
 }
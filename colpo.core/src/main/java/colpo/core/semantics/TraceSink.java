@@ -0,0 +1,71 @@
+package colpo.core.semantics;
+
+import java.util.function.Supplier;
+
+/**
+ * Where the steps of an evaluation are recorded.
+ *
+ * Messages are passed as {@link Supplier}s, so that they are built only if
+ * the sink is enabled: with {@link #NO_OP} no message is ever built.
+ *
+ * @author Lorenzo Bettini
+ */
+public interface TraceSink {
+
+	/**
+	 * A sink that records nothing.
+	 */
+	static final TraceSink NO_OP = new NoOpTraceSink();
+
+	/**
+	 * @return whether messages are recorded at all, so that callers can skip
+	 * work that is only needed to build messages.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @return a new empty sink of the same kind
+	 */
+	TraceSink newSink();
+
+	void add(Supplier<String> message);
+
+	void addIndent();
+
+	void removeIndent();
+
+	void reset();
+
+	/**
+	 * @return a position that can be later passed to {@link #since(int)}
+	 */
+	int mark();
+
+	/**
+	 * The lines added since the passed mark, without the current indentation,
+	 * so that they can be added again, possibly with a different indentation,
+	 * with {@link #addLines(String)}.
+	 *
+	 * @param mark
+	 * @return
+	 */
+	String since(int mark);
+
+	void addLines(String lines);
+
+	default void addAndThenIndent(Supplier<String> message) {
+		add(message);
+		addIndent();
+	}
+
+	default void addInPreviousIndent(Supplier<String> message) {
+		removeIndent();
+		add(message);
+		addIndent();
+	}
+
+	default void removeIndentAndThenAdd(Supplier<String> message) {
+		removeIndent();
+		add(message);
+	}
+}
@@ -37,4 +37,25 @@ class AttributeMatcherTest {
 		assertFalse(attributeMatcher.match(attributes3, attributes2));
 	}
 
+	@Test
+	void shouldMatchIndependentlyOfTheOrderOfNames() {
+		var attributes1 = new Attributes().add("zName", "zValue")
+				.add("aName", "aValue");
+		var attributes2 = new Attributes().add("mName", "mValue")
+				.add("aName", "aValue")
+				.add("zName", "zValue");
+		assertTrue(attributeMatcher.match(attributes1, attributes2));
+		assertFalse(attributeMatcher.match(attributes2, attributes1));
+	}
+
+	@Test
+	void shouldMatchNullValuesWithMissingNames() {
+		var attributes1 = new Attributes().add("aName", "aValue")
+				.add("nullName", null);
+		var attributes2 = new Attributes().add("aName", "aValue");
+		assertTrue(attributeMatcher.match(attributes1, attributes2));
+		assertFalse(attributeMatcher.match(attributes1,
+			new Attributes().add("aName", "aValue").add("nullName", "aValue")));
+	}
+
 }
@@ -0,0 +1,87 @@
+package colpo.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AttributesIndexTest {
+
+	private AttributesIndex index;
+
+	@BeforeEach
+	void init() {
+		index = new AttributesIndex();
+		index.add(1, new Attributes()
+			.add("name", "Alice")
+			.add("role", "Provider"));
+		index.add(2, new Attributes()
+			.add("role", "Provider"));
+		index.add(3, new Attributes()
+			.add("name", "Bob")
+			.add("role", "Provider"));
+		index.add(4, new Attributes());
+	}
+
+	@Test
+	void shouldMatchEverythingWithEmptyAttributes() {
+		assertThat(index.matching(new Attributes()).stream())
+			.containsExactly(1, 2, 3, 4);
+	}
+
+	@Test
+	void shouldIntersectPostings() {
+		assertThat(index.matching(new Attributes()
+				.add("role", "Provider")).stream())
+			.containsExactly(1, 2, 3);
+		assertThat(index.matching(new Attributes()
+				.add("role", "Provider")
+				.add("name", "Bob")).stream())
+			.containsExactly(3);
+		assertThat(index.matching(new Attributes()
+				.add("role", "Provider")
+				.add("name", "Carl")).stream())
+			.isEmpty();
+		assertThat(index.matching(new Attributes()
+				.add("unknown", "Provider")).stream())
+			.isEmpty();
+	}
+
+	@Test
+	void shouldMatchNullValuesWithMissingNames() {
+		assertThat(index.matching(new Attributes()
+				.add("name", null)).stream())
+			.containsExactly(2, 4);
+	}
+
+	@Test
+	void shouldBeConsistentWithAttributeMatcher() {
+		var matcher = new AttributeMatcher();
+		var indexed = new Attributes[] {
+			new Attributes().add("a", 1).add("b", "x"),
+			new Attributes().add("a", 1),
+			new Attributes().add("b", "x"),
+			new Attributes()
+		};
+		var queries = new Attributes[] {
+			new Attributes(),
+			new Attributes().add("a", 1),
+			new Attributes().add("a", 2),
+			new Attributes().add("b", "x").add("a", 1),
+			new Attributes().add("a", null),
+			new Attributes().add("c", "x")
+		};
+		index = new AttributesIndex();
+		for (int i = 0; i < indexed.length; i++) {
+			index.add(i, indexed[i]);
+		}
+		for (var query : queries) {
+			var matching = index.matching(query);
+			for (int i = 0; i < indexed.length; i++) {
+				assertThat(matching.get(i))
+					.as("%s against %s", query, indexed[i])
+					.isEqualTo(matcher.match(query, indexed[i]));
+			}
+		}
+	}
+}
@@ -3,6 +3,7 @@ package colpo.core;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -49,4 +50,55 @@ class AttributesTest {
 		assertThat(attributes.names())
 			.containsExactlyInAnyOrder("aName", "aName1");
 	}
+
+	@Test
+	void attributesNamesInInsertionOrder() {
+		attributes.add("zName", "zValue")
+			.add("aName", "aValue")
+			.add("mName", "mValue");
+		assertThat(attributes.names())
+			.containsExactly("zName", "aName", "mName");
+		assertEquals("[(zName : zValue), (aName : aValue), (mName : mValue)]", attributes.toString());
+	}
+
+	@Test
+	void equalsIndependentlyOfInsertionOrder() {
+		attributes.add("aName", "aValue")
+			.add("aName1", "aValue1");
+		var other = new Attributes()
+			.add("aName1", "aValue1")
+			.add("aName", "aValue");
+		assertEquals(attributes, other);
+		assertEquals(attributes.hashCode(), other.hashCode());
+		assertNotEquals(attributes, new Attributes().add("aName", "aValue"));
+		assertNotEquals(new Attributes().add("aName", null), new Attributes());
+	}
+
+	@Test
+	void shouldReplaceNullValue() {
+		attributes.add("aName", null)
+			.add("aName1", "aValue1")
+			.add("aName", "aValue");
+		assertEquals("[(aName : aValue), (aName1 : aValue1)]", attributes.toString());
+	}
+
+	@Test
+	void frozenAttributes() {
+		attributes.add("aName", "aValue")
+			.add("aName1", "aValue1");
+		var frozen = attributes.frozen();
+		assertThat(frozen.isFrozen()).isTrue();
+		assertThat(attributes.isFrozen()).isFalse();
+		assertThat(frozen.frozen()).isSameAs(frozen);
+		assertEquals(attributes, frozen);
+		assertEquals(attributes.hashCode(), frozen.hashCode());
+		assertEquals(attributes.toString(), frozen.toString());
+		assertThatThrownBy(() -> frozen.add("aName2", "aValue2"))
+			.isInstanceOf(UnsupportedOperationException.class)
+			.hasMessage("cannot add an attribute to frozen attributes");
+		// the original attributes are still modifiable
+		attributes.add("aName2", "aValue2");
+		assertNull(frozen.name("aName2"));
+		assertNotEquals(attributes, frozen);
+	}
 }
@@ -0,0 +1,139 @@
+package colpo.core;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.CompiledPolicies.CompiledAndExchange;
+import colpo.core.CompiledPolicies.CompiledRule;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+import colpo.core.CompiledPolicies.RuleKind;
+
+class CompiledPoliciesTest {
+
+	private Policies policies;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies()
+			.add(new Policy(new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(new Attributes().add("type", "addrInfo").add("city", "Lucca")))
+					.add(new Rule())
+					.add(new Rule(new Attributes().add("type", "paper"),
+						new AndExchange(
+							new SingleExchange(me(), new Attributes().add("type", "printer"), requester()),
+							new SingleExchange(allSuchThat(new Attributes().add("role", "Provider")),
+								new Attributes().add("type", "printer"),
+								anySuchThat(new Attributes().add("name", "Bob"))))))))
+			.add(new Policy(new Attributes().add("role", "Provider"), new Rules()))
+			.add(new Policy(new Attributes().add("name", "Bob").add("role", "Provider"), new Rules()));
+	}
+
+	@Test
+	void shouldCompileRulesInIndexOrder() {
+		var compiled = policies.compile();
+		assertThat(compiled.size()).isEqualTo(3);
+		var policy = compiled.getByIndex(1);
+		assertThat(policy.rules())
+			.extracting(CompiledRule::name)
+			.containsExactly("rule 1.1", "rule 1.2", "rule 1.3");
+		assertThat(policy.getCandidateIndexes(new Attributes().add("type", "addrInfo")).stream())
+			.containsExactly(1, 2);
+		assertThat(policy.getCandidateIndexes(new Attributes().add("type", "paper")).stream())
+			.containsExactly(2, 3);
+		assertThat(compiled.getMatchingIndexes(new Attributes().add("role", "Provider")).stream())
+			.containsExactly(2, 3);
+	}
+
+	@Test
+	void shouldResolveParticipantsOfExchanges() {
+		var exchange = (CompiledAndExchange) policies.compile().getByIndex(1).getRule(3).exchange();
+		var left = (CompiledSingleExchange) exchange.left();
+		assertThat(left.to().isMe()).isTrue();
+		assertThat(left.to().indexes()).isEqualTo(IndexSet.of(1));
+		assertThat(left.from().isRequester()).isTrue();
+		assertThat(left.from().indexes()).isSameAs(IndexSet.EMPTY);
+		var right = (CompiledSingleExchange) exchange.right();
+		assertThat(right.to().isAll()).isTrue();
+		assertThat(right.to().indexes()).isEqualTo(IndexSet.of(2, 3));
+		assertThat(right.from().indexes()).isEqualTo(IndexSet.of(3));
+	}
+
+	@Test
+	void shouldClassifyRules() {
+		policies.add(new Policy(new Attributes(),
+			new Rules()
+				.add(new Rule(new Attributes(), Expressions.condition(
+					Expressions.ge(Expressions.constant(2), Expressions.constant(1)))))
+				.add(new Rule(new Attributes(), Expressions.condition(
+					Expressions.ge(Expressions.name("timeHour"), Expressions.constant(1)))))
+				.add(new Rule(new Attributes(), context -> true))));
+		var compiled = policies.compile();
+		assertThat(compiled.getByIndex(1).rules())
+			.extracting(CompiledRule::kind)
+			.containsExactly(RuleKind.TRIVIAL, RuleKind.TRIVIAL, RuleKind.EXCHANGE_BEARING);
+		// lambdas cannot be inspected, so they are always evaluated
+		assertThat(compiled.getByIndex(4).rules())
+			.extracting(CompiledRule::kind)
+			.containsExactly(RuleKind.TRIVIAL, RuleKind.CONDITION_ONLY, RuleKind.CONDITION_ONLY);
+	}
+
+	@Test
+	void shouldOptimizeConditions() {
+		var expensive = Expressions.contains(Expressions.name("position"), Expressions.constant("rat"));
+		var cheap = Expressions.gt(Expressions.name("timeHour"), Expressions.constant(7));
+		policies.add(new Policy(new Attributes(),
+			new Rules()
+				.add(new Rule(new Attributes(), Expressions.condition(Expressions.and(expensive, cheap))))));
+		var condition = (ExpressionCondition) policies.compile().getByIndex(4).getRule(1).condition();
+		assertThat(condition.getEvaluated())
+			.isEqualTo(Expressions.and(cheap, expensive));
+	}
+
+	@Test
+	void shouldReuseParticipants() {
+		var compiled = policies.compile();
+		assertThat(compiled.participant(2))
+			.isSameAs(compiled.participant(2))
+			.isEqualTo(Participants.index(2));
+		assertThat(compiled.participant(4))
+			.isEqualTo(Participants.index(4));
+	}
+
+	@Test
+	void shouldNotSeePoliciesAddedAfterCompilation() {
+		var compiled = policies.compile();
+		policies.add(new Policy(new Attributes().add("role", "Provider"), new Rules()));
+		assertThat(compiled.size()).isEqualTo(3);
+		assertThat(compiled.getMatchingIndexes(new Attributes().add("role", "Provider")).stream())
+			.containsExactly(2, 3);
+		assertThat(compiled.getVersion()).isNotEqualTo(policies.getVersion());
+		assertThat(policies.compile().getMatchingIndexes(new Attributes().add("role", "Provider")).stream())
+			.containsExactly(2, 3, 4);
+	}
+
+	@Test
+	void shouldCacheResolutions() {
+		var compiled = policies.compile();
+		var resolution = compiled.resolve(new Attributes().add("role", "Provider"));
+		assertThat(resolution).isEqualTo(IndexSet.of(2, 3));
+		assertThat(compiled.resolve(new Attributes().add("role", "Provider")))
+			.isSameAs(resolution);
+		// resolutions of participants of exchanges are shared as well
+		var exchange = (CompiledAndExchange) compiled.getByIndex(1).getRule(3).exchange();
+		assertThat(((CompiledSingleExchange) exchange.right()).to().indexes())
+			.isSameAs(resolution);
+		// a new compilation is required to see the added party
+		policies.add(new Policy(new Attributes().add("role", "Provider"), new Rules()));
+		assertThat(compiled.resolve(new Attributes().add("role", "Provider")))
+			.isSameAs(resolution);
+		assertThat(policies.compile().resolve(new Attributes().add("role", "Provider")))
+			.isEqualTo(IndexSet.of(2, 3, 4));
+	}
+}
@@ -1,6 +1,7 @@
 package colpo.core;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -31,4 +32,19 @@ class ContextHandlerTest {
 		assertEquals("aValue2", attributes.name("anAttribute2"));
 		assertEquals("aValue1", attributes.name("anAttribute1"));
 	}
+
+	@Test
+	void testContextCannotBeModifiedDirectly() {
+		contextHandler.add(1, "anAttribute1", "aValue1");
+		var attributes = contextHandler.ofParty(1);
+		assertThatThrownBy(() -> attributes.add("anAttribute2", "aValue2"))
+			.isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(() -> contextHandler.ofParty(2).add("anAttribute2", "aValue2"))
+			.isInstanceOf(UnsupportedOperationException.class);
+		contextHandler.add(1, "anAttribute2", "aValue2");
+		assertThat(contextHandler.getVersion(1)).isEqualTo(2);
+		// the previous context is not affected
+		assertThat(attributes.name("anAttribute2")).isNull();
+		assertEquals("aValue2", contextHandler.ofParty(1).name("anAttribute2"));
+	}
 }
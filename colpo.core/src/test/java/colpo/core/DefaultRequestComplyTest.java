@@ -1,7 +1,9 @@
 package colpo.core;
 
 import static colpo.core.Participants.index;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -52,4 +54,25 @@ class DefaultRequestComplyTest {
 		assertFalse(comply.test(r5, r4));
 	}
 
+	@Test
+	void testPartitionKey() {
+		var r1 = new Request(
+			index(1),
+			new Attributes(),
+			index(2)
+		);
+		var r2 = new Request(
+			index(1),
+			new Attributes().add("name", "value"),
+			index(2)
+		);
+		var r3 = new Request(
+			index(1),
+			new Attributes(),
+			index(3)
+		);
+		assertEquals(comply.partitionKey(r1), comply.partitionKey(r2));
+		assertNotEquals(comply.partitionKey(r1), comply.partitionKey(r3));
+	}
+
 }
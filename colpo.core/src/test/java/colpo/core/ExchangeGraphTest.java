@@ -0,0 +1,157 @@
+package colpo.core;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.CompiledPolicies.CompiledRule;
+
+class ExchangeGraphTest {
+
+	private Policies policies;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies();
+	}
+
+	@Test
+	void shouldComputeSuccessorsAndComponents() {
+		// Alice gives paper if the requester gives her ink, and vice versa for
+		// Bob; Carl gives ink, and toner if Alice gives him paper
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new SingleExchange(me(), ink(), requester())))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink(),
+						new SingleExchange(me(), paper(), requester())))))
+		.add(
+			new Policy( // index 3
+				new Attributes().add("name", "Carl"),
+				new Rules()
+					.add(new Rule(ink()))
+					.add(new Rule(toner(),
+						new SingleExchange(me(), paper(),
+							anySuchThat(new Attributes().add("name", "Alice")))))));
+		var compiled = policies.compile();
+		var graph = compiled.getExchangeGraph();
+		assertThat(names(graph.getSuccessors(compiled.getByIndex(1).getRule(1))))
+			.containsExactly("rule 2.1", "rule 3.1");
+		assertThat(names(graph.getSuccessors(compiled.getByIndex(3).getRule(2))))
+			.containsExactly("rule 1.1");
+		assertThat(graph.getSuccessors(compiled.getByIndex(3).getRule(1)))
+			.isEmpty();
+		assertThat(graph.getComponents())
+			.map(ExchangeGraphTest::names)
+			.containsExactly(
+				List.of("rule 3.1"),
+				List.of("rule 1.1", "rule 2.1"),
+				List.of("rule 3.2"));
+		assertThat(graph.getDeadRules()).isEmpty();
+	}
+
+	@Test
+	void rulesWhoseExchangesCannotBeSatisfiedAreDead() {
+		// no one gives toner, so Alice never gives paper, and Bob never gives
+		// ink if Alice has to give him paper; Bob can give ink to Carl in
+		// exchange for nothing
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new SingleExchange(me(), toner(), requester())))
+					.add(new Rule(toner(),
+						Expressions.condition(Expressions.constant(false))))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob").add("role", "Provider"),
+				new Rules()
+					.add(new Rule(ink(),
+						new SingleExchange(me(), paper(),
+							anySuchThat(new Attributes().add("name", "Alice")))))
+					.add(new Rule(ink(),
+						new OrExchange(
+							new SingleExchange(me(), paper(),
+								anySuchThat(new Attributes().add("name", "Alice"))),
+							new SingleExchange(allSuchThat(new Attributes().add("name", "Ed")), paper(),
+								requester()))))
+					.add(new Rule(ink(),
+						new SingleExchange(me(), paper(),
+							anySuchThat(new Attributes().add("name", "Ed")))))));
+		var compiled = policies.compile();
+		assertThat(names(compiled.getExchangeGraph().getDeadRules()))
+			.containsExactly("rule 1.1", "rule 1.2", "rule 2.1", "rule 2.3");
+		var bob = compiled.getByIndex(2);
+		assertThat(bob.isDead(1)).isTrue();
+		assertThat(bob.isDead(2)).isFalse();
+		assertThat(bob.getCandidateIndexes(ink()).stream())
+			.containsExactly(1, 2, 3);
+		assertThat(bob.getLiveCandidateIndexes(ink()).stream())
+			.containsExactly(2);
+	}
+
+	@Test
+	void cyclesOfExchangesAreNotDead() {
+		// Alice gives paper if Bob gives her ink, and vice versa,
+		// while Carl's cycle also requires toner from Alice
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new SingleExchange(me(), ink(),
+							anySuchThat(new Attributes().add("name", "Bob")))))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink(),
+						new SingleExchange(me(), paper(),
+							anySuchThat(new Attributes().add("name", "Alice")))))))
+		.add(
+			new Policy( // index 3
+				new Attributes().add("name", "Carl"),
+				new Rules()
+					.add(new Rule(toner(),
+						new AndExchange(
+							new SingleExchange(me(), toner(), requester()),
+							new SingleExchange(me(), toner(),
+								anySuchThat(new Attributes().add("name", "Alice"))))))));
+		var graph = policies.compile().getExchangeGraph();
+		assertThat(graph.getComponents())
+			.map(ExchangeGraphTest::names)
+			.contains(List.of("rule 1.1", "rule 2.1"), List.of("rule 3.1"));
+		assertThat(names(graph.getDeadRules()))
+			.containsExactly("rule 3.1");
+	}
+
+	private static List<String> names(List<CompiledRule> rules) {
+		return rules.stream().map(CompiledRule::name).toList();
+	}
+
+	private static Attributes paper() {
+		return new Attributes().add("type", "paper");
+	}
+
+	private static Attributes ink() {
+		return new Attributes().add("type", "ink");
+	}
+
+	private static Attributes toner() {
+		return new Attributes().add("type", "toner");
+	}
+}
@@ -0,0 +1,85 @@
+package colpo.core;
+
+import static colpo.core.Expressions.and;
+import static colpo.core.Expressions.condition;
+import static colpo.core.Expressions.constant;
+import static colpo.core.Expressions.contains;
+import static colpo.core.Expressions.eq;
+import static colpo.core.Expressions.gt;
+import static colpo.core.Expressions.length;
+import static colpo.core.Expressions.lt;
+import static colpo.core.Expressions.name;
+import static colpo.core.Expressions.not;
+import static colpo.core.Expressions.or;
+import static colpo.core.Expressions.subtract;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import colpo.core.semantics.UndefinedName;
+
+class ExpressionConditionTest {
+
+	private ExpressionCondition condition = condition(
+		and(
+			contains(name("position"), constant("rat")),
+			gt(name("timeHour"), constant(7)),
+			lt(name("timeHour"), subtract(constant(21), constant(1)))));
+
+	@Test
+	void shouldShowTheExpressionAsWritten() {
+		assertThat(condition)
+			.hasToString("(position contains 'rat') and (timeHour > 7) and (timeHour < (21 - 1))");
+		assertThat(condition.optimize())
+			.hasToString(condition.toString());
+		assertThat(condition(or(not(name("a")), eq(length(name("b")), constant(1)))))
+			.hasToString("not a or (length b = 1)");
+	}
+
+	@Test
+	void shouldExposeNames() {
+		assertThat(condition.names())
+			.containsExactly("position", "timeHour");
+		assertThat(new Rule(new Attributes(), condition).getCondition().names())
+			.containsExactly("position", "timeHour");
+	}
+
+	@Test
+	void shouldEvaluateTheOptimizedExpression() throws Exception {
+		var optimized = condition.optimize();
+		assertThat(optimized.getExpression()).isSameAs(condition.getExpression());
+		assertThat(optimized.getEvaluated())
+			.isEqualTo(and(
+				gt(name("timeHour"), constant(7)),
+				lt(name("timeHour"), constant(20L)),
+				contains(name("position"), constant("rat"))));
+		var attributes = new Attributes()
+			.add("timeHour", 10)
+			.add("position", "Prato");
+		assertThat(condition.evaluate(attributes::name)).isTrue();
+		assertThat(optimized.evaluate(attributes::name)).isTrue();
+	}
+
+	@Test
+	void shouldRaiseTheSameErrorsWhenOptimized() {
+		var undefined = condition(or(eq(name("missing"), constant(1)), constant(true)));
+		AttributesResolver noNames = name -> {
+			throw new UndefinedName(name);
+		};
+		assertThatThrownBy(() -> undefined.evaluate(noNames))
+			.isInstanceOf(UndefinedName.class);
+		assertThatThrownBy(() -> undefined.optimize().evaluate(noNames))
+			.isInstanceOf(UndefinedName.class);
+	}
+
+	@Test
+	void shouldRequireABoolean() {
+		var notBoolean = condition(name("position"));
+		var attributes = new Attributes()
+			.add("position", "Prato");
+		assertThatThrownBy(() -> notBoolean.evaluate(attributes::name))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("not a boolean: Prato");
+	}
+}
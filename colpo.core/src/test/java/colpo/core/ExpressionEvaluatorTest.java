@@ -0,0 +1,108 @@
+package colpo.core;
+
+import static colpo.core.Expressions.add;
+import static colpo.core.Expressions.and;
+import static colpo.core.Expressions.constant;
+import static colpo.core.Expressions.contains;
+import static colpo.core.Expressions.divide;
+import static colpo.core.Expressions.endsWith;
+import static colpo.core.Expressions.eq;
+import static colpo.core.Expressions.ge;
+import static colpo.core.Expressions.gt;
+import static colpo.core.Expressions.le;
+import static colpo.core.Expressions.length;
+import static colpo.core.Expressions.lt;
+import static colpo.core.Expressions.modulo;
+import static colpo.core.Expressions.multiply;
+import static colpo.core.Expressions.name;
+import static colpo.core.Expressions.ne;
+import static colpo.core.Expressions.negate;
+import static colpo.core.Expressions.not;
+import static colpo.core.Expressions.or;
+import static colpo.core.Expressions.startsWith;
+import static colpo.core.Expressions.subtract;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import colpo.core.semantics.UndefinedName;
+
+class ExpressionEvaluatorTest {
+
+	private Attributes attributes = new Attributes()
+		.add("timeHour", 10)
+		.add("position", "Prato")
+		.add("price", 2.5);
+
+	private AttributesResolver resolver = name -> {
+		var value = attributes.name(name);
+		if (value == null) {
+			throw new UndefinedName(name);
+		}
+		return value;
+	};
+
+	@Test
+	void shouldEvaluateNamesAndConstants() throws UndefinedName {
+		assertThat(evaluate(name("timeHour"))).isEqualTo(10);
+		assertThat(evaluate(constant("aValue"))).isEqualTo("aValue");
+		assertThatThrownBy(() -> evaluate(name("company")))
+			.isInstanceOf(UndefinedName.class)
+			.hasMessage("Undefined name: company");
+	}
+
+	@Test
+	void shouldCompare() throws UndefinedName {
+		assertThat(evaluate(gt(name("timeHour"), constant(7)))).isEqualTo(true);
+		assertThat(evaluate(lt(name("timeHour"), constant(7L)))).isEqualTo(false);
+		assertThat(evaluate(ge(name("timeHour"), constant(10.0)))).isEqualTo(true);
+		assertThat(evaluate(le(name("price"), constant(2)))).isEqualTo(false);
+		// numbers are equal independently of their type
+		assertThat(evaluate(eq(name("timeHour"), constant(10L)))).isEqualTo(true);
+		assertThat(evaluate(eq(name("position"), constant("Prato")))).isEqualTo(true);
+		assertThat(evaluate(ne(name("position"), constant("Pisa")))).isEqualTo(true);
+		assertThat(evaluate(lt(constant("Pisa"), name("position")))).isEqualTo(true);
+		assertThatThrownBy(() -> evaluate(lt(name("position"), constant(1))))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("cannot compare Prato and 1");
+	}
+
+	@Test
+	void shouldComputeNumbers() throws UndefinedName {
+		assertThat(evaluate(add(name("timeHour"), constant(1)))).isEqualTo(11L);
+		assertThat(evaluate(subtract(name("timeHour"), constant(1)))).isEqualTo(9L);
+		assertThat(evaluate(multiply(name("timeHour"), name("price")))).isEqualTo(25.0);
+		assertThat(evaluate(divide(name("timeHour"), constant(4)))).isEqualTo(2L);
+		assertThat(evaluate(modulo(name("timeHour"), constant(4)))).isEqualTo(2L);
+		assertThat(evaluate(negate(name("price")))).isEqualTo(-2.5);
+		assertThatThrownBy(() -> evaluate(add(name("timeHour"), constant(true))))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("not a number: true");
+	}
+
+	@Test
+	void shouldComputeStrings() throws UndefinedName {
+		assertThat(evaluate(add(name("position"), constant(1)))).isEqualTo("Prato1");
+		assertThat(evaluate(length(name("position")))).isEqualTo(5L);
+		assertThat(evaluate(contains(name("position"), constant("rat")))).isEqualTo(true);
+		assertThat(evaluate(startsWith(name("position"), constant("Pr")))).isEqualTo(true);
+		assertThat(evaluate(endsWith(name("position"), constant("Pr")))).isEqualTo(false);
+	}
+
+	@Test
+	void shouldShortCircuit() throws UndefinedName {
+		assertThat(evaluate(and(constant(false), name("company")))).isEqualTo(false);
+		assertThat(evaluate(or(constant(true), name("company")))).isEqualTo(true);
+		assertThat(evaluate(and(constant(true), not(constant(false))))).isEqualTo(true);
+		assertThatThrownBy(() -> evaluate(and(constant(true), name("company"))))
+			.isInstanceOf(UndefinedName.class);
+		assertThatThrownBy(() -> evaluate(or(constant(false), name("position"))))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("not a boolean: Prato");
+	}
+
+	private Object evaluate(Expression expression) throws UndefinedName {
+		return ExpressionEvaluator.evaluate(expression, resolver);
+	}
+}
@@ -0,0 +1,117 @@
+package colpo.core;
+
+import static colpo.core.Expressions.add;
+import static colpo.core.Expressions.and;
+import static colpo.core.Expressions.constant;
+import static colpo.core.Expressions.contains;
+import static colpo.core.Expressions.divide;
+import static colpo.core.Expressions.eq;
+import static colpo.core.Expressions.gt;
+import static colpo.core.Expressions.lt;
+import static colpo.core.Expressions.name;
+import static colpo.core.Expressions.not;
+import static colpo.core.Expressions.or;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ExpressionOptimizerTest {
+
+	@Test
+	void shouldFoldConstants() {
+		assertThat(ExpressionOptimizer.optimize(add(constant(1), constant(2))))
+			.isEqualTo(constant(3L));
+		assertThat(ExpressionOptimizer.optimize(gt(name("timeHour"), add(constant(5), constant(2)))))
+			.isEqualTo(gt(name("timeHour"), constant(7L)));
+		assertThat(ExpressionOptimizer.optimize(not(eq(constant("a"), constant("b")))))
+			.isEqualTo(constant(true));
+	}
+
+	@Test
+	void shouldNotFoldErrors() {
+		var division = divide(constant(1), constant(0));
+		assertThat(ExpressionOptimizer.optimize(division))
+			.isEqualTo(division);
+	}
+
+	@Test
+	void shouldSimplifyConnectives() {
+		assertThat(ExpressionOptimizer.optimize(
+				and(eq(name("timeHour"), constant(7)), eq(constant(1), constant(2))),
+				Set.of("timeHour")))
+			.isEqualTo(constant(false));
+		assertThat(ExpressionOptimizer.optimize(
+				or(eq(name("timeHour"), constant(7)), eq(constant(1), constant(1))),
+				Set.of("timeHour")))
+			.isEqualTo(constant(true));
+		assertThat(ExpressionOptimizer.optimize(
+				and(gt(name("timeHour"), constant(7)), eq(constant(1), constant(1)))))
+			.isEqualTo(and(gt(name("timeHour"), constant(7))));
+		assertThat(ExpressionOptimizer.optimize(and(constant(true), constant(true))))
+			.isEqualTo(constant(true));
+		assertThat(ExpressionOptimizer.optimize(or(constant(false))))
+			.isEqualTo(constant(false));
+		// the operands after the deciding one are never evaluated
+		assertThat(ExpressionOptimizer.optimize(
+				or(constant(true), eq(name("missing"), constant(1)))))
+			.isEqualTo(constant(true));
+	}
+
+	@Test
+	void shouldKeepTheOperandsThatCanFail() {
+		// undefined names, or values of the wrong type
+		var undefined = eq(name("missing"), constant(1));
+		var wrongType = gt(name("timeHour"), constant(7));
+		assertThat(ExpressionOptimizer.optimize(or(undefined, constant(true))))
+			.isEqualTo(or(undefined, constant(true)));
+		assertThat(ExpressionOptimizer.optimize(
+				and(wrongType, eq(name("timeHour"), constant(7)), constant(false)),
+				Set.of("timeHour")))
+			.isEqualTo(and(wrongType, constant(false)));
+		assertThat(ExpressionOptimizer.optimize(or(contains(name("position"), name("city")), undefined)))
+			.isEqualTo(or(contains(name("position"), name("city")), undefined));
+	}
+
+	@Test
+	void shouldOrderOperandsThatCannotFailCheapestFirst() {
+		var bound = Set.of("position", "city", "timeHour");
+		var expensive = eq(name("position"), name("city"));
+		var cheap = eq(name("timeHour"), constant(7));
+		var negated = not(eq(name("timeHour"), constant(20)));
+		var canFail = gt(name("timeHour"), constant(7));
+		assertThat(ExpressionOptimizer.optimize(and(expensive, cheap, negated), bound))
+			.isEqualTo(and(cheap, negated, expensive));
+		// nested connectives of the same kind are flattened
+		assertThat(ExpressionOptimizer.optimize(or(expensive, or(cheap, negated)), bound))
+			.isEqualTo(or(cheap, negated, expensive));
+		// operands are not moved across one that can fail
+		assertThat(ExpressionOptimizer.optimize(and(expensive, canFail, cheap), bound))
+			.isEqualTo(and(expensive, canFail, cheap));
+		// without knowing that the names are bound
+		assertThat(ExpressionOptimizer.optimize(and(expensive, cheap)))
+			.isEqualTo(and(expensive, cheap));
+		assertThat(ExpressionOptimizer.cost(expensive))
+			.isGreaterThan(ExpressionOptimizer.cost(cheap));
+	}
+
+	@Test
+	void shouldOrderAllTheOperandsOfAConditionCheapestFirst() {
+		// an error in a condition denies exactly as false
+		var expensive = contains(name("position"), name("city"));
+		var cheap = gt(name("timeHour"), constant(7));
+		assertThat(ExpressionOptimizer.optimizeCondition(
+				and(expensive, and(cheap, lt(name("timeHour"), constant(20))))))
+			.isEqualTo(and(cheap, lt(name("timeHour"), constant(20)), expensive));
+		assertThat(ExpressionOptimizer.optimizeCondition(and(expensive, cheap, constant(false))))
+			.isEqualTo(constant(false));
+		assertThat(ExpressionOptimizer.optimizeCondition(and(cheap, constant("a"))))
+			.isEqualTo(constant(false));
+		// only the ones of a top-level "and"
+		assertThat(ExpressionOptimizer.optimizeCondition(or(expensive, cheap)))
+			.isEqualTo(or(expensive, cheap));
+		assertThat(ExpressionOptimizer.optimizeCondition(not(and(expensive, cheap))))
+			.isEqualTo(not(and(expensive, cheap)));
+	}
+}
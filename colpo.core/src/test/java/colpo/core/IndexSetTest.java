@@ -0,0 +1,66 @@
+package colpo.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+class IndexSetTest {
+
+	@Test
+	void shouldBeSortedWithoutDuplicates() {
+		var indexSet = IndexSet.of(3, 1, 2, 3);
+		assertThat(indexSet.size()).isEqualTo(3);
+		assertThat(indexSet.get(0)).isEqualTo(1);
+		assertThat(indexSet.get(2)).isEqualTo(3);
+		assertThat(indexSet).hasToString("[1, 2, 3]");
+		var bitSet = new BitSet();
+		bitSet.set(3);
+		bitSet.set(1);
+		bitSet.set(2);
+		assertThat(IndexSet.of(bitSet))
+			.isEqualTo(indexSet)
+			.hasSameHashCodeAs(indexSet);
+		assertThat(IndexSet.of(new BitSet())).isSameAs(IndexSet.EMPTY);
+	}
+
+	@Test
+	void shouldRemoveAnIndex() {
+		var indexSet = IndexSet.of(1, 2, 3);
+		assertThat(indexSet.without(2)).isEqualTo(IndexSet.of(1, 3));
+		assertThat(indexSet.without(4)).isSameAs(indexSet);
+		assertThat(IndexSet.of(1).without(1).isEmpty()).isTrue();
+		// the original set is unchanged
+		assertThat(indexSet.contains(2)).isTrue();
+	}
+
+	@Test
+	void shouldTellWhetherItContainsOtherIndexes() {
+		assertThat(IndexSet.of(1, 2).containsOtherThan(1)).isTrue();
+		assertThat(IndexSet.of(1).containsOtherThan(2)).isTrue();
+		assertThat(IndexSet.of(1).containsOtherThan(1)).isFalse();
+		assertThat(IndexSet.EMPTY.containsOtherThan(1)).isFalse();
+	}
+
+	@Test
+	void shouldIntersect() {
+		assertThat(IndexSet.of(1, 2, 4, 5).intersection(IndexSet.of(2, 3, 5, 6)))
+			.isEqualTo(IndexSet.of(2, 5));
+		assertThat(IndexSet.of(1, 2).intersection(IndexSet.of(3)))
+			.isSameAs(IndexSet.EMPTY);
+	}
+
+	@Test
+	void shouldIterateWithoutBoxing() {
+		var indexSet = IndexSet.of(1, 2, 3);
+		var visited = new ArrayList<Integer>();
+		indexSet.forEach(visited::add);
+		assertThat(visited).containsExactly(1, 2, 3);
+		assertThat(indexSet.anyMatch(i -> i > 2)).isTrue();
+		assertThat(indexSet.anyMatch(i -> i > 3)).isFalse();
+		assertThat(indexSet.allMatch(i -> i > 0)).isTrue();
+		assertThat(indexSet.allMatch(i -> i > 1)).isFalse();
+	}
+}
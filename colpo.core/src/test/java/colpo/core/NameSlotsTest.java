@@ -0,0 +1,30 @@
+package colpo.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class NameSlotsTest {
+
+	@Test
+	void shouldBindNamesToTheirIds() {
+		var slots = NameSlots.of(List.of("aName", "aName1"));
+		assertThat(slots.size()).isEqualTo(2);
+		assertThat(slots.idOf("aName")).isEqualTo(AttributeNames.lookup("aName"));
+		// not the same string instance
+		assertThat(slots.idOf(new String("aName1"))).isEqualTo(AttributeNames.lookup("aName1"));
+		var attributes = new Attributes().add("aName1", "aValue1");
+		assertThat(attributes.valueOf(slots.idOf("aName1"))).isEqualTo("aValue1");
+	}
+
+	@Test
+	void shouldLookUpNamesNotBound() {
+		new Attributes().add("aBoundLaterName", "aValue");
+		assertThat(NameSlots.NONE.idOf("aBoundLaterName"))
+			.isEqualTo(AttributeNames.lookup("aBoundLaterName"));
+		assertThat(NameSlots.NONE.idOf("a name never used")).isEqualTo(-1);
+		assertThat(NameSlots.of(List.of())).isSameAs(NameSlots.NONE);
+	}
+}
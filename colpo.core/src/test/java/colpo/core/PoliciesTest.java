@@ -0,0 +1,80 @@
+package colpo.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Policies.PolicyData;
+
+class PoliciesTest {
+
+	private Policies policies;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies()
+			.add(new Policy(new Attributes().add("name", "Alice"), new Rules()))
+			.add(new Policy(new Attributes().add("role", "Provider"), new Rules()))
+			.add(new Policy(new Attributes().add("name", "Bob").add("role", "Provider"), new Rules()));
+	}
+
+	@Test
+	void shouldGetMatchingPolicyDataInIndexOrder() {
+		assertThat(policies.getPolicyData(new Attributes().add("role", "Provider")))
+			.extracting(PolicyData::index)
+			.containsExactly(2, 3);
+		assertThat(policies.getPolicyData(new Attributes()))
+			.extracting(PolicyData::index)
+			.containsExactly(1, 2, 3);
+	}
+
+	@Test
+	void shouldUpdateTheIndexWhenAdding() {
+		policies.add(new Policy(new Attributes().add("name", "Alice"), new Rules()));
+		assertThat(policies.getPolicyData(new Attributes().add("name", "Alice")))
+			.extracting(PolicyData::index)
+			.containsExactly(1, 4);
+	}
+
+	@Test
+	void shouldUpdateTheIndexWhenAPartyIsModified() {
+		var version = policies.getVersion();
+		policies.getByIndex(1).party().add("role", "Provider");
+		assertThat(policies.getPolicyData(new Attributes().add("role", "Provider")))
+			.extracting(PolicyData::index)
+			.containsExactly(1, 2, 3);
+		assertThat(policies.getVersion()).isNotEqualTo(version);
+	}
+
+	@Test
+	void snapshotShouldNotBeModifiable() {
+		var snapshot = policies.snapshot();
+		var policy = new Policy(new Attributes(), new Rules());
+		assertThatThrownBy(() -> snapshot.add(policy))
+			.isInstanceOf(UnsupportedOperationException.class)
+			.hasMessage("cannot add a policy to a snapshot");
+		assertThat(snapshot.getPolicyData(new Attributes().add("role", "Provider")))
+			.extracting(PolicyData::index)
+			.containsExactly(2, 3);
+		// the original policies are still modifiable
+		policies.add(policy);
+	}
+
+	@Test
+	void snapshotRulesShouldNotBeModifiable() {
+		var snapshot = policies.snapshot();
+		var rule = new Rule();
+		var snapshotRules = snapshot.getByIndex(1).rules();
+		assertThatThrownBy(() -> snapshotRules.add(rule))
+			.isInstanceOf(UnsupportedOperationException.class)
+			.hasMessage("cannot add a rule to a snapshot");
+		var version = snapshot.getVersion();
+		// the rules of the original policies are still modifiable
+		policies.getByIndex(1).rules().add(rule);
+		assertThat(snapshot.getByIndex(1).rules().getRuleData()).isEmpty();
+		assertThat(snapshot.getVersion()).isEqualTo(version);
+		assertThat(snapshot.getByIndex(1).party().isFrozen()).isTrue();
+	}
+}
@@ -102,4 +102,25 @@ class RequestTest {
 			.hasSameHashCodeAs(r2)
 			.isNotEqualTo(r3);
 	}
+
+	@Test
+	void testCanonical() {
+		var request = new Request(
+			index(1),
+			new Attributes()
+				.add("aName", "aValue"),
+			anySuchThat(new Attributes()
+				.add("firstName", "Bob"))
+		);
+		var canonical = request.canonical();
+		assertThat(canonical)
+			.isEqualTo(request)
+			.hasSameHashCodeAs(request)
+			.isNotSameAs(request);
+		assertThat(canonical.resource().isFrozen()).isTrue();
+		assertThat(canonical.from().getAttributes().isFrozen()).isTrue();
+		assertThat(canonical.canonical()).isSameAs(canonical);
+		assertThat(new Request(null, null, null).canonical())
+			.isEqualTo(new Request(null, null, null));
+	}
 }
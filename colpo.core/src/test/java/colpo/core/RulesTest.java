@@ -0,0 +1,58 @@
+package colpo.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Rules.RuleData;
+
+class RulesTest {
+
+	private Rules rules;
+
+	@BeforeEach
+	void init() {
+		rules = new Rules()
+			.add(new Rule(new Attributes().add("type", "addrInfo").add("city", "Lucca")))
+			.add(new Rule())
+			.add(new Rule(new Attributes().add("type", "addrInfo").add("city", "Prato")))
+			.add(new Rule(new Attributes().add("type", "paper")));
+	}
+
+	@Test
+	void shouldGetCandidateRulesInIndexOrder() {
+		assertThat(rules.getRuleData(new Attributes().add("city", "Prato")))
+			.extracting(RuleData::index)
+			.containsExactly(2, 3);
+		assertThat(rules.getRuleData(new Attributes().add("type", "addrInfo")))
+			.extracting(RuleData::index)
+			.containsExactly(1, 2, 3);
+		assertThat(rules.getRuleData(new Attributes().add("type", "printer")))
+			.extracting(RuleData::index)
+			.containsExactly(2);
+	}
+
+	@Test
+	void shouldGetAllRulesWithEmptyResource() {
+		assertThat(rules.getRuleData(new Attributes()))
+			.extracting(RuleData::index)
+			.containsExactly(1, 2, 3, 4);
+	}
+
+	@Test
+	void shouldUpdateTheIndexWhenAResourceIsModified() {
+		var policies = new Policies()
+			.add(new Policy(new Attributes(), rules));
+		var version = policies.getVersion();
+		var white = new Attributes().add("color", "white");
+		assertThat(rules.getRuleData(white))
+			.extracting(RuleData::index)
+			.containsExactly(2);
+		rules.getRuleData().findFirst().orElseThrow().rule().getResource().add("color", "white");
+		assertThat(rules.getRuleData(white))
+			.extracting(RuleData::index)
+			.containsExactly(1, 2);
+		assertThat(policies.getVersion()).isNotEqualTo(version);
+	}
+}
@@ -0,0 +1,156 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.AndExchange;
+import colpo.core.Attributes;
+import colpo.core.CostModel;
+import colpo.core.OrExchange;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+
+class CheapestSolutionSearchTest {
+
+	private Policies policies;
+	private Semantics semantics;
+
+	/**
+	 * Ink costs 5, anything else costs 1.
+	 */
+	private static final CostModel EXPENSIVE_INK =
+		request -> request.resource().equals(ink()) ? 5 : 1;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies();
+		semantics = new Semantics(policies);
+	}
+
+	@Test
+	void shouldFindTheCheapestAlternative() {
+		// Alice gives paper if the requester gives her ink or toner,
+		// or if the requester gives her both ink and toner, which Bob gives
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new AndExchange(
+							new SingleExchange(me(), ink(), requester()),
+							new SingleExchange(me(), toner(), requester()))))
+					.add(new Rule(paper(),
+						new OrExchange(
+							new SingleExchange(me(), ink(), requester()),
+							new SingleExchange(me(), toner(), requester()))))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink()))
+					.add(new Rule(toner()))));
+		var request = new Request(index(2), paper(), index(1));
+		assertThat(semantics.evaluate(request).getRequests())
+			.map(Object::toString)
+			.containsExactly(
+				"Request[requester=2, resource=[(type : paper)], from=1]",
+				"Request[requester=1, resource=[(type : ink)], from=2]",
+				"Request[requester=1, resource=[(type : toner)], from=2]");
+		// the first one among the ones with the fewest requests
+		assertThat(semantics.cheapest(request, CostModel.requestCount()).getRequests())
+			.map(Object::toString)
+			.containsExactly(
+				"Request[requester=2, resource=[(type : paper)], from=1]",
+				"Request[requester=1, resource=[(type : ink)], from=2]");
+		assertThat(semantics.cheapest(request, EXPENSIVE_INK).getRequests())
+			.map(Object::toString)
+			.containsExactly(
+				"Request[requester=2, resource=[(type : paper)], from=1]",
+				"Request[requester=1, resource=[(type : toner)], from=2]");
+		assertThat(semantics.cheapest(new Request(index(1), paper(), index(2)), EXPENSIVE_INK)
+				.isPermitted())
+			.isFalse();
+	}
+
+	@Test
+	void shouldFindTheCheapestParty() {
+		// the higher the index of the party giving ink, the higher the cost
+		for (int i = 1; i <= 5; i++) {
+			policies.add(new Policy(new Attributes().add("id", i),
+				new Rules()
+					.add(new Rule(ink(),
+						new SingleExchange(me(), paper(), requester())))
+					.add(new Rule(paper()))));
+		}
+		CostModel byParty = request -> request.from().getIndex();
+		var result = semantics.cheapest(new Request(index(3), ink(), anySuchThat(new Attributes())), byParty);
+		assertThat(result.getRequests())
+			.map(Object::toString)
+			.containsExactly(
+				"Request[requester=3, resource=[(type : ink)], from=1]",
+				"Request[requester=1, resource=[(type : paper)], from=3]");
+		assertThat(byParty.total(result)).isEqualTo(4);
+	}
+
+	@Test
+	void negativeCostsAreRejected() {
+		policies.add(new Policy(new Attributes(), new Rules().add(new Rule(ink()))))
+			.add(new Policy(new Attributes(), new Rules()));
+		assertThatThrownBy(() -> semantics.cheapest(new Request(index(2), ink(), index(1)), request -> -1))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("negative cost -1.0 of Request[requester=2, resource=[(type : ink)], from=1]");
+	}
+
+	@Test
+	void sameCostAsTheCheapestOfAllTheSolutions() {
+		var random = new Random(42);
+		CostModel costModel = request -> (request.requester().getIndex() * 7 + request.from().getIndex()) % 5;
+		for (int scenario = 0; scenario < 30; scenario++) {
+			var policies = RandomPolicies.policies(random);
+			var semantics = new Semantics(policies)
+				.traceSink(TraceSink.NO_OP);
+			for (var request : RandomPolicies.requests()) {
+				var description = "scenario " + scenario + ": " + request + "\n" + policies.description();
+				var cheapest = semantics.cheapest(request, costModel);
+				var solutions = semantics.solutions(request).toList();
+				assertThat(cheapest.isPermitted()).as(description)
+					.isEqualTo(!solutions.isEmpty());
+				if (cheapest.isPermitted()) {
+					// solutions with the same requests are enumerated once, maybe
+					// with a request collected more times
+					assertThat(costModel.total(cheapest)).as(description)
+						.isLessThanOrEqualTo(solutions.stream().mapToDouble(costModel::total).min().getAsDouble());
+					assertThat(solutions).as(description)
+						.anyMatch(solution -> Set.copyOf(solution.getRequests())
+							.equals(Set.copyOf(cheapest.getRequests())));
+				}
+			}
+		}
+	}
+
+	private static Attributes paper() {
+		return new Attributes().add("type", "paper");
+	}
+
+	private static Attributes ink() {
+		return new Attributes().add("type", "ink");
+	}
+
+	private static Attributes toner() {
+		return new Attributes().add("type", "toner");
+	}
+}
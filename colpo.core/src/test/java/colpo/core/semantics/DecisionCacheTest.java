@@ -0,0 +1,181 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.index;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Attributes;
+import colpo.core.ContextHandler;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.semantics.DecisionCache.Decision;
+
+class DecisionCacheTest {
+
+	private Semantics semantics;
+	private Policies policies;
+	private DecisionCache cache;
+	private ContextHandler contextHandler;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies()
+			.add(new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()))
+			.add(new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(
+						new Attributes().add("paper", "white"),
+						new ExpressionWithDescription(
+							c -> c.name("current/city").equals("Firenze"),
+							"current/city = Firenze")))))
+			.add(new Policy( // index 3
+				new Attributes().add("name", "Carl"),
+				new Rules()
+					.add(new Rule(
+						new Attributes().add("paper", "black")))));
+		contextHandler = new ContextHandler()
+			.add(2, "current/city", "Pisa");
+		semantics = new Semantics(policies)
+			.contextHandler(contextHandler)
+			.decisionCache(2);
+		cache = semantics.getDecisionCache();
+	}
+
+	@Test
+	void shouldRejectNonPositiveSize() {
+		assertThatThrownBy(() -> semantics.decisionCache(0))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("maximum size must be positive: 0");
+	}
+
+	@Test
+	void shouldCacheDecisionsAndTraces() {
+		var result = semantics.evaluate(blackFrom3());
+		var trace = semantics.getTrace().toString();
+		var cachedResult = semantics.evaluate(blackFrom3());
+		assertTrue(cachedResult.isPermitted());
+		assertThat(cachedResult.getRequests())
+			.containsExactlyElementsOf(result.getRequests());
+		assertEquals(trace, semantics.getTrace().toString());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	void shouldEvictLeastRecentlyUsed() {
+		semantics.evaluate(blackFrom3());
+		semantics.evaluate(whiteFrom2());
+		semantics.evaluate(blackFrom3());
+		semantics.evaluate(new Request(index(2), new Attributes(), index(3)));
+		assertEquals(2, cache.size());
+		semantics.evaluate(blackFrom3());
+		assertEquals(2, cache.getHits());
+		semantics.evaluate(whiteFrom2());
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+	@Test
+	void shouldInvalidateWhenPoliciesChange() {
+		semantics.evaluate(blackFrom3());
+		policies.add(new Policy(new Attributes().add("name", "Dan"), new Rules()));
+		semantics.evaluate(blackFrom3());
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	void shouldInvalidateWhenRulesChange() {
+		assertFalse(semantics.evaluate(whiteFrom2()).isPermitted());
+		policies.getByIndex(2).rules().add(new Rule(new Attributes().add("paper", "white")));
+		assertTrue(semantics.evaluate(whiteFrom2()).isPermitted());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	void shouldInvalidateWhenRequestComplyIsReplaced() {
+		semantics.evaluate(blackFrom3());
+		semantics.requestComply((newRequest, existingRequest) -> false);
+		semantics.evaluate(blackFrom3());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	void shouldCacheOnlyTheTraceOfTheEvaluation() {
+		var trace = new Trace();
+		trace.add(() -> "previous");
+		semantics.evaluate(blackFrom3(), trace);
+		semantics.evaluate(blackFrom3());
+		assertEquals(1, cache.getHits());
+		assertEquals(trace.toString().replace("previous\n", ""), semantics.getTrace().toString());
+	}
+
+	@Test
+	void shouldInvalidateWhenUsedContextChanges() {
+		assertFalse(semantics.evaluate(whiteFrom2()).isPermitted());
+		semantics.evaluate(blackFrom3());
+		// the context of party 2 was used only for the first request
+		contextHandler.add(2, "current/region", "Toscana");
+		semantics.evaluate(blackFrom3());
+		assertEquals(1, cache.getHits());
+		assertFalse(semantics.evaluate(whiteFrom2()).isPermitted());
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	@Test
+	void shouldInvalidateWhenContextHandlerIsReplaced() {
+		assertFalse(semantics.evaluate(whiteFrom2()).isPermitted());
+		semantics.contextHandler(new ContextHandler()
+			.add(2, "current/city", "Firenze"));
+		assertTrue(semantics.evaluate(whiteFrom2()).isPermitted());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	void shouldNotServeDecisionsOnOtherPoliciesWithTheSameVersion() {
+		// Carl does not give black paper in these policies
+		var otherPolicies = new Policies()
+			.add(new Policy(new Attributes().add("name", "Alice"), new Rules()))
+			.add(new Policy(new Attributes().add("name", "Bob"), new Rules()))
+			.add(new Policy(new Attributes().add("name", "Carl"), new Rules()));
+		var compiled = policies.compile();
+		var otherCompiled = otherPolicies.compile();
+		assertEquals(compiled.getVersion(), otherCompiled.getVersion());
+		var decision = new Decision(Result.permitted(), "", Map.of());
+		assertThat(cache.get(blackFrom3(), compiled, contextHandler)).isNull();
+		cache.put(blackFrom3(), compiled, decision);
+		assertThat(cache.get(blackFrom3(), compiled, contextHandler)).isSameAs(decision);
+		assertThat(cache.get(blackFrom3(), otherCompiled, contextHandler)).isNull();
+		// each Semantics has its own cache
+		var other = new Semantics(otherPolicies)
+			.contextHandler(contextHandler)
+			.decisionCache(2);
+		assertThat(other.getDecisionCache()).isNotSameAs(cache);
+		assertFalse(other.evaluate(blackFrom3()).isPermitted());
+	}
+
+	private Request whiteFrom2() {
+		return new Request(index(1), new Attributes().add("paper", "white"), index(2));
+	}
+
+	private Request blackFrom3() {
+		return new Request(index(1), new Attributes().add("paper", "black"), index(3));
+	}
+}
@@ -0,0 +1,231 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Attributes;
+import colpo.core.ContextHandler;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.OrExchange;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+
+class FixpointSemanticsTest {
+
+	private Policies policies;
+	private FixpointSemantics semantics;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies();
+		semantics = new FixpointSemantics(policies);
+	}
+
+	@Test
+	void shouldPermitCyclicExchanges() {
+		// Alice gives paper if Bob gives her ink, and vice versa
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new SingleExchange(me(), ink(), requester())))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink(),
+						new SingleExchange(me(), paper(), requester())))))
+		.add(
+			new Policy( // index 3
+				new Attributes().add("name", "Carl"),
+				new Rules()
+					.add(new Rule(ink(),
+						new SingleExchange(me(), new Attributes().add("type", "toner"),
+							requester())))));
+		assertThat(semantics.getPermitted())
+			.map(Object::toString)
+			.containsExactlyInAnyOrder(
+				"Request[requester=2, resource=[(type : paper)], from=1]",
+				"Request[requester=1, resource=[(type : ink)], from=2]");
+		assertThat(semantics.isPermitted(new Request(index(2), paper(), index(1)))).isTrue();
+		assertThat(semantics.isPermitted(new Request(index(3), paper(), index(1)))).isFalse();
+		assertThat(semantics.isPermitted(new Request(index(1), ink(),
+			anySuchThat(new Attributes())))).isTrue();
+		assertThat(semantics.isPermitted(new Request(index(1), ink(),
+			allSuchThat(new Attributes())))).isFalse();
+		assertThat(semantics.isPermitted(new Request(index(1), ink(),
+			anySuchThat(new Attributes().add("name", "Ed"))))).isFalse();
+		// no one gives toner
+		assertThat(semantics.isPermitted(new Request(index(1), new Attributes().add("type", "toner"),
+			index(3)))).isFalse();
+	}
+
+	@Test
+	void shouldEvaluateRequestsForOtherResources() {
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new SingleExchange(me(), ink(), requester())))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(new Attributes().add("type", "ink")))));
+		// ink is in the relation, paper is not
+		assertThat(semantics.getPermitted())
+			.map(Object::toString)
+			.containsExactly("Request[requester=1, resource=[(type : ink)], from=2]");
+		assertThat(semantics.isPermitted(new Request(index(2), paper(), index(1)))).isTrue();
+		assertThat(semantics.isPermitted(new Request(index(2), new Attributes().add("type", "toner"),
+			index(1)))).isFalse();
+	}
+
+	@Test
+	void shouldComputeTheRelationAgainWhenPoliciesOrContextChange() {
+		var contextHandler = new ContextHandler();
+		semantics.contextHandler(contextHandler);
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()));
+		var request = new Request(index(1), ink(), anySuchThat(new Attributes().add("name", "Bob")));
+		assertThat(semantics.isPermitted(request)).isFalse();
+		policies.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink(),
+						new ExpressionWithDescription(
+							resolver -> resolver.name("stock").equals("available"),
+							"stock = available")))))
+			.add(
+			new Policy( // index 3
+				new Attributes().add("name", "Carl"),
+				new Rules()
+					.add(new Rule(paper(),
+						new SingleExchange(me(), ink(), anySuchThat(new Attributes()))))));
+		assertThat(semantics.isPermitted(request)).isFalse();
+		contextHandler.add(2, "stock", "available");
+		assertThat(semantics.isPermitted(request)).isTrue();
+		assertThat(semantics.isPermitted(new Request(index(1), paper(), index(3)))).isTrue();
+	}
+
+	@Test
+	void exchangeRequestsDoNotComplyWithRequestsNotBeingEvaluated() {
+		var located = new Attributes().add("type", "a").add("city", "b");
+		var a = new Attributes().add("type", "a");
+		var q = new Attributes().add("type", "q");
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", 1),
+				new Rules()
+					.add(new Rule(located,
+						new ExpressionWithDescription(
+							resolver -> "b".equals(resolver.name("city")),
+							"city = b")))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", 2),
+				new Rules()
+					.add(new Rule(q,
+						new SingleExchange(me(), a, anySuchThat(new Attributes().add("name", 1)))))))
+		.add(
+			new Policy( // index 3
+				new Attributes().add("name", 3),
+				new Rules()
+					// only so that both resources are exchanged
+					.add(new Rule(paper(),
+						new OrExchange(
+							new SingleExchange(me(), q, requester()),
+							new SingleExchange(me(), located, requester()))))));
+		// the request for "a" from 1 does not define the city,
+		// even if the request for "a" in "b" is permitted
+		var request = new Request(index(3), q, index(2));
+		assertThat(new Semantics(policies).evaluate(request).isPermitted()).isFalse();
+		assertThat(semantics.isPermitted(request)).isFalse();
+		assertThat(semantics.isPermitted(new Request(index(2), located, index(1)))).isTrue();
+	}
+
+	@Test
+	void exchangeRequestsComplyWithTheRequestBeingEvaluated() {
+		var a4 = new Attributes().add("type", "paper").add("size", "a4");
+		// Alice gives A4 paper if Bob gives her ink; Bob gives ink if Alice
+		// gives him paper, which she only gives of a size
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(a4,
+						new ExpressionWithDescription(
+							resolver -> "a4".equals(resolver.name("size")),
+							"size = a4"),
+						new SingleExchange(me(), ink(), requester())))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink(),
+						new SingleExchange(me(), paper(), requester())))))
+		.add(
+			new Policy( // index 3
+				new Attributes().add("name", "Carl"),
+				new Rules()
+					// only so that A4 paper is exchanged
+					.add(new Rule(new Attributes().add("type", "toner"),
+						new SingleExchange(me(), a4, requester())))));
+		var goalDirected = new Semantics(policies);
+		// the request for paper complies with the request for A4 paper
+		// only when evaluating the latter
+		var a4Request = new Request(index(2), a4, index(1));
+		var inkRequest = new Request(index(1), ink(), index(2));
+		assertThat(goalDirected.evaluate(a4Request).isPermitted()).isTrue();
+		assertThat(semantics.isPermitted(a4Request)).isTrue();
+		assertThat(goalDirected.evaluate(inkRequest).isPermitted()).isFalse();
+		assertThat(semantics.isPermitted(inkRequest)).isFalse();
+		assertThat(semantics.getPermitted())
+			.map(Object::toString)
+			.containsExactly("Request[requester=2, resource=[(type : paper), (size : a4)], from=1]");
+	}
+
+	@Test
+	void sameResultsAsTheGoalDirectedSemantics() {
+		var random = new Random(42);
+		for (int scenario = 0; scenario < 30; scenario++) {
+			var policies = RandomPolicies.policies(random);
+			var expected = new Semantics(policies)
+				.traceSink(TraceSink.NO_OP);
+			var actual = new FixpointSemantics(policies);
+			for (var request : RandomPolicies.requests()) {
+				assertThat(actual.isPermitted(request))
+					.as("scenario " + scenario + ": " + request + "\n" + policies.description())
+					.isEqualTo(expected.evaluate(request).isPermitted());
+			}
+			assertThat(actual.getPermitted())
+				.allMatch(request -> expected.evaluate(request).isPermitted());
+		}
+	}
+
+	private static Attributes paper() {
+		return new Attributes().add("type", "paper");
+	}
+
+	private static Attributes ink() {
+		return new Attributes().add("type", "ink");
+	}
+}
@@ -0,0 +1,105 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.index;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.AttributeMatcher;
+import colpo.core.Attributes;
+import colpo.core.DefaultRequestComply;
+import colpo.core.Request;
+
+class InProgressRequestsTest {
+
+	private List<Request> tested;
+	private InProgressRequests requests;
+
+	private Request r12 = new Request(index(1), new Attributes().add("name", "value"), index(2));
+	private Request r13 = new Request(index(1), new Attributes().add("name", "value"), index(3));
+	private Request r21 = new Request(index(2), new Attributes().add("name", "value"), index(1));
+
+	@BeforeEach
+	void init() {
+		tested = new ArrayList<>();
+		var defaultComply = new DefaultRequestComply(new AttributeMatcher());
+		requests = new InProgressRequests(new DefaultRequestComply(new AttributeMatcher()) {
+			@Override
+			public boolean test(Request newRequest, Request existingRequest) {
+				tested.add(existingRequest);
+				return defaultComply.test(newRequest, existingRequest);
+			}
+		});
+		requests.add(r12);
+		requests.add(r13);
+		requests.add(r21);
+	}
+
+	@Test
+	void shouldOnlyTestRequestsOfTheSamePartition() {
+		assertThat(requests.anyCompliant(new Request(index(1), new Attributes(), index(3))))
+			.isTrue();
+		assertThat(tested).containsExactly(r13);
+		tested.clear();
+		assertThat(requests.anyCompliant(new Request(index(3), new Attributes(), index(1))))
+			.isFalse();
+		assertThat(tested).isEmpty();
+	}
+
+	@Test
+	void shouldNotFindRemovedRequests() {
+		var newRequest = new Request(index(1), new Attributes(), index(2));
+		requests.remove(r12);
+		assertThat(requests.anyCompliant(newRequest)).isFalse();
+		assertThat(requests.size()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldRecordTheSearchedPartitions() {
+		var outer = requests.track();
+		requests.anyCompliant(new Request(index(1), new Attributes(), index(3)));
+		var inner = requests.track();
+		requests.anyCompliant(new Request(index(3), new Attributes(), index(1)));
+		var searchedByInner = requests.untrack(inner);
+		assertThat(searchedByInner).hasSize(1);
+		var searchedByOuter = requests.untrack(outer);
+		assertThat(searchedByOuter).hasSize(2).containsAll(searchedByInner);
+		var snapshot = requests.snapshot(searchedByOuter);
+		assertThat(requests.hasSnapshot(snapshot)).isTrue();
+		// a request in a partition that has not been searched
+		requests.add(new Request(index(2), new Attributes(), index(3)));
+		assertThat(requests.hasSnapshot(snapshot)).isTrue();
+		requests.remove(r13);
+		assertThat(requests.hasSnapshot(snapshot)).isFalse();
+		requests.add(r13);
+		assertThat(requests.hasSnapshot(snapshot)).isTrue();
+		// a request in the searched partition that was empty
+		requests.add(new Request(index(3), new Attributes(), index(1)));
+		assertThat(requests.hasSnapshot(snapshot)).isFalse();
+	}
+
+	@Test
+	void copiesAreIndependent() {
+		var copy = requests.copy();
+		copy.remove(r12);
+		var newRequest = new Request(index(1), new Attributes(), index(2));
+		assertThat(requests.anyCompliant(newRequest)).isTrue();
+		assertThat(copy.anyCompliant(newRequest)).isFalse();
+	}
+
+	@Test
+	void shouldTestAllRequestsWithoutPartitions() {
+		var notPartitioned = new InProgressRequests((newRequest, existingRequest) -> {
+			tested.add(existingRequest);
+			return false;
+		});
+		notPartitioned.add(r12);
+		notPartitioned.add(r21);
+		assertThat(notPartitioned.anyCompliant(r13)).isFalse();
+		assertThat(tested).containsExactly(r12, r21);
+	}
+}
@@ -0,0 +1,96 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Attributes;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+import colpo.core.semantics.Semantics.Engine;
+
+/**
+ * Runs all the tests of {@link SemanticsTest} with the iterative engine:
+ * results and traces must be the same; moreover, compares the two engines
+ * on random policies (see {@link RandomPolicies}).
+ */
+class IterativeSemanticsTest extends SemanticsTest {
+
+	@BeforeEach
+	void iterative() {
+		semantics.engine(Engine.ITERATIVE);
+	}
+
+	@Test
+	void sameResultsAndTracesAsTheRecursiveEngine() {
+		var random = new Random(42);
+		for (int scenario = 0; scenario < 30; scenario++) {
+			var policies = RandomPolicies.policies(random);
+			var recursive = new Semantics(policies)
+				.maxRuleEvaluations(20_000);
+			var iterative = new Semantics(policies)
+				.maxRuleEvaluations(20_000)
+				.engine(Engine.ITERATIVE);
+			for (var request : RandomPolicies.requests()) {
+				var description = "scenario " + scenario + ": " + request +
+					"\n" + policies.description();
+				var expected = recursive.evaluate(request);
+				var actual = iterative.evaluate(request);
+				assertThat(describe(actual)).as(description)
+					.isEqualTo(describe(expected));
+				assertThat(iterative.getTrace()).as(description)
+					.hasToString(recursive.getTrace().toString());
+				recursive.traceSink(TraceSink.NO_OP);
+				iterative.traceSink(TraceSink.NO_OP);
+				assertThat(describe(iterative.evaluate(request))).as(description)
+					.isEqualTo(describe(recursive.evaluate(request)));
+				recursive.traceSink(new Trace());
+				iterative.traceSink(new Trace());
+			}
+		}
+	}
+
+	@Test
+	void deepExchangeChainsDoNotOverflowTheStack() throws InterruptedException {
+		var depth = 2_000;
+		var policies = new Policies();
+		var data = new Attributes().add("type", "data");
+		// party i gives data if party i + 1 gives data to her
+		for (int i = 1; i <= depth; i++) {
+			policies.add(new Policy(new Attributes().add("id", i),
+				new Rules()
+					.add(i == depth ?
+						new Rule(data) :
+						new Rule(data, new SingleExchange(me(), data,
+							anySuchThat(new Attributes().add("id", i + 1)))))));
+		}
+		var semantics = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP)
+			.engine(Engine.ITERATIVE);
+		var result = new AtomicReference<Result>();
+		var thread = new Thread(null,
+			() -> result.set(semantics.evaluate(new Request(index(depth), data,
+				anySuchThat(new Attributes().add("id", 1))))),
+			"small stack", 256 * 1024);
+		thread.start();
+		thread.join();
+		assertThat(result.get().isPermitted()).isTrue();
+		assertThat(result.get().getRequests()).hasSize(depth);
+	}
+
+	private static String describe(Result result) {
+		return result.getStatus() + " " + result.getRequests();
+	}
+}
@@ -0,0 +1,222 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Attributes;
+import colpo.core.CompiledPolicies.CompiledOrExchange;
+import colpo.core.CompiledPolicies.CompiledSingleExchange;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.IndexSet;
+import colpo.core.OrExchange;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+import colpo.core.semantics.Semantics.Ordering;
+
+class OrderingStatisticsTest {
+
+	private static final ExpressionWithDescription FALSE =
+			new ExpressionWithDescription(context -> false, "always false");
+
+	private Policies policies;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies();
+	}
+
+	@Test
+	void shouldOrderByProbabilityAndCost() {
+		policies.add(new Policy(new Attributes(),
+				new Rules()
+					.add(new Rule(ink(), new OrExchange(
+						new SingleExchange(me(), paper(), requester()),
+						new SingleExchange(me(), toner(), requester()))))
+					.add(new Rule(ink()))
+					.add(new Rule(ink()))))
+			.add(new Policy(new Attributes(), new Rules()))
+			.add(new Policy(new Attributes(), new Rules()));
+		var compiled = policies.compile();
+		var policy = compiled.getByIndex(1);
+		var statistics = new OrderingStatistics(compiled);
+		var candidates = policy.getCandidateIndexes(ink());
+		// at first, in the strict order
+		assertThat(statistics.rulesInOrder(policy, candidates)).containsExactly(1, 2, 3);
+		for (int i = 0; i < 5; i++) {
+			statistics.recordRule(policy.getRule(1), false, 10_000);
+			statistics.recordRule(policy.getRule(3), true, 100);
+		}
+		assertThat(statistics.rulesInOrder(policy, candidates)).containsExactly(3, 2, 1);
+		statistics.recordPolicy(null, 2, true, 1_000);
+		statistics.recordPolicy(null, 3, false, 1_000);
+		assertThat(statistics.policiesInOrder(null, IndexSet.of(1, 2, 3), false)).containsExactly(1, 0, 2);
+		assertThat(statistics.policiesInOrder(null, IndexSet.of(1, 2, 3), true)).containsExactly(2, 0, 1);
+		var exchange = (CompiledOrExchange) policy.getRule(1).exchange();
+		assertThat(statistics.rightFirst(exchange)).isFalse();
+		statistics.recordBranch(exchange, false, false, 100);
+		statistics.recordBranch(exchange, true, true, 100);
+		assertThat(statistics.rightFirst(exchange)).isTrue();
+	}
+
+	@Test
+	void policiesAreOrderedForEachFanOut() {
+		policies.add(new Policy(new Attributes(),
+				new Rules()
+					.add(new Rule(ink(), new OrExchange(
+						new SingleExchange(me(), paper(), anySuchThat(new Attributes())),
+						new SingleExchange(me(), toner(), anySuchThat(new Attributes())))))))
+			.add(new Policy(new Attributes(), new Rules()))
+			.add(new Policy(new Attributes(), new Rules()));
+		var compiled = policies.compile();
+		var statistics = new OrderingStatistics(compiled);
+		var exchange = (CompiledOrExchange) compiled.getByIndex(1).getRule(1).exchange();
+		var paperExchange = (CompiledSingleExchange) exchange.left();
+		var tonerExchange = (CompiledSingleExchange) exchange.right();
+		var candidates = IndexSet.of(2, 3);
+		// policy 3 permits requests, but it does not give paper
+		statistics.recordPolicy(null, 2, false, 1_000);
+		statistics.recordPolicy(null, 3, true, 1_000);
+		statistics.recordPolicy(paperExchange, 2, true, 1_000);
+		statistics.recordPolicy(paperExchange, 3, false, 1_000);
+		assertThat(statistics.policiesInOrder(null, candidates, false)).containsExactly(1, 0);
+		assertThat(statistics.policiesInOrder(paperExchange, candidates, false)).containsExactly(0, 1);
+		// nothing recorded for toner, so in the strict order
+		assertThat(statistics.policiesInOrder(tonerExchange, candidates, true)).containsExactly(0, 1);
+	}
+
+	@Test
+	void adaptiveOrderingTriesTheMostPromisingRuleFirst() {
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(ink(), FALSE))
+					.add(new Rule(ink()))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()));
+		var request = new Request(index(2), ink(), index(1));
+		var semantics = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP)
+			.ordering(Ordering.ADAPTIVE);
+		for (int i = 0; i < 5; i++) {
+			assertThat(semantics.evaluate(request).isPermitted()).isTrue();
+		}
+		// the second rule is evaluated first
+		assertThat(semantics.maxRuleEvaluations(1).evaluate(request).isPermitted()).isTrue();
+		semantics.ordering(Ordering.STRICT);
+		assertThat(semantics.evaluate(request).isIndeterminate()).isTrue();
+	}
+
+	@Test
+	void adaptiveOrderingTriesTheMostLikelyToFailPolicyFirst() {
+		policies.add(new Policy(new Attributes().add("id", 1), new Rules()));
+		for (int i = 2; i <= 4; i++) {
+			policies.add(new Policy(new Attributes().add("id", i),
+				new Rules().add(new Rule(ink()))));
+		}
+		policies.add(new Policy(new Attributes().add("id", 5),
+			new Rules().add(new Rule(ink(), FALSE))));
+		var request = new Request(index(1), ink(), allSuchThat(new Attributes()));
+		var semantics = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP)
+			.ordering(Ordering.ADAPTIVE);
+		for (int i = 0; i < 5; i++) {
+			assertThat(semantics.evaluate(request).isPermitted()).isFalse();
+		}
+		// the last policy is evaluated first
+		var result = semantics.maxRuleEvaluations(1).evaluate(request);
+		assertThat(result.isPermitted()).isFalse();
+		assertThat(result.isIndeterminate()).isFalse();
+		semantics.ordering(Ordering.STRICT);
+		assertThat(semantics.evaluate(request).isIndeterminate()).isTrue();
+	}
+
+	@Test
+	void allTheOutcomesAreInTheOrderOfTheCandidates() {
+		for (int i = 1; i <= 4; i++) {
+			policies.add(new Policy(new Attributes().add("id", i),
+				new Rules().add(new Rule(ink()))));
+		}
+		var request = new Request(index(1), ink(), allSuchThat(new Attributes()));
+		var semantics = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP)
+			.ordering(Ordering.ADAPTIVE);
+		var expected = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP)
+			.evaluate(request)
+			.getRequests();
+		for (int i = 0; i < 5; i++) {
+			assertThat(semantics.evaluate(request).getRequests()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void adaptiveOrderingDoesNotChangeWhetherRequestsArePermitted() {
+		var random = new Random(42);
+		for (int scenario = 0; scenario < 30; scenario++) {
+			var policies = RandomPolicies.policies(random);
+			var strict = new Semantics(policies)
+				.traceSink(TraceSink.NO_OP);
+			var adaptive = new Semantics(policies)
+				.traceSink(TraceSink.NO_OP)
+				.ordering(Ordering.ADAPTIVE);
+			for (int round = 0; round < 3; round++) {
+				for (var request : RandomPolicies.requests()) {
+					assertThat(adaptive.evaluate(request).isPermitted())
+						.as("scenario " + scenario + ": " + request + "\n" + policies.description())
+						.isEqualTo(strict.evaluate(request).isPermitted());
+				}
+			}
+		}
+	}
+
+	@Test
+	void strictOrderingWhenTracing() {
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(ink(), FALSE))
+					.add(new Rule(ink()))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()));
+		var request = new Request(index(2), ink(), anySuchThat(new Attributes().add("name", "Alice")));
+		var semantics = new Semantics(policies)
+			.ordering(Ordering.ADAPTIVE);
+		var strict = new Semantics(policies);
+		strict.evaluate(request);
+		for (int i = 0; i < 5; i++) {
+			assertThat(semantics.evaluate(request).isPermitted()).isTrue();
+			assertThat(semantics.getTrace()).hasToString(strict.getTrace().toString());
+		}
+	}
+
+	private static Attributes paper() {
+		return new Attributes().add("type", "paper");
+	}
+
+	private static Attributes ink() {
+		return new Attributes().add("type", "ink");
+	}
+
+	private static Attributes toner() {
+		return new Attributes().add("type", "toner");
+	}
+}
@@ -0,0 +1,78 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Attributes;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Rule;
+import colpo.core.Rules;
+
+/**
+ * Runs all the tests of {@link SemanticsTest} in parallel mode, where each
+ * fan-out is evaluated in parallel: results and traces must be the same.
+ */
+class ParallelSemanticsTest extends SemanticsTest {
+
+	@BeforeEach
+	void parallel() {
+		semantics.parallel(1);
+	}
+
+	@Test
+	void shouldRejectNonPositiveThreshold() {
+		assertThatThrownBy(() -> semantics.parallel(0))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("threshold must be positive: 0");
+	}
+
+	@Test
+	void shouldCollectRequestsInOrderAndNotEvaluateAfterDecidingFailure() {
+		var evaluations = new AtomicInteger();
+		var policies = new Policies()
+			.add(new Policy(new Attributes().add("name", "Alice"), new Rules()));
+		for (int i = 0; i < 50; i++) {
+			var permitted = i != 40;
+			policies.add(new Policy(
+				new Attributes().add("role", "Provider"),
+				new Rules()
+					.add(new Rule(new Attributes(),
+						new ExpressionWithDescription(c -> {
+							evaluations.incrementAndGet();
+							return permitted;
+						}, "counted")))));
+		}
+		semantics = new Semantics(policies)
+			.traceSink(TraceSink.NO_OP)
+			.parallel(2);
+		var result = semantics.evaluate(new Request(index(1), new Attributes(),
+			anySuchThat(new Attributes().add("role", "Provider"))));
+		assertTrue(result.isPermitted());
+		assertThat(result.getRequests())
+			.containsExactly(new Request(index(1), new Attributes(), index(2)));
+
+		evaluations.set(0);
+		assertFalse(semantics.evaluate(new Request(index(1), new Attributes(),
+			allSuchThat(new Attributes().add("role", "Provider")))).isPermitted());
+		// at least up to the failing one
+		assertThat(evaluations.get()).isGreaterThanOrEqualTo(41);
+
+		semantics.parallel(100);
+		assertEquals(1, semantics.evaluate(new Request(index(1), new Attributes(),
+			anySuchThat(new Attributes().add("role", "Provider")))).getRequests().size());
+	}
+}
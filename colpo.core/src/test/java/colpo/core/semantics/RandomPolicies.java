@@ -0,0 +1,121 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import colpo.core.AndExchange;
+import colpo.core.Attributes;
+import colpo.core.Exchange;
+import colpo.core.ExchangeFromParticipant;
+import colpo.core.ExchangeToParticipant;
+import colpo.core.Expressions;
+import colpo.core.OrExchange;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.RequestFromParticipant;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+
+/**
+ * Random policies, with nested exchanges among few parties, to compare
+ * different evaluation engines.
+ */
+class RandomPolicies {
+
+	static final int PARTIES = 6;
+	private static final String[] ROLES = { "A", "B" };
+	private static final String[] TYPES = { "r1", "r2", "r3" };
+
+	private RandomPolicies() {
+		// Only static methods
+	}
+
+	static Policies policies(Random random) {
+		var policies = new Policies();
+		for (int i = 1; i <= PARTIES; i++) {
+			var rules = new Rules();
+			var size = 1 + random.nextInt(3);
+			for (int j = 0; j < size; j++) {
+				rules.add(rule(random));
+			}
+			policies.add(new Policy(
+				new Attributes()
+					.add("id", i)
+					.add("role", ROLES[random.nextInt(ROLES.length)])
+					.add("level", random.nextInt(3)),
+				rules));
+		}
+		return policies;
+	}
+
+	private static Rule rule(Random random) {
+		var resource = new Attributes().add("type", TYPES[random.nextInt(TYPES.length)]);
+		var condition = switch (random.nextInt(4)) {
+		case 0 -> Expressions.condition(Expressions.constant(false));
+		case 1 -> Expressions.condition(Expressions.name("undefined"));
+		default -> Expressions.condition(Expressions.ge(Expressions.name("level"), Expressions.constant(1)));
+		};
+		var exchange = random.nextInt(3) == 0 ? null : exchange(random, 2);
+		return random.nextBoolean() ?
+			new Rule(resource, exchange) :
+			new Rule(resource, condition, exchange);
+	}
+
+	private static Exchange exchange(Random random, int depth) {
+		var kind = depth == 0 ? 0 : random.nextInt(4);
+		return switch (kind) {
+		case 1 -> new OrExchange(exchange(random, depth - 1), exchange(random, depth - 1));
+		case 2 -> new AndExchange(exchange(random, depth - 1), exchange(random, depth - 1));
+		default -> new SingleExchange(to(random),
+			new Attributes().add("type", TYPES[random.nextInt(TYPES.length)]),
+			from(random));
+		};
+	}
+
+	private static ExchangeToParticipant to(Random random) {
+		return switch (random.nextInt(3)) {
+		case 0 -> me();
+		case 1 -> anySuchThat(party(random));
+		default -> allSuchThat(party(random));
+		};
+	}
+
+	private static ExchangeFromParticipant from(Random random) {
+		return switch (random.nextInt(3)) {
+		case 0 -> requester();
+		case 1 -> anySuchThat(party(random));
+		default -> allSuchThat(party(random));
+		};
+	}
+
+	private static Attributes party(Random random) {
+		return random.nextBoolean() ?
+			new Attributes().add("role", ROLES[random.nextInt(ROLES.length)]) :
+			new Attributes().add("id", 1 + random.nextInt(PARTIES));
+	}
+
+	static List<Request> requests() {
+		var requests = new ArrayList<Request>();
+		for (int i = 1; i <= PARTIES; i++) {
+			for (var type : TYPES) {
+				var resource = new Attributes().add("type", type);
+				for (RequestFromParticipant from : new RequestFromParticipant[] {
+						anySuchThat(new Attributes().add("role", "A")),
+						allSuchThat(new Attributes().add("role", "B")),
+						index(i % PARTIES + 1) }) {
+					requests.add(new Request(index(i), resource, from));
+				}
+			}
+		}
+		return requests;
+	}
+}
@@ -0,0 +1,76 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.index;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.AttributeMatcher;
+import colpo.core.Attributes;
+import colpo.core.CompiledPolicies;
+import colpo.core.ContextHandler;
+import colpo.core.DefaultRequestComply;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Rule;
+import colpo.core.Rules;
+
+class RuleAttributesResolverTest {
+
+	private CompiledPolicies policies;
+	private ContextHandler contextHandler;
+	private EvaluationContext context;
+	private RuleAttributesResolver resolver;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies()
+			.add(new Policy(
+				new Attributes().add("name", "Alice").add("city", "Pisa"),
+				new Rules()))
+			.add(new Policy(
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(new Attributes(),
+						new ExpressionWithDescription(resolver -> true, "true",
+							List.of("city", "name"))))))
+			.compile();
+		contextHandler = new ContextHandler()
+			.add(2, "city", "Lucca")
+			.add(2, "position", "Prato");
+		var cancellation = new Cancellation();
+		context = new EvaluationContext(policies, TraceSink.NO_OP,
+			new DefaultRequestComply(new AttributeMatcher()),
+			cancellation, new Budget(Integer.MAX_VALUE, Long.MAX_VALUE, null, cancellation));
+		resolver = new RuleAttributesResolver(
+			policies.getByIndex(2).getRule(1),
+			new Request(index(1), new Attributes().add("position", "Pistoia"), index(2)),
+			contextHandler, context);
+	}
+
+	@Test
+	void shouldProbeResourceThenContextThenRequester() throws UndefinedName {
+		assertThat(resolver.name("position")).isEqualTo("Pistoia");
+		assertThat(resolver.name("city")).isEqualTo("Lucca");
+		assertThat(resolver.name("name")).isEqualTo("Alice");
+		assertThat(context.contextVersions()).containsEntry(2, 2L);
+	}
+
+	@Test
+	void shouldThrowForUndefinedNames() {
+		assertThatThrownBy(() -> resolver.name("company"))
+			.isInstanceOf(UndefinedName.class)
+			.hasMessage("Undefined name: company");
+		assertThatThrownBy(() -> resolver.name("a name never used"))
+			.isInstanceOf(UndefinedName.class)
+			.hasMessage("Undefined name: a name never used");
+		// the context has been read anyway
+		assertThat(context.contextVersions()).containsEntry(2, 2L);
+	}
+}
@@ -0,0 +1,276 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Attributes;
+import colpo.core.ContextHandler;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.OrExchange;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+
+class SemanticsConcurrencyTest {
+
+	private Policies policies;
+	private List<Request> requests;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies()
+			.add(new Policy( // index 1
+				new Attributes()
+					.add("service", "delivery")
+					.add("company", "RabbitService"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("type", "addrInfo")
+							.add("city", "Lucca"),
+						new SingleExchange(
+							me(),
+							new Attributes()
+								.add("type", "addrInfo")
+								.add("city", "Prato"),
+							requester())))))
+			.add(new Policy( // index 2
+				new Attributes()
+					.add("service", "delivery")
+					.add("company", "FastAndFurious"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("type", "addrInfo")
+							.add("city", "Prato"),
+						new OrExchange(
+							new SingleExchange(
+								me(),
+								new Attributes()
+									.add("type", "addrInfo")
+									.add("city", "Pistoia"),
+								requester()),
+							new SingleExchange(
+								allSuchThat(new Attributes()
+									.add("service", "delivery")),
+								new Attributes()
+									.add("type", "addrInfo")
+									.add("city", "Lucca"),
+								requester()))))))
+			.add(new Policy( // index 3
+				new Attributes()
+					.add("service", "delivery")
+					.add("company", "SlowButSteady"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("type", "addrInfo")
+							.add("city", "Prato"),
+						new ExpressionWithDescription(
+							c -> c.name("current/city").equals("Pisa"),
+							"current/city = Pisa")))))
+			.snapshot();
+		requests = new ArrayList<>();
+		for (var city : List.of("Lucca", "Prato", "Pisa", "Pistoia")) {
+			for (int requester = 1; requester <= 3; requester++) {
+				requests.add(new Request(
+					index(requester),
+					new Attributes()
+						.add("type", "addrInfo")
+						.add("city", city),
+					anySuchThat(new Attributes()
+						.add("service", "delivery"))));
+				requests.add(new Request(
+					index(requester),
+					new Attributes()
+						.add("type", "addrInfo")
+						.add("city", city),
+					allSuchThat(new Attributes()
+						.add("service", "delivery"))));
+			}
+		}
+	}
+
+	private record Outcome(boolean permitted, String requests, String trace) {
+
+		Outcome(Result result, TraceSink trace) {
+			this(result.isPermitted(),
+				result.getRequests().stream().map(Object::toString).collect(Collectors.joining("\n")),
+				trace.toString());
+		}
+	}
+
+	/**
+	 * Concurrent evaluations record their steps in their own trace.
+	 */
+	private static Outcome evaluate(Semantics semantics, Request request) {
+		var trace = new Trace();
+		return new Outcome(semantics.evaluate(request, trace), trace);
+	}
+
+	@Test
+	void sharedSemanticsGivesTheSameOutcomesConcurrently() throws Exception {
+		var semantics = new Semantics(policies)
+			.contextHandler(new ContextHandler()
+				.add(3, "current/city", "Pisa"))
+			.decisionCache(4);
+		var expected = requests.stream()
+			.map(request -> evaluate(semantics, request))
+			.toList();
+		assertThat(expected)
+			.extracting(Outcome::permitted)
+			.contains(true, false);
+
+		var tasks = new ArrayList<Callable<List<Outcome>>>();
+		IntStream.range(0, 8).forEach(i -> tasks.add(() ->
+			requests.stream()
+				.map(request -> evaluate(semantics, request))
+				.toList()));
+		try (var executor = Executors.newFixedThreadPool(4)) {
+			for (var future : executor.invokeAll(tasks)) {
+				assertThat(future.get())
+					.containsExactlyElementsOf(expected);
+			}
+		}
+	}
+
+	@Test
+	void batchEvaluationReturnsResultsInInputOrder() {
+		var semantics = new Semantics(policies)
+			.contextHandler(new ContextHandler()
+				.add(3, "current/city", "Pisa"));
+		var expected = requests.stream()
+			.map(request -> evaluate(semantics, request))
+			.map(Outcome::requests)
+			.toList();
+		assertThat(semantics.evaluateAll(requests, 3))
+			.extracting(result -> new Outcome(result, TraceSink.NO_OP).requests())
+			.containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void batchEvaluationReturnsCompletions() {
+		var semantics = new Semantics(policies)
+			.contextHandler(new ContextHandler()
+				.add(3, "current/city", "Pisa"));
+		var expected = requests.stream()
+			.map(request -> evaluate(semantics, request))
+			.toList();
+		var completions = semantics.evaluateAllAsCompleted(requests, 4).toList();
+		assertThat(completions)
+			.extracting(Completion::index)
+			.containsExactlyInAnyOrderElementsOf(IntStream.range(0, requests.size()).boxed().toList());
+		for (var completion : completions) {
+			assertThat(completion.request())
+				.isSameAs(requests.get(completion.index()));
+			assertThat(new Outcome(completion.result(), completion.trace()))
+				.isEqualTo(expected.get(completion.index()));
+		}
+	}
+
+	@Test
+	void batchEvaluationAcceptsStreams() {
+		var semantics = new Semantics(policies)
+			.contextHandler(new ContextHandler()
+				.add(3, "current/city", "Pisa"));
+		var expected = semantics.evaluateAll(requests, 3).stream()
+			.map(Result::isPermitted)
+			.toList();
+		assertThat(semantics.evaluateAll(requests.stream(), 3))
+			.extracting(Result::isPermitted)
+			.containsExactlyElementsOf(expected);
+		try (var completions = semantics.evaluateAllAsCompleted(requests.stream(), 2)) {
+			assertThat(completions)
+				.extracting(completion -> completion.result().isPermitted() == expected.get(completion.index()))
+				.hasSize(requests.size())
+				.containsOnly(true);
+		}
+	}
+
+	@Test
+	void batchEvaluationStopsTakingRequestsWhenTheConsumerStops() {
+		var semantics = new Semantics(policies);
+		var taken = new AtomicInteger();
+		var manyRequests = IntStream.range(0, 1000)
+			.mapToObj(i -> requests.get(i % requests.size()))
+			.peek(request -> taken.incrementAndGet());
+		try (var completions = semantics.evaluateAllAsCompleted(manyRequests, 4)) {
+			assertThat(completions.findFirst()).isPresent();
+		}
+		assertThat(taken.get()).isLessThanOrEqualTo(4);
+	}
+
+	@Test
+	void closingTheCompletionsCancelsTheEvaluations() throws InterruptedException {
+		var started = new CountDownLatch(1);
+		var release = new CountDownLatch(1);
+		var secondRule = new CountDownLatch(1);
+		var blockingPolicies = new Policies()
+			.add(new Policy( // index 1
+				new Attributes(),
+				new Rules()
+					.add(new Rule(new Attributes().add("type", "fast")))
+					.add(new Rule(
+						new Attributes().add("type", "slow"),
+						new ExpressionWithDescription(c -> {
+							started.countDown();
+							release.await();
+							return false;
+						}, "blocking")))
+					.add(new Rule(
+						new Attributes().add("type", "slow"),
+						new ExpressionWithDescription(c -> {
+							secondRule.countDown();
+							return true;
+						}, "counted")))))
+			.add(new Policy( // index 2
+				new Attributes(),
+				new Rules()));
+		var semantics = new Semantics(blockingPolicies);
+		var slow = new Request(index(2), new Attributes().add("type", "slow"), index(1));
+		var fast = new Request(index(2), new Attributes().add("type", "fast"), index(1));
+		try (var completions = semantics.evaluateAllAsCompleted(List.of(slow, fast), 2)) {
+			assertThat(completions.findFirst())
+				.hasValueSatisfying(completion -> assertThat(completion.request()).isSameAs(fast));
+			assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+		}
+		release.countDown();
+		// the slow evaluation stops before its next rule
+		assertThat(secondRule.await(200, TimeUnit.MILLISECONDS)).isFalse();
+	}
+
+	@Test
+	void batchEvaluationPropagatesFailures() {
+		var semantics = new Semantics(policies);
+		var failing = List.of(requests.get(0), new Request(index(1), new Attributes(), index(10)));
+		assertThatThrownBy(() -> semantics.evaluateAll(failing, 2))
+			.isInstanceOf(IndexOutOfBoundsException.class);
+		assertThatThrownBy(() -> semantics.evaluateAllAsCompleted(failing, 2).toList())
+			.isInstanceOf(IndexOutOfBoundsException.class);
+		assertThatThrownBy(() -> semantics.evaluateAll(failing, 0))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("max concurrency must be positive: 0");
+	}
+}
@@ -1,5 +1,15 @@
 package colpo.core.semantics;
 
+import static colpo.core.Expressions.add;
+import static colpo.core.Expressions.and;
+import static colpo.core.Expressions.condition;
+import static colpo.core.Expressions.constant;
+import static colpo.core.Expressions.contains;
+import static colpo.core.Expressions.eq;
+import static colpo.core.Expressions.gt;
+import static colpo.core.Expressions.name;
+import static colpo.core.Expressions.not;
+import static colpo.core.Expressions.or;
 import static colpo.core.Participants.allSuchThat;
 import static colpo.core.Participants.anySuchThat;
 import static colpo.core.Participants.index;
@@ -10,6 +20,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -18,18 +32,20 @@ import org.junit.jupiter.api.Test;
 import colpo.core.AndExchange;
 import colpo.core.Attributes;
 import colpo.core.ContextHandler;
+import colpo.core.ExpressionCode;
 import colpo.core.ExpressionWithDescription;
 import colpo.core.OrExchange;
 import colpo.core.Policies;
 import colpo.core.Policy;
 import colpo.core.Request;
+import colpo.core.Result;
 import colpo.core.Rule;
 import colpo.core.Rules;
 import colpo.core.SingleExchange;
 
 class SemanticsTest {
 
-	private Semantics semantics;
+	protected Semantics semantics;
 	private Policies policies;
 
 	private static final ExpressionWithDescription FALSE =
@@ -1929,6 +1945,503 @@ class SemanticsTest {
 		);
 	}
 
+	@Test
+	void repeatedSubRequestsAreEvaluatedOnlyOnce() {
+		// Alice gives printer provided the requester gives paper and ink,
+		// or paper and toner
+		// Bob gives paper and toner
+		var paperEvaluations = new AtomicInteger();
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("resource/type", "printer"),
+						new OrExchange(
+							new AndExchange(
+								new SingleExchange(me(),
+									new Attributes().add("resource/type", "paper"),
+									requester()),
+								new SingleExchange(me(),
+									new Attributes().add("resource/type", "ink"),
+									requester())),
+							new AndExchange(
+								new SingleExchange(me(),
+									new Attributes().add("resource/type", "paper"),
+									requester()),
+								new SingleExchange(me(),
+									new Attributes().add("resource/type", "toner"),
+									requester())))))))
+		.add(
+			new Policy( // index 2
+				new Attributes()
+					.add("name", "Bob"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("resource/type", "paper"),
+						new ExpressionWithDescription(
+							c -> paperEvaluations.incrementAndGet() > 0,
+							"counted")))
+					.add(new Rule(
+						new Attributes()
+							.add("resource/type", "toner")))));
+		assertResultTrue(
+			new Request(
+				index(2), // Bob
+				new Attributes()
+					.add("resource/type", "printer"),
+				index(1)
+			),
+			"""
+			evaluating Request[requester=2, resource=[(resource/type : printer)], from=1]
+			  policy 1: evaluating Request[requester=2, resource=[(resource/type : printer)], from=1]
+			    rule 1.1: resource match([(resource/type : printer)], [(resource/type : printer)]) -> true
+			    rule 1.1: condition true -> true
+			    rule 1.1: evaluating OR(AND(Exchange[to=ME, resource=[(resource/type : paper)], from=REQUESTER], Exchange[to=ME, resource=[(resource/type : ink)], from=REQUESTER]), AND(Exchange[to=ME, resource=[(resource/type : paper)], from=REQUESTER], Exchange[to=ME, resource=[(resource/type : toner)], from=REQUESTER]))
+			      rule 1.1: evaluating AND(Exchange[to=ME, resource=[(resource/type : paper)], from=REQUESTER], Exchange[to=ME, resource=[(resource/type : ink)], from=REQUESTER])
+			        rule 1.1: evaluating Exchange[to=ME, resource=[(resource/type : paper)], from=REQUESTER]
+			        evaluating Request[requester=1, resource=[(resource/type : paper)], from=2]
+			          policy 2: evaluating Request[requester=1, resource=[(resource/type : paper)], from=2]
+			            rule 2.1: resource match([(resource/type : paper)], [(resource/type : paper)]) -> true
+			            rule 2.1: condition counted -> true
+			        result: true
+			      rule 1.1: AND
+			        rule 1.1: evaluating Exchange[to=ME, resource=[(resource/type : ink)], from=REQUESTER]
+			        evaluating Request[requester=1, resource=[(resource/type : ink)], from=2]
+			          policy 2: evaluating Request[requester=1, resource=[(resource/type : ink)], from=2]
+			            rule 2.1: resource match([(resource/type : ink)], [(resource/type : paper)]) -> false
+			          policy 2: evaluating Request[requester=1, resource=[(resource/type : ink)], from=2]
+			            rule 2.2: resource match([(resource/type : ink)], [(resource/type : toner)]) -> false
+			        result: false
+			      rule 1.1: END Exchange -> false
+			    rule 1.1: OR
+			      rule 1.1: evaluating AND(Exchange[to=ME, resource=[(resource/type : paper)], from=REQUESTER], Exchange[to=ME, resource=[(resource/type : toner)], from=REQUESTER])
+			        rule 1.1: evaluating Exchange[to=ME, resource=[(resource/type : paper)], from=REQUESTER]
+			        evaluating Request[requester=1, resource=[(resource/type : paper)], from=2]
+			          policy 2: evaluating Request[requester=1, resource=[(resource/type : paper)], from=2]
+			            rule 2.1: resource match([(resource/type : paper)], [(resource/type : paper)]) -> true
+			            rule 2.1: condition counted -> true
+			        result: true
+			      rule 1.1: AND
+			        rule 1.1: evaluating Exchange[to=ME, resource=[(resource/type : toner)], from=REQUESTER]
+			        evaluating Request[requester=1, resource=[(resource/type : toner)], from=2]
+			          policy 2: evaluating Request[requester=1, resource=[(resource/type : toner)], from=2]
+			            rule 2.1: resource match([(resource/type : toner)], [(resource/type : paper)]) -> false
+			          policy 2: evaluating Request[requester=1, resource=[(resource/type : toner)], from=2]
+			            rule 2.2: resource match([(resource/type : toner)], [(resource/type : toner)]) -> true
+			            rule 2.2: condition true -> true
+			        result: true
+			      rule 1.1: END Exchange -> true
+			    rule 1.1: END Exchange -> true
+			result: true
+			""",
+			"""
+			Request[requester=2, resource=[(resource/type : printer)], from=1]
+			Request[requester=1, resource=[(resource/type : paper)], from=2]
+			Request[requester=1, resource=[(resource/type : toner)], from=2]"""
+		);
+		// the sub-request for paper is evaluated only once
+		// though it appears twice in the trace
+		assertEquals(1, paperEvaluations.get());
+	}
+
+	@Test
+	void memoizedSubRequestsDependOnTheRequestsBeingEvaluated() {
+		// Alice gives printer provided she can give red ink to Bob and Bob gives
+		// her toner, or Bob gives her paper;
+		// Alice gives red ink provided Bob gives her paper;
+		// Bob gives paper provided the requester gives him ink;
+		// Request[requester=1, resource=[(type : paper)], from=2] is permitted
+		// only while Alice is giving red ink to Bob, thanks to compliance
+		var bob = anySuchThat(new Attributes().add("name", "Bob"));
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice"),
+				new Rules()
+					.add(new Rule(
+						new Attributes().add("type", "printer"),
+						new OrExchange(
+							new AndExchange(
+								new SingleExchange(bob,
+									new Attributes().add("type", "ink").add("color", "red"),
+									anySuchThat(new Attributes().add("name", "Alice"))),
+								new SingleExchange(me(),
+									new Attributes().add("type", "toner"),
+									bob)),
+							new SingleExchange(me(),
+								new Attributes().add("type", "paper"),
+								bob))))
+					.add(new Rule(
+						new Attributes().add("type", "ink").add("color", "red"),
+						new ExpressionWithDescription(
+							c -> "red".equals(c.name("color")),
+							"red"),
+						new SingleExchange(me(),
+							new Attributes().add("type", "paper"),
+							bob)))))
+		.add(
+			new Policy( // index 2
+				new Attributes()
+					.add("name", "Bob"),
+				new Rules()
+					.add(new Rule(
+						new Attributes().add("type", "paper"),
+						new SingleExchange(me(),
+							new Attributes().add("type", "ink"),
+							requester())))))
+		.add(
+			new Policy( // index 3
+				new Attributes()
+					.add("name", "Carl"),
+				new Rules()));
+		var request = new Request(index(3), new Attributes().add("type", "printer"), index(1));
+		assertFalse(semantics.evaluate(request).isPermitted());
+		assertFalse(semantics.engine(Semantics.Engine.ITERATIVE).evaluate(request).isPermitted());
+	}
+
+	@Test
+	void sameResultsWithTracingDisabled() {
+		// same as exchangeFromToAllSuchThat, with a rule that does not match
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice")
+					.add("role", "PrinterProvider"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("resource/type", "scanner")))
+					.add(new Rule(
+						new Attributes()
+							.add("resource/type", "printer"),
+						new SingleExchange(
+							allSuchThat(new Attributes()
+									.add("role", "PrinterProvider")),
+							new Attributes()
+								.add("resource/type", "paper"),
+							allSuchThat(new Attributes()
+									.add("role", "PaperProvider")))
+						))))
+		.add(
+			new Policy( // index 2
+				new Attributes()
+					.add("name", "Bob")
+					.add("role", "PaperProvider"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("resource/type", "paper")
+					))))
+		.add(
+			new Policy( // index 3
+				new Attributes()
+					.add("name", "Carl")
+					.add("role", "PaperProvider"),
+				new Rules()
+					.add(new Rule(
+						new Attributes()
+							.add("resource/type", "paper")
+					))))
+		.add(
+			new Policy( // index 4
+				new Attributes()
+					.add("name", "Ed")
+					.add("role", "PrinterProvider"),
+				new Rules()));
+		semantics.traceSink(TraceSink.NO_OP);
+		var result = semantics.evaluate(
+			new Request(
+				index(2), // Bob
+				new Attributes()
+					.add("resource/type", "printer"),
+				anySuchThat(new Attributes()
+					.add("role", "PrinterProvider"))
+			));
+		assertAll(
+			() -> assertTrue(result.isPermitted()),
+			() -> assertEquals("", semantics.getTrace().toString()),
+			() -> assertEquals("""
+				Request[requester=2, resource=[(resource/type : printer)], from=1]
+				Request[requester=1, resource=[(resource/type : paper)], from=2]
+				Request[requester=4, resource=[(resource/type : paper)], from=2]
+				Request[requester=1, resource=[(resource/type : paper)], from=3]
+				Request[requester=4, resource=[(resource/type : paper)], from=3]""",
+				result.getRequests().stream().map(Object::toString).collect(Collectors.joining("\n")))
+		);
+		assertFalse(semantics.evaluate(
+			new Request(
+				index(2), // Bob
+				new Attributes()
+					.add("resource/type", "printer"),
+				anySuchThat(new Attributes()
+					.add("role", "PaperProvider"))
+			)).isPermitted());
+	}
+
+	@Test
+	void compiledPoliciesAreNotRecompiledImplicitly() {
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice"),
+				new Rules()));
+		var request = new Request(
+			index(1), // Alice
+			new Attributes(),
+			anySuchThat(new Attributes()
+				.add("name", "Bob")));
+		var compiledSemantics = new Semantics(policies.compile());
+		policies.add(
+			new Policy( // index 2
+				new Attributes()
+					.add("name", "Bob"),
+				new Rules()
+					.add(new Rule())));
+		// the policies are compiled again before the evaluation
+		assertTrue(semantics.evaluate(request).isPermitted());
+		// the compiled policies do not see Bob's policy
+		assertFalse(compiledSemantics.evaluate(request).isPermitted());
+		assertTrue(new Semantics(policies.compile()).evaluate(request).isPermitted());
+	}
+
+	@Test
+	void policiesAreCompiledAgainWhenRulesAreAdded() {
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice"),
+				new Rules()))
+		.add(
+			new Policy( // index 2
+				new Attributes()
+					.add("name", "Bob"),
+				new Rules()));
+		var request = new Request(index(1), new Attributes(), index(2));
+		assertFalse(semantics.evaluate(request).isPermitted());
+		policies.getByIndex(2).rules().add(new Rule());
+		assertTrue(semantics.evaluate(request).isPermitted());
+	}
+
+	@Test
+	void policiesAreCompiledAgainWhenAttributesAreModified() {
+		var bob = new Attributes()
+			.add("name", "Bob");
+		var resource = new Attributes()
+			.add("type", "paper");
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice"),
+				new Rules()))
+		.add(
+			new Policy( // index 2
+				bob,
+				new Rules()
+					.add(new Rule(resource))));
+		var request = new Request(index(1),
+			new Attributes().add("type", "paper"),
+			anySuchThat(new Attributes().add("role", "Provider")));
+		assertFalse(semantics.evaluate(request).isPermitted());
+		bob.add("role", "Provider");
+		assertTrue(semantics.evaluate(request).isPermitted());
+		var whitePaper = new Request(index(1),
+			new Attributes().add("type", "paper").add("color", "white"),
+			index(2));
+		assertFalse(semantics.evaluate(whitePaper).isPermitted());
+		resource.add("color", "white");
+		assertTrue(semantics.evaluate(whitePaper).isPermitted());
+	}
+
+	@Test
+	void evaluationLimitsMakeTheResultIndeterminate() {
+		exchangeChain();
+		var request = new Request(
+			index(2), // Bob
+			new Attributes().add("type", "a"),
+			anySuchThat(new Attributes()
+				.add("name", "Alice")));
+		assertTrue(semantics.evaluate(request).isPermitted());
+		// the request for "c" is at depth 2, after 3 rule evaluations
+		assertTrue(semantics.maxDepth(2).maxRuleEvaluations(3).evaluate(request).isPermitted());
+		var result = semantics.maxDepth(1).evaluate(request);
+		assertAll(
+			() -> assertTrue(result.isIndeterminate()),
+			() -> assertFalse(result.isPermitted()),
+			() -> assertEquals(Result.Status.INDETERMINATE, result.getStatus()),
+			() -> assertTrue(result.getRequests().isEmpty()),
+			() -> assertTrue(semantics.getTrace().toString()
+				.endsWith("indeterminate: depth limit 1 exceeded\n"))
+		);
+		semantics.maxDepth(2).maxRuleEvaluations(2);
+		assertTrue(semantics.evaluate(request).isIndeterminate());
+		assertTrue(semantics.getTrace().toString()
+			.endsWith("indeterminate: rule evaluation limit 2 exceeded\n"));
+		// the same limits when tracing is disabled
+		semantics.traceSink(TraceSink.NO_OP);
+		assertTrue(semantics.evaluate(request).isIndeterminate());
+		assertTrue(semantics.maxRuleEvaluations(3).evaluate(request).isPermitted());
+		assertTrue(semantics.maxDepth(0).evaluate(request).isIndeterminate());
+	}
+
+	@Test
+	void exceedingTheTimeoutMakesTheResultIndeterminate() {
+		exchangeChain();
+		var request = new Request(
+			index(2), // Bob
+			new Attributes().add("type", "a"),
+			anySuchThat(new Attributes()
+				.add("name", "Alice")));
+		semantics.timeout(Duration.ZERO);
+		assertTrue(semantics.evaluate(request).isIndeterminate());
+		assertTrue(semantics.getTrace().toString()
+			.endsWith("indeterminate: deadline exceeded\n"));
+		assertTrue(semantics.timeout(Duration.ofMinutes(1)).evaluate(request).isPermitted());
+	}
+
+	@Test
+	void cancelledEvaluationsAreIndeterminateAndNotCached() {
+		exchangeChain();
+		var request = new Request(
+			index(2), // Bob
+			new Attributes().add("type", "a"),
+			anySuchThat(new Attributes()
+				.add("name", "Alice")));
+		var decisionCache = semantics.decisionCache(10).getDecisionCache();
+		var cancellation = new Cancellation();
+		cancellation.cancel();
+		assertTrue(semantics.evaluate(request, cancellation).isIndeterminate());
+		assertEquals("""
+			indeterminate: cancelled
+			""", semantics.getTrace().toString());
+		assertEquals(0, decisionCache.size());
+		assertTrue(semantics.evaluate(request, new Cancellation()).isPermitted());
+		assertEquals(1, decisionCache.size());
+	}
+
+	@Test
+	void deadRulesAreNotEvaluatedWhenNotTracing() {
+		// Alice's first rule requires toner, which no one gives
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice"),
+				new Rules()
+					.add(new Rule(
+						new Attributes().add("type", "paper"),
+						new SingleExchange(me(), new Attributes().add("type", "toner"),
+							requester())))
+					.add(new Rule(
+						new Attributes().add("type", "paper")))))
+		.add(
+			new Policy( // index 2
+				new Attributes()
+					.add("name", "Bob"),
+				new Rules()));
+		var request = new Request(
+			index(2), // Bob
+			new Attributes().add("type", "paper"),
+			anySuchThat(new Attributes()
+				.add("name", "Alice")));
+		semantics.maxRuleEvaluations(1);
+		// when tracing, the dead rule is evaluated
+		assertTrue(semantics.evaluate(request).isIndeterminate());
+		semantics.traceSink(TraceSink.NO_OP);
+		assertTrue(semantics.evaluate(request).isPermitted());
+		// dead rules are evaluated with a custom comply
+		semantics.requestComply((newRequest, existingRequest) -> false);
+		assertTrue(semantics.evaluate(request).isIndeterminate());
+	}
+
+	@Test
+	void deadRulesDoNotChangeTheResults() {
+		var random = new Random(42);
+		for (int scenario = 0; scenario < 30; scenario++) {
+			var policies = RandomPolicies.policies(random);
+			var traced = new Semantics(policies);
+			var untraced = new Semantics(policies)
+				.traceSink(TraceSink.NO_OP);
+			for (var request : RandomPolicies.requests()) {
+				assertEquals(traced.evaluate(request).isPermitted(),
+					untraced.evaluate(request).isPermitted(),
+					"scenario " + scenario + ": " + request + "\n" + policies.description());
+			}
+		}
+	}
+
+	@Test
+	void optimizedConditionsGiveTheSameDecisions() {
+		var expressions = List.of(
+			// undefined names must deny the request
+			or(eq(name("missing"), constant(1)), constant(true)),
+			and(not(eq(name("missing"), constant(1))), constant(false)),
+			// as well as values of the wrong type
+			and(gt(name("level"), constant(1)), eq(constant(1), constant(1))),
+			or(contains(name("city"), constant("Pr")), eq(name("level"), constant(1))),
+			or(eq(name("level"), constant(2)), eq(add(constant(1), constant(1)), constant(2))));
+		var requesters = List.of(
+			new Attributes().add("name", "Bob").add("level", 2).add("city", "Prato"),
+			new Attributes().add("name", "Carl").add("level", "high"),
+			new Attributes().add("name", "Dan"));
+		for (var expression : expressions) {
+			var optimized = new Semantics(policies(requesters, condition(expression)));
+			var unoptimized = new Semantics(policies(requesters,
+				// not an ExpressionCondition, so it is not optimized
+				new ExpressionWithDescription(condition(expression), expression.toString())));
+			for (int i = 2; i <= requesters.size() + 1; i++) {
+				var request = new Request(index(i), new Attributes().add("type", "paper"),
+					anySuchThat(new Attributes().add("name", "Alice")));
+				assertEquals(unoptimized.evaluate(request).isPermitted(),
+					optimized.evaluate(request).isPermitted(),
+					expression + ": " + request);
+			}
+		}
+	}
+
+	/**
+	 * Alice gives paper if the condition holds, and the requesters have no
+	 * rules.
+	 */
+	private static Policies policies(List<Attributes> requesters, ExpressionCode condition) {
+		var policies = new Policies()
+			.add(new Policy(
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(new Attributes().add("type", "paper"), condition))));
+		requesters.forEach(party -> policies.add(new Policy(party, new Rules())));
+		return policies;
+	}
+
+	/**
+	 * Alice gives "a" if Bob gives her "b"; Bob gives "b" if Alice gives him
+	 * "c", and Alice gives "c" to anyone.
+	 */
+	private void exchangeChain() {
+		policies.add(
+			new Policy( // index 1
+				new Attributes()
+					.add("name", "Alice"),
+				new Rules()
+					.add(new Rule(
+						new Attributes().add("type", "a"),
+						new SingleExchange(me(), new Attributes().add("type", "b"),
+							anySuchThat(new Attributes().add("name", "Bob")))))
+					.add(new Rule(
+						new Attributes().add("type", "c")))))
+		.add(
+			new Policy( // index 2
+				new Attributes()
+					.add("name", "Bob"),
+				new Rules()
+					.add(new Rule(
+						new Attributes().add("type", "b"),
+						new SingleExchange(me(), new Attributes().add("type", "c"),
+							anySuchThat(new Attributes().add("name", "Alice")))))));
+	}
+
 	private void assertPolicies(String expected) {
 		assertEquals(expected, policies.description());
 	}
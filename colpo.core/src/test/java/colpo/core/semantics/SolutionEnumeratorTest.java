@@ -0,0 +1,203 @@
+package colpo.core.semantics;
+
+import static colpo.core.Participants.allSuchThat;
+import static colpo.core.Participants.anySuchThat;
+import static colpo.core.Participants.index;
+import static colpo.core.Participants.me;
+import static colpo.core.Participants.requester;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import colpo.core.Attributes;
+import colpo.core.ExpressionWithDescription;
+import colpo.core.OrExchange;
+import colpo.core.Policies;
+import colpo.core.Policy;
+import colpo.core.Request;
+import colpo.core.Result;
+import colpo.core.Rule;
+import colpo.core.Rules;
+import colpo.core.SingleExchange;
+
+class SolutionEnumeratorTest {
+
+	private Policies policies;
+	private Semantics semantics;
+
+	@BeforeEach
+	void init() {
+		policies = new Policies();
+		semantics = new Semantics(policies);
+	}
+
+	@Test
+	void shouldEnumerateAllTheAlternatives() {
+		// Alice gives paper if the requester gives her ink or toner,
+		// or for free to Carl; Bob gives ink and toner, Carl gives toner
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new OrExchange(
+							new SingleExchange(me(), ink(), requester()),
+							new SingleExchange(me(), toner(), requester()))))
+					.add(new Rule(paper(),
+						new ExpressionWithDescription(
+							resolver -> resolver.name("name").equals("Carl"),
+							"name = Carl")))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink()))
+					.add(new Rule(toner()))))
+		.add(
+			new Policy( // index 3
+				new Attributes().add("name", "Carl"),
+				new Rules()
+					.add(new Rule(toner()))));
+		assertThat(solutions(new Request(index(2), paper(), index(1))))
+			.containsExactly(
+				"""
+				Request[requester=2, resource=[(type : paper)], from=1]
+				Request[requester=1, resource=[(type : ink)], from=2]""",
+				"""
+				Request[requester=2, resource=[(type : paper)], from=1]
+				Request[requester=1, resource=[(type : toner)], from=2]""");
+		assertThat(solutions(new Request(index(3), paper(), index(1))))
+			.containsExactly(
+				"""
+				Request[requester=3, resource=[(type : paper)], from=1]
+				Request[requester=1, resource=[(type : toner)], from=3]""",
+				"""
+				Request[requester=3, resource=[(type : paper)], from=1]""");
+		// the first solution is the one found by evaluate
+		assertThat(semantics.evaluate(new Request(index(3), paper(), index(1))).getRequests())
+			.map(Object::toString)
+			.containsExactly(
+				"Request[requester=3, resource=[(type : paper)], from=1]",
+				"Request[requester=1, resource=[(type : toner)], from=3]");
+		// toner from anyone but Alice
+		assertThat(solutions(new Request(index(1), toner(), anySuchThat(new Attributes()))))
+			.containsExactly(
+				"Request[requester=1, resource=[(type : toner)], from=2]",
+				"Request[requester=1, resource=[(type : toner)], from=3]");
+		assertThat(solutions(new Request(index(1), paper(), index(2))))
+			.isEmpty();
+	}
+
+	@Test
+	void shouldEnumerateDistinctSolutions() {
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("name", "Alice"),
+				new Rules()
+					.add(new Rule(paper(),
+						new OrExchange(
+							new SingleExchange(me(), ink(), requester()),
+							new SingleExchange(me(), ink(), requester()))))))
+		.add(
+			new Policy( // index 2
+				new Attributes().add("name", "Bob"),
+				new Rules()
+					.add(new Rule(ink()))
+					.add(new Rule(ink()))));
+		assertThat(solutions(new Request(index(2), paper(), index(1))))
+			.hasSize(1);
+	}
+
+	@Test
+	void shouldComputeSolutionsOnlyWhenRequested() {
+		var evaluations = new AtomicInteger();
+		var rules = new Rules();
+		for (int i = 0; i < 10; i++) {
+			rules.add(new Rule(ink(),
+				new ExpressionWithDescription(resolver -> evaluations.incrementAndGet() > 0, "counted")));
+		}
+		policies.add(new Policy(new Attributes().add("name", "Alice"), new Rules()))
+			.add(new Policy(new Attributes().add("name", "Bob"), rules));
+		var request = new Request(index(1), ink(), index(2));
+		// all the rules give the same solution, so they are all evaluated
+		assertThat(semantics.solutions(request)).hasSize(1);
+		assertThat(evaluations.get()).isEqualTo(10);
+		evaluations.set(0);
+		var iterator = semantics.solutions(request).iterator();
+		assertThat(evaluations.get()).isZero();
+		assertThat(iterator.hasNext()).isTrue();
+		assertThat(evaluations.get()).isEqualTo(1);
+	}
+
+	@Test
+	void deniedRequestsWithAWideProductHaveNoSolutions() {
+		// Alice gives paper and toner; all the B's but the last one give ink
+		// for free, or for paper, or for toner, and the last one has no rules
+		policies.add(
+			new Policy( // index 1
+				new Attributes().add("role", "A"),
+				new Rules()
+					.add(new Rule(paper()))
+					.add(new Rule(toner()))));
+		for (int i = 0; i < 14; i++) {
+			policies.add(
+				new Policy(
+					new Attributes().add("role", "B"),
+					new Rules()
+						.add(new Rule(ink()))
+						.add(new Rule(ink(),
+							new OrExchange(
+								new SingleExchange(me(), paper(), requester()),
+								new SingleExchange(me(), toner(), requester()))))));
+		}
+		policies.add(new Policy(new Attributes().add("role", "B"), new Rules()));
+		var request = new Request(index(1), ink(), allSuchThat(new Attributes().add("role", "B")));
+		assertThat(semantics.evaluate(request).isPermitted()).isFalse();
+		// the solutions of the last policy are not searched again for each
+		// combination of the solutions of the others
+		assertTimeoutPreemptively(Duration.ofSeconds(5),
+			() -> assertThat(semantics.solutions(request).findFirst()).isEmpty());
+	}
+
+	@Test
+	void solutionsAreFoundForPermittedRequestsOnly() {
+		var random = new Random(42);
+		for (int scenario = 0; scenario < 30; scenario++) {
+			var policies = RandomPolicies.policies(random);
+			var semantics = new Semantics(policies)
+				.traceSink(TraceSink.NO_OP);
+			for (var request : RandomPolicies.requests()) {
+				var solutions = semantics.solutions(request).limit(10).toList();
+				assertThat(!solutions.isEmpty())
+					.as("scenario " + scenario + ": " + request + "\n" + policies.description())
+					.isEqualTo(semantics.evaluate(request).isPermitted());
+				assertThat(solutions).allMatch(Result::isPermitted);
+			}
+		}
+	}
+
+	private List<String> solutions(Request request) {
+		return semantics.solutions(request)
+			.map(result -> String.join("\n", result.getRequests().stream().map(Object::toString).toList()))
+			.toList();
+	}
+
+	private static Attributes paper() {
+		return new Attributes().add("type", "paper");
+	}
+
+	private static Attributes ink() {
+		return new Attributes().add("type", "ink");
+	}
+
+	private static Attributes toner() {
+		return new Attributes().add("type", "toner");
+	}
+}
@@ -94,4 +94,28 @@ class TraceTest {
 		trace.add("second line");
 		assertEquals("second line\n", trace.toString());
 	}
+
+	@Test
+	void testTraceSinceAndAddLines() {
+		trace.addAndThenIndent("first line");
+		var mark = trace.mark();
+		trace.addAndThenIndent("second line");
+		trace.add("third line");
+		trace.removeIndent();
+		var lines = trace.since(mark);
+		assertEquals("""
+				second line
+				  third line
+				""", lines);
+		trace.removeIndent();
+		trace.addLines(lines);
+		assertEquals("""
+				first line
+				  second line
+				    third line
+				second line
+				  third line
+				""", trace.toString());
+		assertEquals("", trace.since(trace.mark()));
+	}
 }